@@ -0,0 +1,112 @@
+package arena;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Gates regressions by comparing two runs of the benchmarks made on the same
+ * machine, one of the baseline code and one of the change. Benchmark times only
+ * mean something next to other times from the same machine, JVM and load, so
+ * the gate never compares against numbers from somewhere else. (The
+ * <i>baseline.csv</i> published next to this module is one run on one
+ * developer's machine. It shows roughly what each benchmark costs, and is for
+ * information only.)<br><br>
+ *
+ * A benchmark has regressed if its score is more than TOLERANCE worse than the
+ * baseline's, and the two scores are further apart than their error bars
+ * together. Every benchmark in the suite reports time per operation, so a
+ * higher score is worse.<br><br>
+ *
+ * Usage, from the directory with the top pom.xml:
+ * <pre>
+ * git checkout base-commit; mvn -B package
+ * java -jar jmh/target/benchmarks.jar -rf csv -rff base.csv
+ * git checkout change; mvn -B package
+ * java -jar jmh/target/benchmarks.jar -rf csv -rff change.csv
+ * java -cp jmh/target/benchmarks.jar arena.BenchmarkCompare base.csv change.csv
+ * </pre>
+ * The exit status is 1 if anything regressed. Other load on the machine can
+ * still move a score by more than its error bar, so re-run both sides before
+ * chasing a lone regression.
+ */
+public class BenchmarkCompare {
+
+	/**
+	 * Allowed slowdown before a benchmark counts as a regression
+	 */
+	private static final double TOLERANCE = 0.10;
+
+	/**
+	 * @param args The baseline's results and the change's results (JMH CSV)
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2)
+		{
+			System.err.println("Usage: java arena.BenchmarkCompare baseline.csv change.csv");
+			System.exit(2);
+		}
+		LinkedHashMap<String, double[]> before = read(args[0]), after = read(args[1]);
+		DecimalFormat df = new DecimalFormat("0.0");
+		boolean regressed = false;
+		for (String name : before.keySet())
+		{
+			double[] was = before.get(name), now = after.get(name);
+			if (now == null)
+			{
+				System.out.println("MISSING    "+name);
+				continue;
+			}
+			double change = now[0]/was[0]-1;
+			boolean worse = change > TOLERANCE && now[0]-was[0] > was[1]+now[1];
+			regressed |= worse;
+			System.out.println((worse ? "REGRESSION " : "ok         ")+name+": "+df.format(was[0])+" -> "+df.format(now[0])
+					+" ("+(change >= 0 ? "+" : "")+df.format(change*100)+"%)");
+		}
+		if (regressed)
+			System.exit(1);
+	}
+
+	/**
+	 * Reads a JMH result file written with <i>-rf csv</i>
+	 * @param file The file
+	 * @return Score and error for each benchmark, by name and parameters
+	 */
+	private static LinkedHashMap<String, double[]> read(String file) throws IOException
+	{
+		List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+		List<String> header = fields(lines.get(0));
+		int score = header.indexOf("Score"), error = header.indexOf("Score Error (99.9%)");
+		LinkedHashMap<String, double[]> results = new LinkedHashMap<String, double[]>();
+		for (String line : lines.subList(1, lines.size()))
+		{
+			if (line.trim().length() == 0)
+				continue;
+			List<String> row = fields(line);
+			String name = row.get(0);
+			for (int c=0; c<header.size(); c++)
+				if (header.get(c).startsWith("Param: "))
+					name += " "+header.get(c).substring(7)+"="+row.get(c);
+			double err = row.get(error).equals("NaN") ? 0 : Double.parseDouble(row.get(error));
+			results.put(name, new double[] {Double.parseDouble(row.get(score)), err});
+		}
+		return results;
+	}
+
+	/**
+	 * @param line A line of CSV (fields may be quoted, but have no quotes inside)
+	 * @return Its fields
+	 */
+	private static List<String> fields(String line)
+	{
+		List<String> fields = new ArrayList<String>();
+		for (String field : line.split(",", -1))
+			fields.add(field.startsWith("\"") && field.endsWith("\"") && field.length() > 1 ? field.substring(1, field.length()-1) : field);
+		return fields;
+	}
+}
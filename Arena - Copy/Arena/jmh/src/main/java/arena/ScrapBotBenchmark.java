@@ -0,0 +1,124 @@
+package arena;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bots.ScrapBot;
+
+/**
+ * ScrapBot's decisions, and the SpatialIndex queries that can replace its scans,
+ * on a synthetic world: the ScrapBot in the middle of the arena, the other Bots
+ * scattered at random, and a bullet for each Bot falling down the top of the
+ * arena. None of the bullets will hit, so dodgeBullets() has to look at all of
+ * them. The world is made from a fixed seed, so every run times the same one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ScrapBotBenchmark {
+
+	/**
+	 * ScrapBot.findClosestBot() is private, so it is called through a handle
+	 */
+	private static final MethodHandle FIND_CLOSEST_BOT = findClosestBotHandle();
+
+	@Param({"16", "256"})
+	int numBots;
+
+	private BotInfo me;
+	private BotInfo[] liveBots, deadBots;
+	private Bullet[] bullets;
+	private ScrapBot scrap;
+	private BotInfo[] allBots;
+	private Bullet[][] bulletSlots;
+	private SpatialIndex space;
+
+	@Setup
+	public void createWorld()
+	{
+		Random r = new Random(numBots);
+		me = new BotInfo(350, 250, 0, "Scrap");
+		liveBots = new BotInfo[numBots-1];
+		for (int i=0; i<liveBots.length; i++)
+			liveBots[i] = new BotInfo(r.nextDouble()*BattleBotArena.RIGHT_EDGE, r.nextDouble()*BattleBotArena.BOTTOM_EDGE, i+1, "Bot"+(i+1));
+		bullets = new Bullet[numBots];
+		for (int i=0; i<bullets.length; i++)
+			bullets[i] = new Bullet(r.nextDouble()*BattleBotArena.RIGHT_EDGE, r.nextDouble()*200, 0, BattleBotArena.BULLET_SPEED);
+		deadBots = new BotInfo[0];
+		scrap = new ScrapBot();
+		// the same world for the index
+		allBots = new BotInfo[numBots];
+		allBots[0] = me;
+		System.arraycopy(liveBots, 0, allBots, 1, liveBots.length);
+		bulletSlots = new Bullet[][] {bullets};
+		space = new SpatialIndex(allBots, bulletSlots, BattleBotArena.RIGHT_EDGE, BattleBotArena.BOTTOM_EDGE);
+	}
+
+	@Benchmark
+	public int getMove()
+	{
+		return scrap.getMove(me, true, liveBots, deadBots, bullets);
+	}
+
+	@Benchmark
+	public BotInfo findClosestBot() throws Throwable
+	{
+		return (BotInfo)FIND_CLOSEST_BOT.invokeExact(scrap, me, liveBots);
+	}
+
+	@Benchmark
+	public int dodgeBullets()
+	{
+		return scrap.dodgeBullets(me, bullets);
+	}
+
+	@Benchmark
+	public SpatialIndex spatialIndexBuild()
+	{
+		return new SpatialIndex(allBots, bulletSlots, BattleBotArena.RIGHT_EDGE, BattleBotArena.BOTTOM_EDGE);
+	}
+
+	@Benchmark
+	public BotInfo spatialIndexNearest()
+	{
+		return space.nearest(me);
+	}
+
+	@Benchmark
+	public Bullet[] spatialIndexIncoming()
+	{
+		return space.incomingBullets(me, 100);
+	}
+
+	/**
+	 * @return A handle on ScrapBot.findClosestBot(BotInfo, BotInfo[])
+	 */
+	private static MethodHandle findClosestBotHandle()
+	{
+		try {
+			Method method = ScrapBot.class.getDeclaredMethod("findClosestBot", BotInfo.class, BotInfo[].class);
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("ScrapBot.findClosestBot(BotInfo, BotInfo[]) has changed", e);
+		}
+	}
+}
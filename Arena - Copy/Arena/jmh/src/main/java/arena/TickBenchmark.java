@@ -0,0 +1,82 @@
+package arena;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bots.Bot;
+import bots.Drone;
+import bots.ScrapBot;
+import bots.SentryBot;
+
+/**
+ * One full tick of a headless arena: snapshots, every Bot's move, collisions,
+ * bullets and message delivery. The arena is sized to its roster (see
+ * BattleBotArena.fitScale()), so the Bots start with room to move and actually
+ * play. A new match is started every TICKS_PER_MATCH ticks, outside the timed
+ * part, so every tick measured is from the first few seconds of a match, with
+ * most of the Bots still alive.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TickBenchmark {
+
+	/**
+	 * Ticks played before a new match is started
+	 */
+	static final int TICKS_PER_MATCH = 100;
+
+	@Param({"16", "256", "4096"})
+	int numBots;
+
+	private BattleBotArena arena;
+	private int ticks;
+
+	@Setup(Level.Trial)
+	public void createArena()
+	{
+		arena = new BattleBotArena(roster(numBots));
+		ticks = 0;
+	}
+
+	@Setup(Level.Invocation)
+	public void restartMatch()
+	{
+		if (ticks++ % TICKS_PER_MATCH == 0)
+			arena.startMatch();
+	}
+
+	@Benchmark
+	public void tick()
+	{
+		arena.playFrame();
+	}
+
+	/**
+	 * @param numBots Size of the roster
+	 * @return ScrapBots, SentryBots and Drones. RandBots are left out because
+	 * they deliberately sleep to overheat.
+	 */
+	static Bot[] roster(int numBots)
+	{
+		Bot[] bots = new Bot[numBots];
+		for (int i=0; i<numBots; i++)
+			bots[i] = i%4 == 0 ? new ScrapBot() : i%4 == 2 ? new SentryBot() : new Drone();
+		return bots;
+	}
+}
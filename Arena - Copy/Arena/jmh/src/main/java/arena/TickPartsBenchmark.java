@@ -0,0 +1,114 @@
+package arena;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The pieces of a tick, each on an arena at the start of a match: Bot-Bot
+ * collisions for every Bot, the snapshot handed to the Bots, the sorted score
+ * table, and a referee message sent to every Bot. Bullet collisions are timed on
+ * an arena a second into its match, so there are bullets in the air.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TickPartsBenchmark {
+
+	@Param({"16", "256"})
+	int numBots;
+
+	private BattleBotArena arena;
+
+	@Setup(Level.Trial)
+	public void createArena()
+	{
+		arena = new BattleBotArena(TickBenchmark.roster(numBots));
+	}
+
+	@Setup(Level.Iteration)
+	public void startMatch()
+	{
+		arena.startMatch();
+	}
+
+	@Benchmark
+	public void botCollision(Blackhole bh)
+	{
+		for (int i=0; i<numBots; i++)
+			bh.consume(arena.collidesWithBot(i));
+	}
+
+	@Benchmark
+	public void snapshot()
+	{
+		arena.buildFrameInfo();
+	}
+
+	@Benchmark
+	public BotInfo[] sortedBotInfoArray()
+	{
+		return arena.sortedBotInfoArray(true);
+	}
+
+	@Benchmark
+	public void sendMessage()
+	{
+		arena.sendMessage(BattleBotArena.SYSTEM_MSG, "Benchmark message");
+	}
+
+	/**
+	 * An arena a second into its match. The bullets fly off as they are moved,
+	 * so the match is started again every MOVES_PER_MATCH moves.
+	 */
+	@State(Scope.Thread)
+	public static class InFlight {
+
+		static final int MOVES_PER_MATCH = 20;
+
+		@Param({"16", "256"})
+		int numBots;
+
+		BattleBotArena arena;
+		private int moves;
+
+		@Setup(Level.Trial)
+		public void createArena()
+		{
+			arena = new BattleBotArena(TickBenchmark.roster(numBots));
+			moves = 0;
+		}
+
+		@Setup(Level.Invocation)
+		public void restartMatch()
+		{
+			if (moves++ % MOVES_PER_MATCH == 0)
+			{
+				arena.startMatch();
+				for (int i=0; i<30; i++)
+					arena.playFrame();
+			}
+		}
+	}
+
+	@Benchmark
+	public void bulletCollision(InFlight world)
+	{
+		world.arena.moveBullets();
+	}
+}
@@ -0,0 +1,135 @@
+package arena;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+
+import bots.Bot;
+
+/**
+ * A Bot that is driven from outside the arena (e.g. by a learning algorithm
+ * through VectorEnv). Its next move is set with <i>setMove()</i> before each
+ * frame, and it does nothing else.
+ */
+public class AgentBot extends Bot {
+
+	/**
+	 * The move to make on the next frame
+	 */
+	private int move = BattleBotArena.STAY;
+	/**
+	 * My name
+	 */
+	private String name;
+
+	/**
+	 * @param name The agent's name
+	 */
+	public AgentBot(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * @param move The move to make on the next frame (see the constants in BattleBotArena)
+	 */
+	public void setMove(int move)
+	{
+		this.move = move;
+	}
+
+	/**
+	 * @return The Bot number the arena assigned this round
+	 */
+	public int getBotNumber()
+	{
+		return botNumber;
+	}
+
+	/**
+	 * Not used (see usesWorldView())
+	 */
+	public int getMove(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets)
+	{
+		return move;
+	}
+
+	/**
+	 * Makes the move that was set from outside
+	 */
+	public int getMove(WorldView world)
+	{
+		return move;
+	}
+
+	/**
+	 * Agents take the WorldView, so the arena doesn't build arrays for them
+	 */
+	public boolean usesWorldView()
+	{
+		return true;
+	}
+
+	/**
+	 * Draws a plain circle
+	 */
+	public void draw(Graphics g, int x, int y)
+	{
+		g.setColor(Color.cyan);
+		g.fillOval(x, y, Bot.RADIUS*2, Bot.RADIUS*2);
+	}
+
+	/**
+	 * Returns my name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * No team
+	 */
+	public String getTeamName()
+	{
+		return null;
+	}
+
+	/**
+	 * Agents don't send messages
+	 */
+	public String outgoingMessage()
+	{
+		return null;
+	}
+
+	/**
+	 * Agents ignore messages
+	 */
+	public void incomingMessage(int botNum, String msg)
+	{
+	}
+
+	/**
+	 * No images
+	 */
+	public String[] imageNames()
+	{
+		return null;
+	}
+
+	/**
+	 * No images
+	 */
+	public void loadedImages(Image[] images)
+	{
+	}
+
+	/**
+	 * Starts the next round standing still
+	 */
+	public void newRound()
+	{
+		move = BattleBotArena.STAY;
+	}
+}
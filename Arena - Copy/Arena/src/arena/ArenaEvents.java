@@ -0,0 +1,277 @@
+package arena;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for the arena, so a recording shows what the arena
+ * was doing alongside the JVM's own events (GC pauses, JIT deoptimizations, lock
+ * contention and so on). There are events for each phase of a tick, each timed
+ * Bot method call, and for overheats, exceptions, kills and messages, all in the
+ * "Battle Bots" category. Record a match with e.g.
+ * <i>-XX:StartFlightRecording=filename=arena.jfr</i> and open it in JDK Mission
+ * Control.<br><br>
+ *
+ * The events are cheap enough to leave on. When no recording is running, begin(),
+ * end() and commit() do nothing. When one is, the fields are only filled in for
+ * events that will actually be recorded, and no stack traces are taken. Bot calls
+ * have a threshold of 1 ms, so a recording only keeps the slow ones, which is
+ * where a GC pause or deoptimization during a Bot call ends up. Change the
+ * threshold of <i>arena.BotCall</i> in the recording's settings to see every call.
+ * The events for a Bot call are created outside the part of the call that the Bot
+ * is charged for, so they don't count against its memory.
+ */
+final class ArenaEvents {
+
+	@Name("arena.TickPhase")
+	@Label("Tick Phase")
+	@Description("One phase of an arena tick (see playFrame)")
+	@Category("Battle Bots")
+	@StackTrace(false)
+	static final class TickPhase extends Event
+	{
+		@Label("Phase")
+		String phase;
+		@Label("Tick")
+		int tick;
+		@Label("Round")
+		int round;
+	}
+
+	@Name("arena.BotCall")
+	@Label("Bot Call")
+	@Description("A timed call to a Bot method")
+	@Category("Battle Bots")
+	@StackTrace(false)
+	@Threshold("1 ms")
+	static final class BotCall extends Event
+	{
+		@Label("Bot Number")
+		int bot;
+		@Label("Bot Name")
+		String botName;
+		@Label("Method")
+		String method;
+	}
+
+	@Name("arena.Overheat")
+	@Label("Overheat")
+	@Description("A Bot went over its CPU or memory limit")
+	@Category("Battle Bots")
+	@StackTrace(false)
+	static final class Overheat extends Event
+	{
+		@Label("Bot Number")
+		int bot;
+		@Label("Bot Name")
+		String botName;
+		@Label("Limit")
+		String limit;
+	}
+
+	@Name("arena.BotException")
+	@Label("Bot Exception")
+	@Description("A Bot method threw an exception")
+	@Category("Battle Bots")
+	@StackTrace(false)
+	static final class BotException extends Event
+	{
+		@Label("Bot Number")
+		int bot;
+		@Label("Bot Name")
+		String botName;
+		@Label("Exception")
+		String exception;
+	}
+
+	@Name("arena.Kill")
+	@Label("Kill")
+	@Description("A Bot's bullet killed another Bot")
+	@Category("Battle Bots")
+	@StackTrace(false)
+	static final class Kill extends Event
+	{
+		@Label("Killer Number")
+		int killer;
+		@Label("Killer Name")
+		String killerName;
+		@Label("Victim Number")
+		int victim;
+		@Label("Victim Name")
+		String victimName;
+		@Label("Tick")
+		int tick;
+	}
+
+	@Name("arena.MessageSent")
+	@Label("Message Sent")
+	@Description("A Bot sent a message")
+	@Category("Battle Bots")
+	@StackTrace(false)
+	static final class MessageSent extends Event
+	{
+		@Label("Bot Number")
+		int bot;
+		@Label("Bot Name")
+		String botName;
+		@Label("Channel")
+		int channel;
+		@Label("Length")
+		int length;
+	}
+
+	private ArenaEvents()
+	{
+	}
+
+	/**
+	 * Starts timing the first phase of a tick
+	 * @return The phase's event
+	 */
+	static TickPhase startPhase()
+	{
+		TickPhase event = new TickPhase();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends a phase of a tick and starts timing the next one
+	 * @param event The phase that has ended
+	 * @param phase Its name
+	 * @param tick The tick
+	 * @param round The round
+	 * @return The next phase's event
+	 */
+	static TickPhase nextPhase(TickPhase event, String phase, int tick, int round)
+	{
+		endPhase(event, phase, tick, round);
+		return startPhase();
+	}
+
+	/**
+	 * Ends the last phase of a tick
+	 * @param event The phase
+	 * @param phase Its name
+	 * @param tick The tick
+	 * @param round The round
+	 */
+	static void endPhase(TickPhase event, String phase, int tick, int round)
+	{
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.phase = phase;
+			event.tick = tick;
+			event.round = round;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Starts timing a Bot method call
+	 * @return The call's event
+	 */
+	static BotCall startCall()
+	{
+		BotCall event = new BotCall();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends a Bot method call
+	 * @param event The call
+	 * @param info The Bot that was called
+	 * @param method The method
+	 */
+	static void endCall(BotCall event, BotInfo info, String method)
+	{
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.bot = info.getBotNumber();
+			event.botName = info.getName();
+			event.method = method;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records an overheat
+	 * @param info The Bot
+	 * @param overCPU true if it went over the CPU limit, false for the memory limit
+	 */
+	static void overheat(BotInfo info, boolean overCPU)
+	{
+		Overheat event = new Overheat();
+		if (event.shouldCommit())
+		{
+			event.bot = info.getBotNumber();
+			event.botName = info.getName();
+			event.limit = overCPU ? "CPU" : "memory";
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records an exception thrown by a Bot
+	 * @param info The Bot
+	 * @param e The exception
+	 */
+	static void exception(BotInfo info, Exception e)
+	{
+		BotException event = new BotException();
+		if (event.shouldCommit())
+		{
+			event.bot = info.getBotNumber();
+			event.botName = info.getName();
+			event.exception = String.valueOf(e);
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records a kill
+	 * @param killer The Bot whose bullet it was
+	 * @param victim The Bot that was killed
+	 * @param tick The tick
+	 */
+	static void kill(BotInfo killer, BotInfo victim, int tick)
+	{
+		Kill event = new Kill();
+		if (event.shouldCommit())
+		{
+			event.killer = killer.getBotNumber();
+			event.killerName = killer.getName();
+			event.victim = victim.getBotNumber();
+			event.victimName = victim.getName();
+			event.tick = tick;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records a message sent by a Bot
+	 * @param info The Bot
+	 * @param channel The channel (see BattleBotArena.sendMessage())
+	 * @param length Length of the message after truncation
+	 */
+	static void message(BotInfo info, int channel, int length)
+	{
+		MessageSent event = new MessageSent();
+		if (event.shouldCommit())
+		{
+			event.bot = info.getBotNumber();
+			event.botName = info.getName();
+			event.channel = channel;
+			event.length = length;
+			event.commit();
+		}
+	}
+}
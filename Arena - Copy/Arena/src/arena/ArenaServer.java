@@ -0,0 +1,576 @@
+package arena;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import bots.Bot;
+import bots.Drone;
+import bots.ScrapBot;
+
+/**
+ * Hosts many independent matches in one JVM, each in its own headless arena with
+ * its own state (round, clock, Bots and Bullets). Matches don't have threads of
+ * their own. A single clock thread turns a timer wheel once per frame (1/30 s),
+ * and each match that is due is handed to a shared pool of worker threads, which
+ * plays its frames and puts it back on the wheel for the next tick. A match is
+ * only ever run by one worker at a time.<br><br>
+ *
+ * A paused or finished match is simply not on the wheel, so it costs no CPU, and
+ * when nothing is on the wheel the clock thread waits instead of ticking. Rounds
+ * follow on from each other without a pause until the match has a winner. For
+ * batch runs, <i>prepare()</i> sets up the next match in the background while
+ * the current one finishes.<br><br>
+ *
+ * The memory a match allocates while it is set up is measured (see
+ * <i>getSetupBytes()</i>). Headless arenas keep a short message log and no
+ * images or sounds, so most of a match's memory is its Bots.<br><br>
+ *
+ * Usage: <i>java arena.ArenaServer [matches] [botsPerMatch]</i> plays that many
+ * matches of Drones and ScrapBots and reports the time and memory they took.
+ */
+public class ArenaServer {
+
+	/**
+	 * Length of a frame in nanoseconds
+	 */
+	public static final long TICK_NANOS = 1000000000L/BattleBotArena.TICKS_PER_SECOND;
+	/**
+	 * Slots on the timer wheel (a power of 2)
+	 */
+	private static final int WHEEL_SLOTS = 256;
+
+	/**
+	 * The wheel. A match due on tick t is in slot t mod WHEEL_SLOTS, along with
+	 * any that are due a whole number of turns later.
+	 */
+	private final ArrayList<ArrayList<Match>> wheel = new ArrayList<ArrayList<Match>>(WHEEL_SLOTS);
+	/**
+	 * Number of matches on the wheel, and the tick the clock is on
+	 */
+	private int scheduled;
+	private long tick;
+	/**
+	 * Number of matches hosted and not finished
+	 */
+	private int active;
+	/**
+	 * Plays the matches
+	 */
+	private final ExecutorService workers;
+	/**
+	 * Turns the wheel
+	 */
+	private final Thread clock;
+	private boolean running = true;
+	/**
+	 * Rates the Bots on every match that is won, or null
+	 */
+	private volatile Ratings ratings;
+	/**
+	 * Keeps the stats of every round of the matches hosted from now on, or null
+	 */
+	private volatile ResultsStore results;
+
+	/**
+	 * Starts a server with a worker for every processor
+	 */
+	public ArenaServer()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Starts a server
+	 * @param threads Number of worker threads
+	 */
+	public ArenaServer(int threads)
+	{
+		for (int i=0; i<WHEEL_SLOTS; i++)
+			wheel.add(new ArrayList<Match>());
+		workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "ArenaServer worker");
+			t.setDaemon(true);
+			return t;
+		});
+		clock = new Thread(this::turn, "ArenaServer clock");
+		clock.setDaemon(true);
+		clock.start();
+	}
+
+	/**
+	 * Hosts a match in a full-size arena and starts it on the next tick
+	 * @param roster The Bots (the match keeps them)
+	 * @param seed Seed for shuffling and placing the Bots
+	 * @return The match
+	 */
+	public Match host(Bot[] roster, long seed)
+	{
+		return host(roster, seed, BattleBotArena.RIGHT_EDGE, BattleBotArena.BOTTOM_EDGE, BattleBotArena.NUM_BULLETS);
+	}
+
+	/**
+	 * Hosts a match and starts it on the next tick
+	 * @param roster The Bots (the match keeps them)
+	 * @param seed Seed for shuffling and placing the Bots
+	 * @param width Right edge of the playing area
+	 * @param height Bottom edge of the playing area
+	 * @param bulletsPerBot Number of bullets on screen at once for each Bot
+	 * @return The match
+	 */
+	public Match host(Bot[] roster, long seed, int width, int height, int bulletsPerBot)
+	{
+		Match match = setUp(roster, seed, width, height, bulletsPerBot);
+		match.resume();
+		return match;
+	}
+
+	/**
+	 * Sets up a match on a worker thread and leaves it paused, ready to go. For
+	 * batch runs: prepare the next match while the current one finishes, then
+	 * resume() it, and it starts on the next tick without waiting for its arena
+	 * to be built or its Bots' newRound() calls.
+	 * @param roster The Bots (the match keeps them)
+	 * @param seed Seed for shuffling and placing the Bots
+	 * @param width Right edge of the playing area
+	 * @param height Bottom edge of the playing area
+	 * @param bulletsPerBot Number of bullets on screen at once for each Bot
+	 * @return The match, once it is ready
+	 */
+	public Future<Match> prepare(Bot[] roster, long seed, int width, int height, int bulletsPerBot)
+	{
+		return workers.submit(() -> setUp(roster, seed, width, height, bulletsPerBot));
+	}
+
+	/**
+	 * Builds the arena for a match and sets up round 1
+	 * @param roster The Bots
+	 * @param seed Seed for shuffling and placing the Bots
+	 * @param width Right edge of the playing area
+	 * @param height Bottom edge of the playing area
+	 * @param bulletsPerBot Number of bullets on screen at once for each Bot
+	 * @return The match, paused
+	 */
+	private Match setUp(Bot[] roster, long seed, int width, int height, int bulletsPerBot)
+	{
+		long startAlloc = BattleBotArena.allocatedBytes();
+		BattleBotArena arena = new BattleBotArena(roster, seed, width, height, bulletsPerBot);
+		arena.setResults(results);
+		arena.startMatch();
+		Match match = new Match(arena, BattleBotArena.allocatedBytes()-startAlloc);
+		synchronized (this)
+		{
+			if (!running)
+				throw new IllegalStateException("ArenaServer has been shut down");
+			active++;
+		}
+		return match;
+	}
+
+	/**
+	 * Rates the Bots on the result of every match that is won from now on. The
+	 * ratings aren't saved -- call their save() method when it suits.
+	 * @param ratings The ratings, or null to stop rating
+	 */
+	public void setRatings(Ratings ratings)
+	{
+		this.ratings = ratings;
+	}
+
+	/**
+	 * Keeps the stats of every round of the matches hosted from now on
+	 * @param results The store, or null to stop keeping them
+	 */
+	public void setResults(ResultsStore results)
+	{
+		this.results = results;
+	}
+
+	/**
+	 * @return Number of matches hosted that haven't finished (including paused ones)
+	 */
+	public synchronized int getActiveMatches()
+	{
+		return active;
+	}
+
+	/**
+	 * @return Number of matches waiting on the wheel for their next frame
+	 */
+	public synchronized int getScheduledMatches()
+	{
+		return scheduled;
+	}
+
+	/**
+	 * Stops the clock and the workers. Matches still being played are left where
+	 * they are.
+	 */
+	public void shutdown()
+	{
+		synchronized (this)
+		{
+			running = false;
+			notifyAll();
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Puts a match on the wheel
+	 * @param match The match
+	 * @param ticks How many ticks from now it is due (at least 1)
+	 */
+	private synchronized void schedule(Match match, int ticks)
+	{
+		match.due = tick+ticks;
+		wheel.get((int)(match.due & (WHEEL_SLOTS-1))).add(match);
+		if (scheduled++ == 0)
+			notifyAll(); // wake the clock
+	}
+
+	/**
+	 * Takes a match off the wheel if it is on it
+	 * @param match The match
+	 * @return false if it wasn't on the wheel (it may be being played)
+	 */
+	private synchronized boolean unschedule(Match match)
+	{
+		if (!wheel.get((int)(match.due & (WHEEL_SLOTS-1))).remove(match))
+			return false;
+		scheduled--;
+		return true;
+	}
+
+	/**
+	 * Takes the matches due on the current tick off the wheel
+	 * @param due Filled with the matches
+	 */
+	private synchronized void takeDue(ArrayList<Match> due)
+	{
+		ArrayList<Match> slot = wheel.get((int)(tick & (WHEEL_SLOTS-1)));
+		for (int i=slot.size()-1; i>=0; i--)
+			if (slot.get(i).due <= tick)
+			{
+				due.add(slot.get(i));
+				slot.set(i, slot.get(slot.size()-1));
+				slot.remove(slot.size()-1);
+			}
+		scheduled -= due.size();
+	}
+
+	/**
+	 * The clock thread. Hands out the matches due on each tick, then sleeps until
+	 * the next one. With nothing scheduled it waits for schedule() to wake it, and
+	 * starts ticking again from then on rather than catching up.
+	 */
+	private void turn()
+	{
+		ArrayList<Match> due = new ArrayList<Match>();
+		long nextTick = System.nanoTime();
+		while (true)
+		{
+			synchronized (this)
+			{
+				try {
+					while (running && scheduled == 0)
+					{
+						wait();
+						nextTick = Math.max(nextTick, System.nanoTime());
+					}
+					long left;
+					while (running && (left = nextTick-System.nanoTime()) > 0)
+						wait(left/1000000, (int)(left%1000000));
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (!running)
+					return;
+				tick++;
+			}
+			takeDue(due);
+			for (Match match : due)
+				try {
+					workers.execute(match);
+				} catch (RejectedExecutionException e) {
+					return; // shut down
+				}
+			due.clear();
+			nextTick += TICK_NANOS;
+			if (System.nanoTime()-nextTick > TICK_NANOS*WHEEL_SLOTS) // fell far behind (machine asleep?)
+				nextTick = System.nanoTime();
+		}
+	}
+
+	/**
+	 * One match hosted by the server
+	 */
+	public class Match implements Runnable {
+
+		/**
+		 * The match's arena (only touched by the worker playing it)
+		 */
+		private final BattleBotArena arena;
+		/**
+		 * Bytes allocated setting up the match
+		 */
+		private final long setupBytes;
+		/**
+		 * Frames played each tick
+		 */
+		private volatile int framesPerTick = 1;
+		/**
+		 * The tick the match is due on (guarded by the server)
+		 */
+		private long due;
+		/**
+		 * True if the match is on the wheel or being played, if it is paused, and
+		 * once it is over
+		 */
+		private boolean scheduled, paused, finished;
+		/**
+		 * Round reached, frames played in all, and the winner (guarded by the match)
+		 */
+		private int round = 1, winner = -1;
+		private long frames;
+
+		/**
+		 * @param arena The arena, with its match started
+		 * @param setupBytes Bytes allocated setting it up
+		 */
+		private Match(BattleBotArena arena, long setupBytes)
+		{
+			this.arena = arena;
+			this.setupBytes = setupBytes;
+			paused = true;
+		}
+
+		/**
+		 * Plays this tick's frames. Called by a worker.
+		 */
+		public void run()
+		{
+			synchronized (this)
+			{
+				if (paused || finished)
+				{
+					scheduled = false;
+					return;
+				}
+			}
+			boolean over = false;
+			int played = 0;
+			try {
+				for (; played < framesPerTick && !over; played++)
+				{
+					arena.step();
+					if (arena.isMatchOver() && !arena.nextRound())
+						over = true;
+				}
+			} catch (RuntimeException e) {
+				System.err.println("ArenaServer: match stopped ("+e+")");
+				e.printStackTrace();
+				over = true;
+			}
+			synchronized (this)
+			{
+				frames += played;
+				round = arena.getRound();
+				if (finished) // stopped while playing
+					return;
+				if (over)
+				{
+					winner = arena.hasWinner() ? arena.getWinner() : -1;
+					Ratings r = ratings;
+					if (r != null && winner >= 0)
+						r.record(arena);
+					finish();
+					return;
+				}
+				if (paused)
+				{
+					scheduled = false;
+					return;
+				}
+			}
+			schedule(this, 1);
+		}
+
+		/**
+		 * Stops playing the match until resume() is called. A frame already being
+		 * played is finished.
+		 */
+		public void pause()
+		{
+			synchronized (this)
+			{
+				paused = true;
+			}
+			// if it isn't on the wheel, it's being played and run() will see the pause
+			if (unschedule(this))
+				synchronized (this)
+				{
+					if (paused)
+						scheduled = false;
+				}
+		}
+
+		/**
+		 * Carries on with a paused match (or starts a prepared one)
+		 */
+		public void resume()
+		{
+			synchronized (this)
+			{
+				paused = false;
+				if (scheduled || finished)
+					return;
+				scheduled = true;
+			}
+			schedule(this, 1);
+		}
+
+		/**
+		 * Stops the match for good
+		 */
+		public void stop()
+		{
+			unschedule(this);
+			synchronized (this)
+			{
+				if (!finished)
+					finish();
+			}
+		}
+
+		/**
+		 * Marks the match finished and wakes anyone waiting for it
+		 */
+		private void finish()
+		{
+			finished = true;
+			scheduled = false;
+			synchronized (ArenaServer.this)
+			{
+				active--;
+			}
+			notifyAll();
+		}
+
+		/**
+		 * Sets how many frames the match plays per tick. 1 is normal speed. Batch
+		 * runs can play many frames per tick, up to as fast as the workers can go.
+		 * @param framesPerTick Frames per tick (at least 1)
+		 */
+		public void setSpeed(int framesPerTick)
+		{
+			this.framesPerTick = Math.max(1, framesPerTick);
+		}
+
+		/**
+		 * @return true if the match is paused
+		 */
+		public synchronized boolean isPaused()
+		{
+			return paused;
+		}
+
+		/**
+		 * @return true once the match has a winner or has been stopped
+		 */
+		public synchronized boolean isFinished()
+		{
+			return finished;
+		}
+
+		/**
+		 * Waits for the match to finish
+		 * @throws InterruptedException If the wait is interrupted
+		 */
+		public synchronized void awaitFinish() throws InterruptedException
+		{
+			while (!finished)
+				wait();
+		}
+
+		/**
+		 * @return The round being played (or the last one, once finished)
+		 */
+		public synchronized int getRound()
+		{
+			return round;
+		}
+
+		/**
+		 * @return Frames played so far in all rounds
+		 */
+		public synchronized long getFramesPlayed()
+		{
+			return frames;
+		}
+
+		/**
+		 * @return Name of the winner, or null if the match hasn't been won
+		 */
+		public synchronized String getWinner()
+		{
+			return winner < 0 ? null : arena.getBotInfo(winner).getName();
+		}
+
+		/**
+		 * @return Bytes allocated creating the arena and setting up round 1 (0 if
+		 * the JVM can't count allocations)
+		 */
+		public long getSetupBytes()
+		{
+			return setupBytes;
+		}
+	}
+
+	/**
+	 * Plays a batch of matches as fast as possible and reports on them
+	 * @param args Number of matches, Bots per match
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public static void main(String[] args) throws InterruptedException
+	{
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int numBots = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		ArenaServer server = new ArenaServer();
+		Runtime rt = Runtime.getRuntime();
+		System.gc();
+		long usedBefore = rt.totalMemory()-rt.freeMemory();
+		long start = System.nanoTime(), setup = 0;
+		Match[] matches = new Match[count];
+		for (int m=0; m<count; m++)
+		{
+			Bot[] roster = new Bot[numBots];
+			for (int i=0; i<numBots; i++)
+				roster[i] = i%4 == 0 ? new ScrapBot() : new Drone();
+			matches[m] = server.host(roster, m);
+			matches[m].setSpeed(1000);
+			setup += matches[m].getSetupBytes();
+		}
+		System.gc();
+		long usedAfter = rt.totalMemory()-rt.freeMemory();
+		long frames = 0;
+		for (Match match : matches)
+		{
+			match.awaitFinish();
+			frames += match.getFramesPlayed();
+		}
+		double seconds = (System.nanoTime()-start)/1e9;
+		System.out.println(count+" matches of "+numBots+" Bots: "+frames+" frames in "+Math.round(seconds*10)/10.0+" s");
+		System.out.println("Allocated setting up each match: "+setup/count/1024+" KB");
+		System.out.println("Heap held by each match (Bots included): "+Math.max(0, usedAfter-usedBefore)/count/1024+" KB");
+		server.shutdown();
+	}
+}
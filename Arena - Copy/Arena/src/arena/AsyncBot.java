@@ -0,0 +1,326 @@
+package arena;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import bots.Bot;
+
+/**
+ * Runs one Bot on its own thread for the arena's asynchronous move mode (see
+ * ASYNC_MOVES in BattleBotArena). Each frame the arena takes the last move the
+ * Bot posted and shows it the new frame. The Bot's thread picks up the newest
+ * frame it has been shown (skipping any it was too slow for), thinks, and posts
+ * its move into a one-move mailbox. A SEND_MESSAGE move is posted together with
+ * its message and channel, so the arena always gets the message that goes with
+ * the move it takes.<br><br>
+ *
+ * Everything else the arena would normally call on the Bot during a frame
+ * (getTeamName, outgoingMessage, messageChannel, incomingMessage) also runs on the
+ * Bot's thread. The exception is <i>draw()</i>: the arena paints on its own thread,
+ * so an asynchronous Bot's draw() can run while its thread is in getMove(). Bots
+ * that draw from fields they change in getMove() should expect to see them
+ * half-updated. Time and memory used on the Bot's thread are added up here and
+ * charged to the Bot by the arena at the next frame.<br><br>
+ *
+ * A Bot that is still thinking when the round ends is given until the deadline to
+ * finish. If its thread is still running after that, the arena doesn't start the
+ * Bot's next round until it has finished (see <i>isRunning()</i>).
+ */
+class AsyncBot implements Runnable {
+
+	/**
+	 * Value of the move before the Bot has made one
+	 */
+	private static final int NO_MOVE = -1;
+
+	/**
+	 * The Bot
+	 */
+	private final Bot bot;
+	/**
+	 * The Bot's thread
+	 */
+	private final Thread thread;
+	/**
+	 * Cleared to stop the thread
+	 */
+	private volatile boolean running = true;
+	/**
+	 * The newest frame shown to the Bot (guarded by this)
+	 */
+	private BotInfo me;
+	private boolean shotOK;
+	private BotInfo[] liveBots, deadBots;
+	private Bullet[] bullets;
+	private WorldState world;
+	/**
+	 * Number of frames shown / number of frames the Bot has finished with
+	 */
+	private long shown;
+	private volatile long finished;
+	/**
+	 * System.nanoTime() by which the move for the newest frame is due
+	 */
+	private volatile long deadline;
+	/**
+	 * The last move posted, or null
+	 */
+	private final AtomicReference<Posted> mailbox = new AtomicReference<Posted>();
+	/**
+	 * Latest team name
+	 */
+	private volatile String team;
+	/**
+	 * Time and memory used since the arena last collected them
+	 */
+	private final AtomicLong thinkNanos = new AtomicLong(), allocated = new AtomicLong();
+	/**
+	 * Exceptions thrown since the arena last collected them
+	 */
+	private final ConcurrentLinkedQueue<Exception> exceptions = new ConcurrentLinkedQueue<Exception>();
+	/**
+	 * Messages waiting to be delivered to the Bot
+	 */
+	private final ConcurrentLinkedQueue<Message> inbox = new ConcurrentLinkedQueue<Message>();
+
+	/**
+	 * Starts a thread for a Bot
+	 * @param bot The Bot
+	 * @param team The Bot's team name at the start of the round
+	 */
+	AsyncBot(Bot bot, String team)
+	{
+		this.bot = bot;
+		this.team = team;
+		thread = new Thread(this, "Bot "+bot.getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Called by the arena after taking a move. Shows the Bot a new frame.
+	 * @param me Copy of the Bot's info
+	 * @param shotOK True if the Bot can fire
+	 * @param liveBots Copies of the other live Bots
+	 * @param deadBots Copies of the dead Bots
+	 * @param bullets Copies of the Bullets
+	 * @param world The frame's snapshot, or null
+	 * @param budgetNanos How long the Bot has to post its move
+	 */
+	synchronized void show(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets, WorldState world, long budgetNanos)
+	{
+		this.me = me;
+		this.shotOK = shotOK;
+		this.liveBots = liveBots;
+		this.deadBots = deadBots;
+		this.bullets = bullets;
+		this.world = world;
+		deadline = System.nanoTime()+budgetNanos;
+		shown++;
+		notify();
+	}
+
+	/**
+	 * Called by the arena at tick time. If the Bot is still thinking about the
+	 * newest frame, waits for it until the deadline.
+	 * @return The last move posted since the previous call (possibly for an older
+	 * frame), or null
+	 */
+	Posted takeMove()
+	{
+		long shownNow;
+		synchronized (this)
+		{
+			shownNow = shown;
+		}
+		while (finished < shownNow)
+		{
+			long left = deadline-System.nanoTime();
+			if (left <= 0)
+				break;
+			LockSupport.parkNanos(Math.min(left, 50000));
+		}
+		return mailbox.getAndSet(null);
+	}
+
+	/**
+	 * Queues a broadcast message for the Bot's thread to deliver
+	 * @param botNum The sender
+	 * @param msg The message
+	 */
+	void queueMessage(int botNum, String msg)
+	{
+		inbox.add(new Message(botNum, msg));
+	}
+
+	/**
+	 * Charges the Bot for everything it did on its thread since the last call
+	 * @param info The arena's info for the Bot
+	 * @param nanoTimeCorrection The arena's correction for System.nanoTime()
+	 */
+	void charge(BotInfo info, double nanoTimeCorrection)
+	{
+		info.setThinkTime(thinkNanos.getAndSet(0)*nanoTimeCorrection);
+		info.addAllocatedBytes(allocated.getAndSet(0));
+		info.setTeamName(team);
+		Exception e;
+		while ((e = exceptions.poll()) != null)
+			info.exceptionThrown(e);
+	}
+
+	/**
+	 * Stops the thread (a Bot that is in the middle of a method finishes it first)
+	 */
+	void stop()
+	{
+		running = false;
+		synchronized (this)
+		{
+			notify();
+		}
+	}
+
+	/**
+	 * @return true until the thread has finished (after stop(), the Bot may still be in one of its methods)
+	 */
+	boolean isRunning()
+	{
+		return thread.isAlive();
+	}
+
+	/**
+	 * @return The Bot
+	 */
+	Bot getBot()
+	{
+		return bot;
+	}
+
+	/**
+	 * Waits for the thread to finish after stop()
+	 * @param millis Longest time to wait
+	 */
+	void join(long millis)
+	{
+		try {
+			thread.join(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The Bot's thread: wait for a frame, think, post the move
+	 */
+	public void run()
+	{
+		long seen = 0;
+		while (running)
+		{
+			BotInfo me;
+			boolean shotOK;
+			BotInfo[] liveBots, deadBots;
+			Bullet[] bullets;
+			WorldState world;
+			synchronized (this)
+			{
+				while (running && shown == seen)
+				{
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (!running)
+					return;
+				seen = shown;
+				me = this.me;
+				shotOK = this.shotOK;
+				liveBots = this.liveBots;
+				deadBots = this.deadBots;
+				bullets = this.bullets;
+				world = this.world;
+			}
+
+			// BOT METHOD CALLS - timed and exceptions caught
+			ArenaEvents.BotCall call = ArenaEvents.startCall();
+			long startAlloc = BattleBotArena.allocatedBytes();
+			long startThink = System.nanoTime();
+			Message m;
+			while ((m = inbox.poll()) != null)
+			{
+				try {
+					bot.incomingMessage(m.botNum, m.msg);
+				} catch (Exception e) {
+					exceptions.add(e);
+				}
+			}
+			int move = NO_MOVE;
+			String msg = null;
+			int channel = BattleBotArena.CHANNEL_ALL;
+			try {
+				team = bot.getTeamName();
+				if (world != null)
+					bot.assignWorld(world);
+				move = bot.getMove(me, shotOK, liveBots, deadBots, bullets);
+				if (move == BattleBotArena.SEND_MESSAGE)
+				{
+					msg = bot.outgoingMessage();
+					channel = bot.messageChannel();
+				}
+			} catch (Exception e) {
+				exceptions.add(e);
+			}
+			thinkNanos.addAndGet(System.nanoTime()-startThink);
+			allocated.addAndGet(BattleBotArena.allocatedBytes()-startAlloc);
+			ArenaEvents.endCall(call, me, "getMove (asynchronous)");
+			// ***********************
+
+			if (move != NO_MOVE)
+				mailbox.set(new Posted(move, msg, channel));
+			finished = seen;
+		}
+	}
+
+	/**
+	 * A move posted by the Bot, with the message and channel that go with a
+	 * SEND_MESSAGE move
+	 */
+	static final class Posted {
+
+		final int move;
+		final String message;
+		final int channel;
+
+		Posted(int move, String message, int channel)
+		{
+			this.move = move;
+			this.message = message;
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * A broadcast message waiting for delivery
+	 */
+	private static class Message {
+
+		/**
+		 * The sender
+		 */
+		final int botNum;
+		/**
+		 * The message
+		 */
+		final String msg;
+
+		Message(int botNum, String msg)
+		{
+			this.botNum = botNum;
+			this.msg = msg;
+		}
+	}
+}
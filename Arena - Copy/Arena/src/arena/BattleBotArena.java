@@ -15,10 +15,17 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -34,7 +41,8 @@ import bots.*;
  * multiple round tournament under the control of a BattleBotsArena object. For instructions
  * on how to create a Bot, see the documentation in
  * the class named <i>Bot</i>. For instructions on how to add Bots to the arena,
- * see the documentation for the <i>fullReset()</i> method in this class.<br><br>
+ * see the documentation for the <i>fullReset()</i> method in this class, or use a
+ * roster file (see the <i>BotLoader</i> class).<br><br>
  *
  * <b>The Game Engine</b><br><br>
  *
@@ -48,17 +56,19 @@ import bots.*;
  *
  * 	  <li>Processes the move only if it is legal (i.e. moves are allowed only if no collisions; bullets and messages are allowed only if the max number of bullets is not exceeded)</li>
  *
- * 	  <li>If the move was SEND_MESSAGE, calls <i>b.outGoingMessage()</i> to get the message from the Bot, then broadcasts it to all live Bots using <i>b.incomingMessage(int, msg)</i></li>
+ * 	  <li>If the move was SEND_MESSAGE, calls <i>b.outGoingMessage()</i> to get the message from the Bot and <i>b.messageChannel()</i> to find out who it is for, then delivers it at the end of the frame to those live Bots using <i>b.incomingMessage(int, msg)</i> (or <i>b.incomingMessages(MessageBatch)</i>)</li>
  *
  * 	  <li>Draws each Bot using <i>b.draw(Graphics)</i></li></ol>
  * <br>
  * <b>Timing</b><br><br>
  *
- * The clock records real time in seconds regardless of the actual number of frames
- * that have been processed. The clock will run faster when the play is sped up to x2,
- * x4, or x8 (do this by mousing over the clock and using the scroll wheel). However, depending
- * on the speed of your computer, you may not get 2x, 4x, or 8x as many frames in that time,
- * so you should test your Bots at regular speed whenever possible. <br><br>
+ * The clock counts ticks (frames), not real time. Every round lasts exactly
+ * TIME_LIMIT * TICKS_PER_SECOND ticks, and times of death, message limits and
+ * scores are all worked out from the tick count, so a match plays out the same on a
+ * fast or a slow computer, headless or on screen. Play can be sped up to x2, x4, or
+ * x8 (do this by mousing over the clock and using the scroll wheel), which plays
+ * more ticks per real second. If your computer can't keep up, the game simply runs
+ * slower than the clock on the wall. <br><br>
  *
  * <b>Bot Movement</b> <br><br>
  *
@@ -104,7 +114,9 @@ import bots.*;
  * Bot exceeds 2 seconds (configurable using the static constants), the Bot will
  * <i>overheat</i> and become disabled. At this point, the Bot is replaced by a stock image
  * symbol and there will be no more method calls to that particular Bot for
- * the remainder of the round.<br><br>
+ * the remainder of the round. The memory allocated during each Bot method call is
+ * measured in the same way, shown in the stats, and can also be capped (see
+ * <i>ALLOCATION_LIMIT</i>).<br><br>
  *
  * <b>Buggy Bots</b><br><br>
  *
@@ -239,6 +251,14 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 * The "bot id" that indicates a system message
 	 */
 	public static final int SYSTEM_MSG = -1;
+	/**
+	 * Message channel for a broadcast to all Bots (see Bot.messageChannel())
+	 */
+	public static final int CHANNEL_ALL = -1;
+	/**
+	 * Message channel for the Bots on the sender's team (see Bot.messageChannel())
+	 */
+	public static final int CHANNEL_TEAM = -2;
 
 	//*****************************************
 	// GAME CONFIGURATION - CHANGE WITH CAUTION
@@ -273,14 +293,60 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 * Round time, in seconds
 	 */
 	public static final int 	TIME_LIMIT = 90;
+	/**
+	 * Frames (ticks) played per second of game time. Each tick advances the game
+	 * clock by exactly 1/TICKS_PER_SECOND seconds, however long it takes to play.
+	 */
+	public static final int 	TICKS_PER_SECOND = 30;
+	/**
+	 * Most ticks played at once to catch up after the arena falls behind. Any more
+	 * than that are skipped, and the game runs slower than the clock on the wall.
+	 */
+	public static final int 	MAX_CATCH_UP = 8;
+	/**
+	 * Round length in ticks
+	 */
+	public static final int 	TIME_LIMIT_TICKS = TIME_LIMIT*TICKS_PER_SECOND;
 	/**
 	 * TIME_LIMIT / SECS_PER_MSG = Number of messages allowed per round
 	 */
 	public static final double 	SECS_PER_MSG = 5;
+	/**
+	 * Number of messages each Bot can send per round (TIME_LIMIT / SECS_PER_MSG)
+	 */
+	public static final int 	MESSAGES_PER_ROUND = (int)(TIME_LIMIT/SECS_PER_MSG);
 	/**
 	 * CPU limit per Bot per round
 	 */
 	public static final double 	PROCESSOR_LIMIT = 2.0;
+	/**
+	 * Memory allocation limit per Bot per round, in bytes (0 = no limit). Works
+	 * like PROCESSOR_LIMIT: a Bot that allocates more than this overheats.
+	 */
+	public static final long 	ALLOCATION_LIMIT = 0;
+	/**
+	 * If true, each Bot that uses the array version of getMove() thinks on its own
+	 * thread and posts its moves to the arena, so a slow Bot can't hold up the frame
+	 * (see the AsyncBot class). The arena still calls draw() on its own thread, so
+	 * it can run while the Bot is in getMove(). Turn it on with -Darena.asyncMoves=true.
+	 */
+	public static final boolean ASYNC_MOVES = Boolean.getBoolean("arena.asyncMoves");
+	/**
+	 * In asynchronous mode, the time in seconds a Bot has to post a move after being
+	 * shown a frame. A Bot that misses it STAYs. Time spent thinking past the
+	 * deadline still counts toward PROCESSOR_LIMIT.
+	 */
+	public static final double	ASYNC_DEADLINE = 1.0/30;
+	/**
+	 * The time in seconds that Bots running in other processes have to answer each
+	 * frame (see RemoteHub). A remote Bot that misses it STAYs.
+	 */
+	public static final double	REMOTE_DEADLINE = 1.0/30;
+	/**
+	 * With at least this many Bots, their newRound() calls are made in parallel
+	 * between rounds, so a big roster doesn't stall the arena while each Bot sets up
+	 */
+	public static final int 	PARALLEL_NEW_ROUND = 64;
 	/**
 	 * Total number of Bots in round 1 (if you have fewer than this, the rest of the spots
 	 * in the array will be filled with Drones, RandBots, and Sentries).
@@ -302,6 +368,11 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 * Maximum message length
 	 */
 	public static final int MAX_MESSAGE_LENGTH = 200;
+	/**
+	 * With at least this many Bots, a frame's messages are delivered to the Bots
+	 * in parallel
+	 */
+	public static final int PARALLEL_DELIVERY_BOTS = 64;
 
 	//**************************************
 	// OTHER ARENA CONSTANTS -- DON'T CHANGE
@@ -471,13 +542,16 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 */
 	private Image overheated;
 	/**
-	 * For timing the game length
+	 * For timing the game length: when the clock was last started, and the ticks
+	 * played since then
 	 */
-	private long startTime;
+	private long startTime, ticksSinceStart;
 	/**
-	 * For continuing correct timing after a pause
+	 * Tick lag for the round: ticks that were played late to catch up, ticks that
+	 * were skipped because the arena fell too far behind, and the most ticks that
+	 * were due at once
 	 */
-	private long pauseTime;
+	private int caughtUpTicks, skippedTicks, worstLag;
 	/**
 	 * On some machines, System.nanoTime() returns incorrect results. For example, on one machine
 	 * System.currentTimeMillis() shows 10 seconds elapsed while System.nanoTime() consistently shows
@@ -489,9 +563,14 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 */
 	private double nanoTimeCorrection = 1;
 	/**
-	 * Total time played
+	 * Used to measure the bytes allocated during each Bot method call, or null if
+	 * the JVM does not support per-thread allocation counting.
 	 */
-	private double timePlayed = 0;
+	private static final com.sun.management.ThreadMXBean allocationCounter = allocationCounter();
+	/**
+	 * The game clock: ticks played this round (see timePlayed())
+	 */
+	private int ticksPlayed = 0;
 	/**
 	 * Object for formatting decimals
 	 */
@@ -525,9 +604,162 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 */
 	private int botsLeft = NUM_BOTS;
 	/**
-	 * Message buffer
+	 * Number of bots in the arena. Always NUM_BOTS, except for headless arenas
+	 * which take the size of the roster they are given.
+	 */
+	private int numBots = NUM_BOTS;
+	/**
+	 * True for arenas built for benchmarks and batch runs. A headless arena has no
+	 * window, sound, images, calibration thread or game timer, and only advances
+	 * when step() is called.
+	 */
+	private boolean headless = false;
+	/**
+	 * True if Bots think on their own threads (see ASYNC_MOVES)
+	 */
+	private boolean asyncMoves = ASYNC_MOVES;
+	/**
+	 * The thread running each Bot in asynchronous mode (null for Bots called directly)
+	 */
+	private AsyncBot[] asyncBots = new AsyncBot[NUM_BOTS];
+	/**
+	 * Threads of asynchronous Bots that were stopped but hadn't finished yet
+	 */
+	private final ArrayList<AsyncBot> lingering = new ArrayList<AsyncBot>();
+	/**
+	 * Messages waiting to be delivered to the Bots (see sendMessage)
+	 */
+	private MessageBus bus = new MessageBus(16);
+	/**
+	 * True while playFrame() is running, when messages are held for delivery at the end of the frame
+	 */
+	private boolean inFrame;
+	/**
+	 * Which Bots take their messages in a batch this round (see Bot.usesMessageBatch()),
+	 * and their batches
+	 */
+	private boolean[] batchUsers = new boolean[NUM_BOTS];
+	private MessageBatch[] batches;
+	/**
+	 * Team numbers for matching team messages during delivery (see teamIds())
+	 */
+	private int[] teamIds;
+	/**
+	 * The hub of the remote Bots playing this round, or null (see RemoteHub)
+	 */
+	private RemoteHub remoteHub;
+	/**
+	 * The remote Bots that joined when the arena started (see addRemoteBots())
+	 */
+	private RemoteBot[] remoteBots;
+	/**
+	 * Streams the match to viewers, or null (see SpectatorServer)
+	 */
+	private SpectatorServer spectators;
+	/**
+	 * Rates the Bots on the result of every match, or null (see Ratings)
+	 */
+	private Ratings ratings;
+	/**
+	 * Keeps the stats of every round, or null (see ResultsStore), and the number
+	 * of the match being stored
+	 */
+	private ResultsStore results;
+	private int resultsMatch;
+	/**
+	 * Shots, hits, kills and bumps in the current round, for the results store
+	 * (null if there is no store)
+	 */
+	private Interactions interactions;
+	/**
+	 * Copies of the live Bots and the Bullets for the asynchronous Bots (see step B in playFrame)
+	 */
+	private BotInfo[] frameLiveCopies;
+	private Bullet[] frameBulletCopies;
+	/**
+	 * Number of bullets on screen at once for each bot. Always NUM_BULLETS, except
+	 * for headless arenas, which can be configured for scaling runs.
+	 */
+	private int numBullets = NUM_BULLETS;
+	/**
+	 * Right and bottom edges of the playing area. Always RIGHT_EDGE and BOTTOM_EDGE,
+	 * except for headless arenas, which can be configured for scaling runs. (The Bots
+	 * only know about the constants.)
+	 */
+	private int rightEdge = RIGHT_EDGE, bottomEdge = BOTTOM_EDGE;
+	/**
+	 * Random numbers for shuffling and placing the Bots. Headless arenas can be seeded
+	 * so that runs are repeatable.
+	 */
+	private Random random = new Random();
+	/**
+	 * Live bots for the current frame (see step B in playFrame)
 	 */
-	private LinkedList<String> messages = new LinkedList<String>();
+	private BotInfo[] frameLiveBots;
+	/**
+	 * Deep copies of the dead bots for the current frame (see step B in playFrame)
+	 */
+	private BotInfo[] frameDeadBots;
+	/**
+	 * Bullets in play for the current frame (see step B in playFrame)
+	 */
+	private LinkedList<Bullet> frameBullets;
+	/**
+	 * Snapshot of the current frame for Bots that look ahead (see step B in playFrame)
+	 */
+	private WorldState frameWorld;
+	/**
+	 * Which Bots asked for the snapshot this round (see Bot.usesWorldState())
+	 */
+	private boolean[] worldUsers = new boolean[NUM_BOTS];
+	/**
+	 * True if any Bot asked for the snapshot this round
+	 */
+	private boolean worldUsed;
+	/**
+	 * Primitive copy of the current frame, read through the Bots' WorldViews (see step B in playFrame)
+	 */
+	private FrameStore frameStore;
+	/**
+	 * Each Bot's view of frameStore
+	 */
+	private WorldView[] views;
+	/**
+	 * Which Bots take a WorldView instead of arrays this round (see Bot.usesWorldView())
+	 */
+	private boolean[] viewUsers = new boolean[NUM_BOTS];
+	/**
+	 * True if any Bot takes a WorldView / still takes the arrays this round
+	 */
+	private boolean viewUsed, legacyUsed = true;
+	/**
+	 * Changes since the last frame, for the Bots that asked for them (see step B in playFrame)
+	 */
+	private DeltaFeed deltaFeed;
+	/**
+	 * Which Bots asked for the delta feed this round (see Bot.usesDeltaFeed())
+	 */
+	private boolean[] deltaUsers = new boolean[NUM_BOTS];
+	/**
+	 * Spatial index of the current frame (see step B in playFrame)
+	 */
+	private SpatialIndex frameSpace;
+	/**
+	 * Which Bots asked for the spatial index this round (see Bot.usesSpatialIndex())
+	 */
+	private boolean[] spaceUsers = new boolean[NUM_BOTS];
+	/**
+	 * True if any Bot asked for the spatial index this round
+	 */
+	private boolean spaceUsed;
+	/**
+	 * Message buffer (the GUI also archives old messages to a file, see init())
+	 */
+	private MessageLog messages = new MessageLog(null, MessageLog.HEADLESS_CAPACITY);
+	/**
+	 * Frames played this round, for stamping messages
+	 */
+	private int framesPlayed;
 	/**
 	 * The images to use in instant replay. This is a circular buffer.
 	 */
@@ -557,6 +789,19 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 * loaded.
 	 */
 	private LinkedList<Image> imagesToLoad = new LinkedList<Image>();
+	/**
+	 * Every image a Bot has asked for, by file name, so each is only fetched once
+	 * however many rounds are played
+	 */
+	private HashMap<String, Image> imageCache = new HashMap<String, Image>();
+	/**
+	 * Finds and creates Bots from a roster file (created the first time a roster is used)
+	 */
+	private BotLoader botLoader;
+	/**
+	 * Reloads Bots whose class files have changed, or null if not watching for changes
+	 */
+	private BotReloader botReloader;
 	/**
 	 * Holds an audioclip for arena sound.
 	 */
@@ -608,6 +853,13 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 
 		// *******************************
 
+		// *** To pick the players from a roster file instead, run the arena
+		// *** with -Darena.roster=<file> (see the BotLoader class). The roster
+		// *** replaces the Bots above.
+		watchBotClasses();
+		loadRoster();
+		addRemoteBots();
+
 		// Remaining slots filled with Drones, RandBots, and sentryBots.
 		int c = 1;
 		for (int i=0; i<NUM_BOTS; i++)
@@ -634,6 +886,76 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	// METHODS YOU SHOULD *NOT* CHANGE
 	//***************************************
 
+	/**
+	 * Starts watching the directory of Bot classes named by the arena.botClasses
+	 * system property, if it is set. Bots whose class files change there are
+	 * reloaded at the start of the next round (see BotReloader).
+	 */
+	private void watchBotClasses()
+	{
+		String classesDir = System.getProperty(BotReloader.CLASSES_PROPERTY);
+		if (classesDir == null || botReloader != null)
+			return;
+		try {
+			botReloader = new BotReloader(new File(classesDir));
+		} catch (IOException e) {
+			System.err.println("Could not watch "+classesDir+" ("+e+")");
+		}
+	}
+
+	/**
+	 * Replaces the Bots with the ones in the roster file named by the arena.roster
+	 * system property, if it is set. Entries past NUM_BOTS are never created, and empty
+	 * slots are left for fullReset() to fill.
+	 */
+	private void loadRoster()
+	{
+		String rosterFile = System.getProperty(BotLoader.ROSTER_PROPERTY);
+		if (rosterFile == null)
+			return;
+		if (botLoader == null)
+			botLoader = new BotLoader(new File(System.getProperty(BotLoader.BOTS_DIR_PROPERTY, BotLoader.DEFAULT_BOTS_DIR)), botReloader);
+		try {
+			Bot[] roster = botLoader.loadRoster(new File(rosterFile), NUM_BOTS);
+			bots = new Bot[NUM_BOTS];
+			for (int i=0; i<Math.min(roster.length, NUM_BOTS); i++)
+			{
+				bots[i] = roster[i];
+				if (bots[i] instanceof HumanBot)
+					addKeyListener((HumanBot)bots[i]);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not read roster "+rosterFile+" ("+e+")");
+		}
+	}
+
+	/**
+	 * Puts the remote Bots in empty slots. The first time, waits for the number of
+	 * remote Bots named by the arena.remoteBots system property to connect to the
+	 * port named by arena.remotePort (see RemoteHub).
+	 */
+	private void addRemoteBots()
+	{
+		int count = Integer.getInteger(RemoteHub.COUNT_PROPERTY, 0);
+		if (count <= 0)
+			return;
+		if (remoteBots == null)
+		{
+			try {
+				RemoteHub hub = new RemoteHub(Integer.getInteger(RemoteHub.PORT_PROPERTY, RemoteHub.DEFAULT_PORT));
+				System.out.println("Waiting for "+count+" remote Bots on port "+hub.getPort());
+				remoteBots = hub.accept(count, RemoteHub.ACCEPT_TIMEOUT);
+			} catch (IOException e) {
+				System.err.println("Could not host remote Bots ("+e+")");
+				remoteBots = new RemoteBot[0];
+			}
+		}
+		int next = 0;
+		for (int i=0; i<NUM_BOTS && next<remoteBots.length; i++)
+			if (bots[i] == null)
+				bots[i] = remoteBots[next++];
+	}
+
 	/**
 	 * Main method to create and display the arena
 	 * @param args unused
@@ -660,7 +982,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 		// start the calibration timer (see run method below for more info)
 		(new Thread(this)).start();
 		// create the game thread
-		gameTimer = new Timer(1000/30/speed,this);
+		gameTimer = new Timer(1000/TICKS_PER_SECOND/speed,this);
 		// sounds
 		URL location = getClass().getClassLoader().getResource("sounds/"+fanfareSoundFile);
 		fanfare = Applet.newAudioClip(location);
@@ -690,8 +1012,132 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 		setFocusable(true);
 	}
 
+	/**
+	 * Creates a headless arena for benchmarks and batch runs. Nothing is loaded and
+	 * no threads are started. Call startMatch() to set up round 1, then step() to
+	 * play it one frame at a time. The arena is the usual size if the roster has
+	 * room to move in it, and otherwise the same shape scaled up until it does (see
+	 * fitScale()).
+	 * @param roster The Bots to play
+	 */
+	BattleBotArena(Bot[] roster)
+	{
+		this(roster, System.nanoTime(), (int)(RIGHT_EDGE*fitScale(roster.length)), (int)(BOTTOM_EDGE*fitScale(roster.length)), NUM_BULLETS);
+	}
+
+	/**
+	 * Creates a headless arena with its own size, bullet limit and random seed. The
+	 * seed only covers the arena's own shuffling and placement. Bots that call
+	 * Math.random() will still play differently from run to run.
+	 * @param roster The Bots to play
+	 * @param seed Seed for shuffling and placing the Bots
+	 * @param width Right edge of the playing area
+	 * @param height Bottom edge of the playing area
+	 * @param bulletsPerBot Number of bullets on screen at once for each Bot
+	 * @throws IllegalArgumentException If the Bots can't all start without touching
+	 * (see startColumns())
+	 */
+	BattleBotArena(Bot[] roster, long seed, int width, int height, int bulletsPerBot)
+	{
+		if (startColumns(roster.length, width, height) == 0)
+			throw new IllegalArgumentException(roster.length+" Bots don't fit in a "+width+"x"+height+" arena");
+		headless = true;
+		soundOn = false;
+		numBots = roster.length;
+		numBullets = bulletsPerBot;
+		rightEdge = width;
+		bottomEdge = height;
+		random = new Random(seed);
+		bots = roster;
+		botsInfo = new BotInfo[numBots];
+		bullets = new Bullet[numBots][numBullets];
+		asyncBots = new AsyncBot[numBots];
+		botsLeft = numBots;
+	}
+
+	/**
+	 * Works out the grid a headless arena starts its Bots on. The grid is about as
+	 * many cells across as the arena's shape calls for, and no cell is narrower or
+	 * shorter than a Bot, so no two Bots start touching.
+	 * @param numBots Number of Bots
+	 * @param width Right edge of the playing area
+	 * @param height Bottom edge of the playing area
+	 * @return Number of columns in the grid, or 0 if the Bots don't fit
+	 */
+	static int startColumns(int numBots, int width, int height)
+	{
+		return gridColumns(numBots, width, height, Bot.RADIUS*2);
+	}
+
+	/**
+	 * Works out how much bigger than the usual arena a headless arena has to be for
+	 * a roster to start with room to move: a grid cell at least twice as wide and
+	 * tall as a Bot for every Bot.
+	 * @param numBots Number of Bots
+	 * @return 1 if the usual arena will do, or the smallest 10% step up that will
+	 */
+	static double fitScale(int numBots)
+	{
+		double scale = 1;
+		while (numBots > 0 && gridColumns(numBots, (int)(RIGHT_EDGE*scale), (int)(BOTTOM_EDGE*scale), Bot.RADIUS*4) == 0)
+			scale *= 1.1;
+		return scale;
+	}
+
+	/**
+	 * @param numBots Number of Bots
+	 * @param width Right edge of the playing area
+	 * @param height Bottom edge of the playing area
+	 * @param cell Smallest width and height of a cell
+	 * @return Number of columns in the start grid (see startColumns()), or 0 if the Bots don't fit
+	 */
+	private static int gridColumns(int numBots, int width, int height, int cell)
+	{
+		// the top left corners of the Bots can go anywhere in a w x h box
+		double w = width-LEFT_EDGE-Bot.RADIUS*2, h = height-TOP_EDGE-Bot.RADIUS*2;
+		int maxColumns = (int)(w/cell), maxRows = (int)(h/cell);
+		if (numBots <= 0 || maxColumns < 1 || maxRows < 1)
+			return 0;
+		int columns = (int)Math.ceil(Math.sqrt(numBots*w/h));
+		columns = Math.min(maxColumns, Math.max(columns, (numBots+maxRows-1)/maxRows));
+		return (numBots+columns-1)/columns <= maxRows ? columns : 0;
+	}
+
 	private void init()
 	{
+		// Message log, archived to a file as it overflows if one is given
+		String archive = System.getProperty(MessageLog.ARCHIVE_PROPERTY);
+		messages = new MessageLog(archive == null || archive.length() == 0 ? null : new File(archive));
+		// Spectator stream
+		Integer spectatorPort = Integer.getInteger(SpectatorServer.PORT_PROPERTY);
+		if (spectatorPort != null)
+		{
+			try {
+				spectators = new SpectatorServer(spectatorPort);
+			} catch (IOException e) {
+				System.err.println("Could not start the spectator stream ("+e+")");
+			}
+		}
+		// Results
+		String resultsDir = System.getProperty(ResultsStore.DIR_PROPERTY);
+		if (resultsDir != null)
+		{
+			try {
+				results = new ResultsStore(new File(resultsDir));
+			} catch (IOException e) {
+				System.err.println("Could not open the results store ("+e+")");
+			}
+		}
+		// Ratings
+		String ratingsFile = System.getProperty(Ratings.FILE_PROPERTY);
+		if (ratingsFile != null)
+		{
+			try {
+				ratings = new Ratings(new File(ratingsFile));
+			} catch (IOException e) {
+				System.err.println("Could not load the ratings ("+e+")");
+			}
+		}
 		// Paint buffer and instant replay array
 		for (int i = 0; i<NUM_FRAMES; i++)
 			replayImages[i] = createImage(RIGHT_EDGE, BOTTOM_EDGE);
@@ -704,16 +1150,23 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 */
 	private void reset()
 	{
-		timePlayed = 0;						// reset the clock
+		stopAsyncBots();
+		ticksPlayed = 0;					// reset the clock
 		round ++;							// advance the round
-		botsLeft = NUM_BOTS;				// put all the bots back in the game
-		messages = new LinkedList<String>();// clear the messag buffer
+		botsLeft = numBots;				// put all the bots back in the game
+		messages.clear();					// clear the message buffer
+		framesPlayed = 0;
+		caughtUpTicks = skippedTicks = worstLag = 0;
+
+		// swap in the new version of any Bot that has been recompiled
+		if (botReloader != null)
+			botReloader.refresh(bots);
 
 		// shuffle the bots
-		for (int i=0; i<NUM_BOTS*10; i++)
+		for (int i=0; i<numBots*10; i++)
 		{
-			int b1 = (int)(Math.random()*NUM_BOTS);
-			int b2 = (int)(Math.random()*NUM_BOTS);
+			int b1 = (int)(random.nextDouble()*numBots);
+			int b2 = (int)(random.nextDouble()*numBots);
 			Bot temp = bots[b1];
 			bots[b1] = bots[b2];
 			bots[b2] = temp;
@@ -723,20 +1176,20 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 		}
 
 		// Clear the array of public Bot info. (This is the info given to the Bots when making their moves.)
-		BotInfo[] newBotsInfo = new BotInfo[NUM_BOTS];
+		BotInfo[] newBotsInfo = new BotInfo[numBots];
 
 		// Assign starting positions & numbers for bots
 		// and also create new array of botsInfo
 		if (state == TEST_MODE) // we are restarting. everything is reset
 		{
-			int xScale = (RIGHT_EDGE-Bot.RADIUS*4)/Math.max(NUM_BOTS-1,1); // this spaces them out so they don't rez on top of each other
-			int yScale = (BOTTOM_EDGE-Bot.RADIUS*4)/5;
-			int[][] grid = new int[NUM_BOTS][5];
-			for (int i = 0; i < NUM_BOTS; i++)
+			int xScale = (rightEdge-Bot.RADIUS*4)/Math.max(numBots-1,1); // this spaces them out so they don't rez on top of each other
+			int yScale = (bottomEdge-Bot.RADIUS*4)/5;
+			int[][] grid = new int[numBots][5];
+			for (int i = 0; i < numBots; i++)
 			{
 				bots[i].assignNumber(i);  // assign new numbers
-				int x = (int)(Math.random()*NUM_BOTS);
-				int y = (int)(Math.random()*5);
+				int x = (int)(random.nextDouble()*numBots);
+				int y = (int)(random.nextDouble()*5);
 				newBotsInfo[i] = new BotInfo(x*xScale + Bot.RADIUS, y*yScale + Bot.RADIUS, i, bots[i].getName()); // create new BotInfo object to keep track of bot's stats
 				newBotsInfo[i].setTeamName(bots[i].getTeamName()); // get start of game team names
 				if (grid[x][y] == 1)
@@ -747,14 +1200,17 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 		}
 		else
 		{
-			int offsetx = (RIGHT_EDGE-Bot.RADIUS*4)/Math.max(NUM_BOTS-1,1);
-			int offsety = (BOTTOM_EDGE-Bot.RADIUS*4)/Math.max(NUM_BOTS-1,1);
-			int x = Bot.RADIUS;
-			int y = Bot.RADIUS;
-			for (int i = 0; i < NUM_BOTS; i++)
+			// a grid of equal cells, one Bot in the middle of each (see startColumns())
+			int columns = startColumns(numBots, rightEdge, bottomEdge);
+			int rows = (numBots+columns-1)/columns;
+			double cellWidth = (rightEdge-LEFT_EDGE-Bot.RADIUS*2)/(double)columns;
+			double cellHeight = (bottomEdge-TOP_EDGE-Bot.RADIUS*2)/(double)rows;
+			for (int i = 0; i < numBots; i++)
 			{
 				bots[i].assignNumber(i);  // assign new numbers
-				newBotsInfo[i] = new BotInfo(x, y, i, botsInfo[i].getName());
+				double x = LEFT_EDGE+(i%columns+0.5)*cellWidth;
+				double y = TOP_EDGE+(i/columns+0.5)*cellHeight;
+				newBotsInfo[i] = new BotInfo(x, y, i, botsInfo[i] != null ? botsInfo[i].getName() : bots[i].getName());
 				newBotsInfo[i].setTeamName(bots[i].getTeamName()); // get start of game team names
 				if (botsInfo[i] != null && CUMULATIVE_SCORING && round > 1)
 					newBotsInfo[i].setCumulativeScore(botsInfo[i].getCumulativeScore()+botsInfo[i].getScore());
@@ -763,31 +1219,66 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					newBotsInfo[i].knockedOut();
 					botsLeft--;
 				}
-				x += offsetx;
-				y += offsety;
 				//System.out.println(bots[i].getName()+ " "+newBotsInfo[i].getName()+" "+newBotsInfo[i].isOut());
 			}
 		}
 		botsInfo = newBotsInfo;
 
 		// load the images & call the newRound message for the bots
-		for (int i = 0; i < NUM_BOTS; i++)
+		worldUsers = new boolean[numBots];
+		worldUsed = false;
+		spaceUsers = new boolean[numBots];
+		spaceUsed = false;
+		viewUsers = new boolean[numBots];
+		viewUsed = legacyUsed = false;
+		deltaUsers = new boolean[numBots];
+		deltaFeed = null;
+		batchUsers = new boolean[numBots];
+		batches = new MessageBatch[numBots];
+		remoteHub = null;
+		interactions = results != null ? new Interactions(numBots) : null;
+		if (spectators != null)
+			spectators.newRound(numBots, numBullets);
+		if (!headless)
+			for (int i = 0; i < numBots; i++)
+				loadImages (i);
+		// the Bots are independent of each other, so big rosters start their rounds in parallel
+		if (numBots >= PARALLEL_NEW_ROUND)
+			IntStream.range(0, numBots).parallel().forEach(i -> newRound(i));
+		else
+			for (int i = 0; i < numBots; i++)
+				newRound(i);
+		for (int i = 0; i < numBots; i++)
 		{
-			loadImages (i);
-			// BOT METHOD CALL - timed and exceptions caught
-			long startThink = System.nanoTime();
-			try {
-				bots[i].newRound();
-			}
-			catch (Exception e)
-			{
-				botsInfo[i].exceptionThrown(e);
-			}
-			botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-			// ***********************
+			worldUsed |= worldUsers[i];
+			spaceUsed |= spaceUsers[i];
+			viewUsed |= viewUsers[i];
+			legacyUsed |= !viewUsers[i];
+			if (deltaUsers[i] && deltaFeed == null)
+				deltaFeed = new DeltaFeed(numBots, numBullets);
+			if (batchUsers[i])
+				batches[i] = new MessageBatch(bus);
+			if (bots[i] instanceof RemoteBot && !botsInfo[i].isOut())
+				remoteHub = ((RemoteBot)bots[i]).hub();
 		}
 
-		bullets = new Bullet[NUM_BOTS][NUM_BULLETS]; 	// init the bullets array
+		bullets = new Bullet[numBots][numBullets]; 	// init the bullets array
+
+		// in asynchronous mode, start a thread for each Bot that takes the arrays
+		if (asyncMoves)
+			for (int i = 0; i < numBots; i++)
+				if (!viewUsers[i] && !spaceUsers[i] && !deltaUsers[i] && !batchUsers[i] && !botsInfo[i].isOut() && !botsInfo[i].isOverheated())
+					asyncBots[i] = new AsyncBot(bots[i], botsInfo[i].getTeamName());
+
+		// one shared copy of the frame for the Bots that read it through a WorldView
+		if (viewUsed)
+		{
+			frameStore = new FrameStore(numBots, numBullets);
+			views = new WorldView[numBots];
+			for (int i = 0; i < numBots; i++)
+				if (viewUsers[i])
+					views[i] = new WorldView(frameStore, i);
+		}
 
 		ready = true; // tell the paint method we're good to go
 
@@ -837,419 +1328,365 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	}
 
 	/**
-	 * Loads images for the bots
-	 * @param botNum
+	 * Tells a Bot a new round is starting and asks which kinds of data it takes.
+	 * Only touches this Bot's own slots, so it can be called for several Bots at once.
+	 * @param i The Bot
 	 */
-	private void loadImages(int botNum)
+	private void newRound(int i)
 	{
-		String[] imagePaths = null; // file names
-		Image[] images = null; 		// images
-
-		// 1. get the image names
+		// a Bot that is still thinking on its thread from the last round sits this one out
+		if (isStillRunning(bots[i]))
+		{
+			botsInfo[i].overheated();
+			return;
+		}
 		// BOT METHOD CALL - timed and exceptions caught
+		ArenaEvents.BotCall call = ArenaEvents.startCall();
+		long startAlloc = allocatedBytes();
 		long startThink = System.nanoTime();
 		try {
-			imagePaths = bots[botNum].imageNames();
-		} catch (Exception e) {
-			botsInfo[botNum].exceptionThrown(e);
+			bots[i].newRound();
+			worldUsers[i] = bots[i].usesWorldState();
+			spaceUsers[i] = bots[i].usesSpatialIndex();
+			viewUsers[i] = bots[i].usesWorldView();
+			deltaUsers[i] = bots[i].usesDeltaFeed();
+			batchUsers[i] = bots[i].usesMessageBatch();
 		}
-		botsInfo[botNum].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-		// ***********************
-
-		// 2. load the images if there are any to load
-		if (imagePaths != null)
+		catch (Exception e)
 		{
-			images = new Image[imagePaths.length];
-			for (int i=0; i<imagePaths.length; i++)
-			{
-				try {
-					images[i] = Toolkit.getDefaultToolkit ().getImage (getClass().getClassLoader().getResource("images/"+imagePaths[i]));
-					imagesToLoad.add(images[i]);
-				} catch (Exception e) {
-					botsInfo[botNum].exceptionThrown(e);
-				}
-			}
-			// 3. pass the messages to the Bot
-			// BOT METHOD CALL - timed and exceptions caught
-			startThink = System.nanoTime();
-			try {
-				bots[botNum].loadedImages(images);
-			} catch (Exception e) {
-				botsInfo[botNum].exceptionThrown(e);
-			}
-			botsInfo[botNum].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-			// ***********************
+			botsInfo[i].exceptionThrown(e);
 		}
+		botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+		botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+		ArenaEvents.endCall(call, botsInfo[i], "newRound");
+		// ***********************
 	}
 
 	/**
-	 * This method is for the thread computes the correction factor for System.nanoTime(). See
-	 * the documentation of the field "nanoTimeCorrection" for more information. The thread is
-	 * spawned by the init() method, and should be complete and no longer running after about 20s.
+	 * Reseeds the arena's shuffling and placement for the next match.
+	 * @param seed The new seed
 	 */
-	public void run()
+	void setSeed(long seed)
 	{
-		//pause for setup
-		try {Thread.sleep(5000);} catch (InterruptedException e) {e.printStackTrace();}
-		//repeatedly test ms and ns timers for 1 second intervals and compute the
-		//correction for System.nanoTime() assuming currentTimeMillis() is accurate
-		double totalms = 0, totalns = 0;
-		for (int i=0; i<10; i++)
+		random.setSeed(seed);
+	}
+
+	/**
+	 * Sets up round 1 of a headless match and starts play right away (there is
+	 * no test mode or countdown without a screen). Any earlier match in this
+	 * arena is forgotten, so every Bot is back in.
+	 */
+	void startMatch()
+	{
+		state = WAIT_TO_START;
+		round = 0;
+		botsInfo = new BotInfo[numBots];
+		reset();
+		countDown = 0;
+		state = GAME_ON;
+	}
+
+	/**
+	 * Advances a headless match by one frame. The clock moves ahead by exactly
+	 * one frame (1/30 s) per call, no matter how long the frame took to process.
+	 */
+	void step()
+	{
+		if (state == GAME_ON)
 		{
-			double start = System.currentTimeMillis();
-			try {Thread.sleep(1000);} catch (InterruptedException e) {e.printStackTrace();}
-			totalms += (System.currentTimeMillis()-start)/1000.0;
-			//System.out.println("millisecond timer ... "+totalms);
-			start = System.nanoTime();
-			try {Thread.sleep(1000);} catch (InterruptedException e) {e.printStackTrace();}
-			totalns += (System.nanoTime()-start)/1000000000.0;
-			//System.out.println("nanosecond timer ... "+totalns);
-			nanoTimeCorrection = totalms/totalns;
-			if (DEBUG)
-				System.out.println("nanoTimeCorrection after "+(i+1)+" seconds = "+nanoTimeCorrection);
+			ticksPlayed++;
+			if (ticksPlayed >= TIME_LIMIT_TICKS || botsLeft <= 1)
+				endRound();
+			else
+				playFrame();
 		}
-		requestFocus();
 	}
 
 	/**
-	 * The main game method - called by the timer. Handles all the
-	 * mechanics of the game, the replay mode, and the test mode screen.
+	 * @return true once a headless match has stopped playing (the round is over)
 	 */
-	public void actionPerformed(ActionEvent ace)
+	boolean isMatchOver()
 	{
-		// **** are we moving bots around?
-		if (state == GAME_ON && countDown <= 0 || state == TEST_MODE && ready)
-		{
-			if (state != TEST_MODE) // advance the timer or...
-			{
-				long timeNow = System.currentTimeMillis();
-				timePlayed += (timeNow - startTime)/1000.0*speed;
-				startTime = timeNow;
-			}
-			else // ...flash the red rings around the bots in test mode
+		return state != GAME_ON;
+	}
+
+	/**
+	 * Starts the next round of a headless match once the last one is over
+	 * @return false if there is no next round to start (the match has a winner,
+	 * or the round isn't over)
+	 */
+	boolean nextRound()
+	{
+		if (state != GAME_OVER)
+			return false;
+		state = WAIT_TO_START;
+		reset();
+		countDown = 0;
+		state = GAME_ON;
+		return true;
+	}
+
+	/**
+	 * @return true once the final round of the match is over
+	 */
+	boolean hasWinner()
+	{
+		return state == WINNER;
+	}
+
+	/**
+	 * @return Number of the Bot leading after the last round that ended, or -1
+	 */
+	int getWinner()
+	{
+		return winnerID;
+	}
+
+	/**
+	 * @return Number of Bots still in play
+	 */
+	int getBotsLeft()
+	{
+		return botsLeft;
+	}
+
+	/**
+	 * @return The round being played
+	 */
+	int getRound()
+	{
+		return round;
+	}
+
+	/**
+	 * @return Number of Bots in the arena
+	 */
+	int getNumBots()
+	{
+		return numBots;
+	}
+
+	/**
+	 * @return Number of bullets each Bot can have on screen at once
+	 */
+	int getNumBullets()
+	{
+		return numBullets;
+	}
+
+	/**
+	 * @param botNum The Bot's number
+	 * @return The arena's own info object for the Bot (not a copy -- don't hand it to a Bot)
+	 */
+	BotInfo getBotInfo(int botNum)
+	{
+		return botsInfo[botNum];
+	}
+
+	/**
+	 * @param botNum The Bot's number
+	 * @return The Bot
+	 */
+	Bot getBot(int botNum)
+	{
+		return bots[botNum];
+	}
+
+	/**
+	 * @param botNum The Bot that owns the Bullet
+	 * @param bulletNum The Bullet's slot
+	 * @return The Bullet, or null if the slot is empty
+	 */
+	Bullet getBullet(int botNum, int bulletNum)
+	{
+		return bullets[botNum][bulletNum];
+	}
+
+	/**
+	 * Stops the threads of the asynchronous Bots, giving Bots that are in the
+	 * middle of a method a moment to finish it before the next round starts.
+	 * Threads that are still running after that are remembered, so their Bots
+	 * aren't started on the next round while they are still in the last one.
+	 */
+	private void stopAsyncBots()
+	{
+		long deadline = System.nanoTime()+(long)(ASYNC_DEADLINE*1000000000L);
+		for (int i=0; i<asyncBots.length; i++)
+			if (asyncBots[i] != null)
+				asyncBots[i].stop();
+		for (int i=0; i<asyncBots.length; i++)
+			if (asyncBots[i] != null)
 			{
-				flashCounter--;
-				if (flashCounter < 0)
-					flashCounter = FLASH_TIME;
+				asyncBots[i].join(Math.max(1, (deadline-System.nanoTime())/1000000));
+				if (asyncBots[i].isRunning())
+					lingering.add(asyncBots[i]);
+				asyncBots[i] = null;
 			}
-			// **** game over?
-			if (state != TEST_MODE && (timePlayed >= TIME_LIMIT || botsLeft <= 1))
+		lingering.removeIf(async -> !async.isRunning());
+		asyncBots = new AsyncBot[numBots];
+	}
+
+	/**
+	 * @param bot A Bot
+	 * @return true if the Bot's thread from an earlier round is still running
+	 */
+	private boolean isStillRunning(Bot bot)
+	{
+		for (AsyncBot async : lingering)
+			if (async.getBot() == bot && async.isRunning())
+				return true;
+		return false;
+	}
+
+	/**
+	 * Keeps the stats of every round a headless arena plays from now on
+	 * @param results The store, or null to stop keeping them
+	 */
+	void setResults(ResultsStore results)
+	{
+		this.results = results;
+		interactions = results != null && botsInfo != null ? new Interactions(numBots) : null;
+	}
+
+	/**
+	 * @return Shots, hits, kills and bumps so far this round (null if the arena isn't keeping results)
+	 */
+	Interactions getInteractions()
+	{
+		return interactions;
+	}
+
+	/**
+	 * Streams a headless arena to viewers (see SpectatorServer)
+	 * @param spectators The server, or null to stop streaming
+	 */
+	void setSpectators(SpectatorServer spectators)
+	{
+		this.spectators = spectators;
+		if (spectators != null && botsInfo != null)
+			spectators.newRound(numBots, numBullets);
+	}
+
+	/**
+	 * Turns asynchronous moves on or off for a headless arena (see ASYNC_MOVES)
+	 * @param asyncMoves true to run each Bot on its own thread
+	 */
+	void setAsyncMoves(boolean asyncMoves)
+	{
+		this.asyncMoves = asyncMoves;
+	}
+
+	/**
+	 * Loads images for the bots
+	 * @param botNum
+	 */
+	private void loadImages(int botNum)
+	{
+		String[] imagePaths = null; // file names
+		Image[] images = null; 		// images
+
+		// 1. get the image names
+		// BOT METHOD CALL - timed and exceptions caught
+		ArenaEvents.BotCall call = ArenaEvents.startCall();
+		long startAlloc = allocatedBytes();
+		long startThink = System.nanoTime();
+		try {
+			imagePaths = bots[botNum].imageNames();
+		} catch (Exception e) {
+			botsInfo[botNum].exceptionThrown(e);
+		}
+		botsInfo[botNum].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+		botsInfo[botNum].addAllocatedBytes(allocatedBytes()-startAlloc);
+		ArenaEvents.endCall(call, botsInfo[botNum], "imageNames");
+		// ***********************
+
+		// 2. load the images if there are any to load
+		if (imagePaths != null)
+		{
+			images = new Image[imagePaths.length];
+			for (int i=0; i<imagePaths.length; i++)
 			{
-				state = GAME_OVER;
-				resetGameSpeed();
-				endFrameCounter = END_FRAME_COUNT; // start the instant replay
-				replayCurrentFrame = replayEndFrame;
-				drone.stop(); // stop the sound
-				if (soundOn)
-					gameOver.play();
-				if (botsLeft == 1) // if there is a bot left, update its score
-					for (int i=0; i<NUM_BOTS; i++)
-						if (botsInfo[i].isDead() == false && botsInfo[i].isOut() == false)
-						{
-							botsInfo[i].setScore(currentScore(i, true));
-							break;
-						}
-				// knock out up to ELIMINATIONS_PER_ROUND bots
-				int knockedOut = 0;
-				int totalOut = 0;
-				BotInfo[] sortedBots = sortedBotInfoArray(false);
-				for (int i=0; i<NUM_BOTS && knockedOut<ELIMINATIONS_PER_ROUND; i++)
-				{
-					if (!sortedBots[i].isOut())
+				try {
+					images[i] = imageCache.get(imagePaths[i]);
+					if (images[i] == null)
 					{
-						sortedBots[i].outNextRound();
-						knockedOut++;
+						images[i] = Toolkit.getDefaultToolkit ().getImage (getClass().getClassLoader().getResource("images/"+imagePaths[i]));
+						imageCache.put(imagePaths[i], images[i]);
+						imagesToLoad.add(images[i]);
 					}
-					totalOut++;
-				}
-				// find the winner
-				sortedBots = sortedBotInfoArray(true);
-				winnerID = sortedBots[0].getBotNumber();
-				if (totalOut >= NUM_BOTS-1) // is this the last round?
-				{
-					sendMessage(-1,"Final round complete. "+sortedBots[0].getName()+" is the winner.");
-					state = WINNER;
+				} catch (Exception e) {
+					botsInfo[botNum].exceptionThrown(e);
 				}
-				else
-					if (CUMULATIVE_SCORING) // different message depending on scoring type
-						sendMessage(-1,"Round "+round+" complete. "+sortedBots[0].getName()+" is leading.");
-					else
-						sendMessage(-1,"Round "+round+" complete. "+sortedBots[0].getName()+" is the winner.");
 			}
-			else //**** GAME IS ON
-			{
-				// A. increment the circular replay buffer
-				if (++replayEndFrame == NUM_FRAMES)
-					replayEndFrame = 0;
-
-				// B. create copies of all the bullet and Bot info to pass to each
-				// Bot when getting their moves
-				LinkedList<Bullet> bulletList = new LinkedList<Bullet>();
-				BotInfo[] liveBots = new BotInfo[botsLeft];
-				int nextLiveBotIndex = 0;
-				BotInfo[] deadBots = new BotInfo[NUM_BOTS-(round-1)*ELIMINATIONS_PER_ROUND-botsLeft];
-				int nextDeadBotIndex = 0;
-				for (int j=0; j<NUM_BOTS; j++)
-				{
-					if (!botsInfo[j].isOut())
-						if (!botsInfo[j].isDead())
-							liveBots[nextLiveBotIndex++] = botsInfo[j];
-						else
-							deadBots[nextDeadBotIndex++] = botsInfo[j].copy(); // important to deep copy or else some
-																			   // bots will get info about the current move
-																			   // for some of the other bots
-					int bulletCount =0;
-					for (int k=0; k<NUM_BULLETS; k++)
-						if (bullets[j][k] != null)
-						{
-							bulletList.add(bullets[j][k]);
-							bulletCount++;
-						}
-				}
-				// C. process moves for each bot
-				for (int i = 0; i<NUM_BOTS; i++)
-				{
-					// only  move bot if it's active
-					if (!botsInfo[i].isOverheated() && !botsInfo[i].isDead() && !botsInfo[i].isOut())
-					{
-						// Update Bot's Score
-						botsInfo[i].setScore(currentScore(i, false));
-						// Check think time to see if over limit
-						if (botsInfo[i].getThinkTime() > PROCESSOR_LIMIT && state != TEST_MODE)
-						{
-							botsInfo[i].overheated();
-							if (soundOn)
-								overheat.play();
-							sendMessage(SYSTEM_MSG, botsInfo[i].getName()+" overheated - CPU limit exceeded.");
-						}
-						else //bot still alive! Process move
-						{
-							// 1. Get bot team name
-							// BOT METHOD CALL - timed and exceptions caught
-							long startThink = System.nanoTime();
-							try {
-								botsInfo[i].setTeamName(bots[i].getTeamName());
-							}
-							catch(Exception e)
-							{
-								botsInfo[i].exceptionThrown(e);
-							}
-							botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-							// ***********************
-
-							// 2. set up to get the next move
-							// 2a. Can the current bot shoot?
-							BotInfo currentBot = botsInfo[i]; 	// current Bot
-							boolean shotOK = false;				// can shoot?
-							for (int j=0; j<NUM_BULLETS; j++)
-							{
-								if (bullets[i][j] == null)
-									shotOK = true;
-							}
-							// 2b. The bots have to be passed temp arrays of bullets so they can't
-							// mess them up (e.g. by setting array entries to null)
-							Bullet[] cleanBulletArray = new Bullet[bulletList.size()];
-							int cleanBAIndex = 0;
-							Iterator<Bullet> it = bulletList.iterator();
-							while (it.hasNext())
-								cleanBulletArray[cleanBAIndex++] = it.next();
-							// 2c. For the same reason, they must get temp arrays of live and dead bots too.
-							//     We also remove the current bot from the list of livebots here.
-							BotInfo[] cleanLiveBotsArray = new BotInfo[liveBots.length-1];
-							int k = 0;
-							for (int j=0; j<liveBots.length; j++)
-								if (liveBots[j] != currentBot)
-									cleanLiveBotsArray[k++] = liveBots[j];
-							BotInfo[] cleanDeadBotsArray = new BotInfo[deadBots.length];
-							for (int j=0; j<deadBots.length; j++)
-								cleanDeadBotsArray[j] = deadBots[j];
-
-							// 3. now, get the move
-							int move = -1;
-							// BOT METHOD CALL - timed and exceptions caught
-							startThink = System.nanoTime();
-							try {
-								move = bots[i].getMove(currentBot, shotOK, cleanLiveBotsArray, cleanDeadBotsArray, cleanBulletArray);
-							}
-							catch(Exception e)
-							{
-								botsInfo[i].exceptionThrown(e);
-							}
-							botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-							// ***********************
+			// 3. pass the messages to the Bot
+			// BOT METHOD CALL - timed and exceptions caught
+			call = ArenaEvents.startCall();
+			startAlloc = allocatedBytes();
+			startThink = System.nanoTime();
+			try {
+				bots[botNum].loadedImages(images);
+			} catch (Exception e) {
+				botsInfo[botNum].exceptionThrown(e);
+			}
+			botsInfo[botNum].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+			botsInfo[botNum].addAllocatedBytes(allocatedBytes()-startAlloc);
+			ArenaEvents.endCall(call, botsInfo[botNum], "loadedImages");
+			// ***********************
+		}
+	}
 
-							botsInfo[i].setLastMove(move);
+	/**
+	 * This method is for the thread computes the correction factor for System.nanoTime(). See
+	 * the documentation of the field "nanoTimeCorrection" for more information. The thread is
+	 * spawned by the init() method, and should be complete and no longer running after about 20s.
+	 */
+	public void run()
+	{
+		//pause for setup
+		try {Thread.sleep(5000);} catch (InterruptedException e) {e.printStackTrace();}
+		//repeatedly test ms and ns timers for 1 second intervals and compute the
+		//correction for System.nanoTime() assuming currentTimeMillis() is accurate
+		double totalms = 0, totalns = 0;
+		for (int i=0; i<10; i++)
+		{
+			double start = System.currentTimeMillis();
+			try {Thread.sleep(1000);} catch (InterruptedException e) {e.printStackTrace();}
+			totalms += (System.currentTimeMillis()-start)/1000.0;
+			//System.out.println("millisecond timer ... "+totalms);
+			start = System.nanoTime();
+			try {Thread.sleep(1000);} catch (InterruptedException e) {e.printStackTrace();}
+			totalns += (System.nanoTime()-start)/1000000000.0;
+			//System.out.println("nanosecond timer ... "+totalns);
+			nanoTimeCorrection = totalms/totalns;
+			if (DEBUG)
+				System.out.println("nanoTimeCorrection after "+(i+1)+" seconds = "+nanoTimeCorrection);
+		}
+		requestFocus();
+	}
 
-							// 4. Process the move
-							switch(move)
-							{
-							case UP:
-								botsInfo[i].setY(botsInfo[i].getY()-BOT_SPEED);
-								break;
-							case DOWN:
-								botsInfo[i].setY(botsInfo[i].getY()+BOT_SPEED);
-								break;
-							case LEFT:
-								botsInfo[i].setX(botsInfo[i].getX()-BOT_SPEED);
-								break;
-							case RIGHT:
-								botsInfo[i].setX(botsInfo[i].getX()+BOT_SPEED);
-								break;
-							case FIREUP:
-								for (int j=0; j<NUM_BULLETS; j++) // looks for the first unused bullet slot
-									if (bullets[i][j] == null)
-									{
-										bullets[i][j] = new Bullet(botsInfo[i].getX()+Bot.RADIUS, botsInfo[i].getY()-1, 0, -BULLET_SPEED);
-										if (state != TEST_MODE)
-											if (soundOn)
-												shot.play();
-										break;
-									}
-								break;
-							case FIREDOWN:
-								for (int j=0; j<NUM_BULLETS; j++)// looks for the first unused bullet slot
-									if (bullets[i][j] == null)
-									{
-										bullets[i][j] = new Bullet(botsInfo[i].getX()+Bot.RADIUS, botsInfo[i].getY()+Bot.RADIUS * 2 + 1, 0, BULLET_SPEED);
-										if (state != TEST_MODE)
-											if (soundOn)
-												shot.play();
-										break;
-									}
-								break;
-							case FIRELEFT:
-								for (int j=0; j<NUM_BULLETS; j++)// looks for the first unused bullet slot
-									if (bullets[i][j] == null)
-									{
-										bullets[i][j] = new Bullet(botsInfo[i].getX()-1, botsInfo[i].getY()+Bot.RADIUS, -BULLET_SPEED, 0);
-										if (state != TEST_MODE)
-											if (soundOn)
-												shot.play();
-										break;
-									}
-								break;
-							case FIRERIGHT:
-								for (int j=0; j<NUM_BULLETS; j++)// looks for the first unused bullet slot
-									if (bullets[i][j] == null)
-									{
-										bullets[i][j] = new Bullet(botsInfo[i].getX()+Bot.RADIUS * 2 + 1, botsInfo[i].getY()+Bot.RADIUS, BULLET_SPEED, 0);
-										if (state != TEST_MODE)
-											if (soundOn)
-												shot.play();
-										break;
-									}
-								break;
-							case SEND_MESSAGE:
-								String msg = null;
-								// get the message
-								// BOT METHOD CALL - timed and exceptions caught
-								startThink = System.nanoTime();
-								try {
-									msg = bots[i].outgoingMessage();
-									botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-									// make sure they are not over the limit
-									if (botsInfo[i].getNumMessages() < TIME_LIMIT/SECS_PER_MSG && state != TEST_MODE)
-										sendMessage(i, msg); // send the message
-								}
-								catch (Exception e)
-								{
-									botsInfo[i].exceptionThrown(e);
-									botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-								}
-								// ***********************
-								break;
-							}
-							// 5. Bot collisions
-							if (move == UP || move == DOWN || move == LEFT || move == RIGHT) // if a move was made...
-							{
-								// 5a. other bots
-								for (int j=0; j<NUM_BOTS; j++)
-								{
-									if (j!=i && !botsInfo[i].isOut()) // don't collide with self or bots that are out
-									{
-										double d = Math.sqrt(Math.pow(botsInfo[i].getX()-botsInfo[j].getX(),2)+Math.pow(botsInfo[i].getY()-botsInfo[j].getY(),2));
-										if (d < Bot.RADIUS*2)
-										{
-											// reverse the previous move on collision
-											if (move == UP)
-												botsInfo[i].setY(botsInfo[i].getY()+BOT_SPEED);
-											else if (move == DOWN)
-												botsInfo[i].setY(botsInfo[i].getY()-BOT_SPEED);
-											else if (move == LEFT)
-												botsInfo[i].setX(botsInfo[i].getX()+BOT_SPEED);
-											else if (move == RIGHT)
-												botsInfo[i].setX(botsInfo[i].getX()-BOT_SPEED);
-											break;
-										}
-									}
-								}
-								// 5b. wall collisions - reset the bot to be inside the boundaries
-								if (botsInfo[i].getX() < LEFT_EDGE)
-									botsInfo[i].setX(LEFT_EDGE);
-								if (botsInfo[i].getX() > RIGHT_EDGE-Bot.RADIUS*2)
-									botsInfo[i].setX(RIGHT_EDGE-Bot.RADIUS*2);
-								if (botsInfo[i].getY() < TOP_EDGE)
-									botsInfo[i].setY(TOP_EDGE);
-								if (botsInfo[i].getY() > BOTTOM_EDGE-Bot.RADIUS*2)
-									botsInfo[i].setY(BOTTOM_EDGE-Bot.RADIUS*2);
-							}
-						}
-					}
-					// 6. in test mode, force a bot move
-					if (state == TEST_MODE && gotBot == i)
-					{
-						botsInfo[i].setX(forceBotX);
-						botsInfo[i].setY(forceBotY);
-					}
-				}
-				// D. Process the bullet moves/collisions
-				for (int i=0; i<NUM_BOTS; i++)
-					for (int k=0; k<NUM_BULLETS; k++)
-					{
-						if (bullets[i][k] != null)
-						{
-							bullets[i][k].moveOneStep();
-							// 6a. destroy bullet if off screen
-							if (bullets[i][k].getX() < LEFT_EDGE || bullets[i][k].getX() > RIGHT_EDGE ||
-									bullets[i][k].getY() < TOP_EDGE || bullets[i][k].getY() > BOTTOM_EDGE)
-							{
-								bullets[i][k] = null;
-							}
-							else // 6b. otherwise, check for bot collisions
-							{
-								if (state != TEST_MODE) // not if in test mode
-								{
-									for (int j = 0; j<NUM_BOTS; j++)
-									{
-										if (!botsInfo[j].isOut() && i != j)
-										{
-											double d = Math.sqrt(Math.pow(bullets[i][k].getX()-(botsInfo[j].getX()+Bot.RADIUS),2)+Math.pow(bullets[i][k].getY()-(botsInfo[j].getY()+Bot.RADIUS),2));
-											if (d < Bot.RADIUS) // hit something
-											{
-												bullets[i][k] = null; // no more bullet
-												if (botsInfo[j].isDead() == false) // kill bot if possible
-												{
-													if (soundOn)
-														death.play();
-													botsInfo[i].addKill();
-													botsInfo[j].killed(botsInfo[i].getName());
-													botsInfo[j].setTimeOfDeath(timePlayed);
-													botsInfo[j].setScore(currentScore(j,false)); // final score of dead bot
-													//botsInfo[i].setScore(currentScore(i,false));
-													botsLeft--;
-													sendMessage(SYSTEM_MSG, botsInfo[j].getName()+" destroyed by "+botsInfo[i].getName()+".");
-												}
-												break; // only one collision per bullet
-											}
-										}
-									}
-								}
-							}
-						}
-					}
+	/**
+	 * The main game method - called by the timer. Handles all the
+	 * mechanics of the game, the replay mode, and the test mode screen.
+	 */
+	public void actionPerformed(ActionEvent ace)
+	{
+		// **** are we moving bots around?
+		if (state == GAME_ON && countDown <= 0 || state == TEST_MODE && ready)
+		{
+			if (state != TEST_MODE) // play the ticks that are due or...
+			{
+				if (playDueTicks() > 0)
+					paintBuffer(); // paint the screen once, however many were played
+			}
+			else // ...flash the red rings around the bots in test mode
+			{
+				flashCounter--;
+				if (flashCounter < 0)
+					flashCounter = FLASH_TIME;
+				playFrame();
+				// paint the screen
+				paintBuffer();
 			}
-			// paint the screen
-			paintBuffer();
 		}
 		// *** paused or instant replay mode?
 		else if (state == GAME_PAUSED || state == GAME_OVER || state == WINNER)
@@ -1279,7 +1716,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 			countDown--;
 			if (countDown == 0)
 			{
-				startTime = System.currentTimeMillis();
+				restartClock();
 				if (soundOn)
 					drone.loop();
 			}
@@ -1289,44 +1726,768 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	}
 
 	/**
-	 * Sends a broadcast message to the bots.
-	 * @param id Message sender
-	 * @param msg Message
+	 * Plays every tick that is due by the clock on the wall (TICKS_PER_SECOND
+	 * times the game speed per second since the clock was started). If the arena
+	 * has fallen behind, up to MAX_CATCH_UP ticks are played back to back and the
+	 * rest are skipped. The game clock only moves with the ticks, so scores don't
+	 * depend on how fast the machine is.
+	 * @return Number of ticks played
 	 */
-	private void sendMessage(int id, String msg)
+	private int playDueTicks()
 	{
-		if (msg != null && !msg.equals(""))
+		long due = (System.currentTimeMillis()-startTime)*TICKS_PER_SECOND*speed/1000-ticksSinceStart;
+		if (due > MAX_CATCH_UP)
 		{
-			msg = msg.substring(0,Math.min(MAX_MESSAGE_LENGTH,msg.length()));
-			// send the message to the bots
-			for (int i = 0; i<NUM_BOTS; i++)
-				if (!botsInfo[i].isDead() && !botsInfo[i].isOut() && !botsInfo[i].isOverheated())
+			skippedTicks += due-MAX_CATCH_UP;
+			ticksSinceStart += due-MAX_CATCH_UP;
+			due = MAX_CATCH_UP;
+		}
+		if (due > 1)
+			caughtUpTicks += due-1;
+		worstLag = Math.max(worstLag, (int)due);
+		int played = 0;
+		while (played < due && state == GAME_ON)
+		{
+			ticksSinceStart++;
+			played++;
+			ticksPlayed++;
+			// **** game over?
+			if (ticksPlayed >= TIME_LIMIT_TICKS || botsLeft <= 1)
+				endRound();
+			else //**** GAME IS ON
+				playFrame();
+		}
+		return played;
+	}
+
+	/**
+	 * @return Game time played this round, in seconds
+	 */
+	double timePlayed()
+	{
+		return ticksPlayed/(double)TICKS_PER_SECOND;
+	}
+
+	/**
+	 * Starts the game clock from now (after a pause or countdown, or when the
+	 * speed changes)
+	 */
+	private void restartClock()
+	{
+		startTime = System.currentTimeMillis();
+		ticksSinceStart = 0;
+	}
+
+	/**
+	 * Ends the round. Starts the instant replay, awards the last Bot standing its
+	 * full time score, marks the lowest scoring Bots to be knocked out, and
+	 * announces the winner.
+	 */
+	private void endRound()
+	{
+		state = GAME_OVER;
+		stopAsyncBots();
+		messages.flush();
+		resetGameSpeed();
+		endFrameCounter = END_FRAME_COUNT; // start the instant replay
+		replayCurrentFrame = replayEndFrame;
+		if (!headless)
+			drone.stop(); // stop the sound
+		if (soundOn)
+			gameOver.play();
+		if (botsLeft == 1) // if there is a bot left, update its score
+			for (int i=0; i<numBots; i++)
+				if (botsInfo[i].isDead() == false && botsInfo[i].isOut() == false)
+				{
+					botsInfo[i].setScore(currentScore(i, true));
+					break;
+				}
+		// knock out up to ELIMINATIONS_PER_ROUND bots
+		int knockedOut = 0;
+		int totalOut = 0;
+		BotInfo[] sortedBots = sortedBotInfoArray(false);
+		for (int i=0; i<numBots && knockedOut<ELIMINATIONS_PER_ROUND; i++)
+		{
+			if (!sortedBots[i].isOut())
+			{
+				sortedBots[i].outNextRound();
+				knockedOut++;
+			}
+			totalOut++;
+		}
+		// keep the stats
+		if (results != null)
+		{
+			if (round == 1)
+				resultsMatch = results.newMatch();
+			results.append(this, resultsMatch);
+		}
+		// find the winner
+		sortedBots = sortedBotInfoArray(true);
+		winnerID = sortedBots[0].getBotNumber();
+		if (totalOut >= numBots-1) // is this the last round?
+		{
+			sendMessage(-1,"Final round complete. "+sortedBots[0].getName()+" is the winner.");
+			state = WINNER;
+			if (ratings != null)
+			{
+				ratings.record(this);
+				try {
+					ratings.save();
+				} catch (IOException e) {
+					System.err.println("Could not save the ratings ("+e+")");
+				}
+			}
+		}
+		else
+			if (CUMULATIVE_SCORING) // different message depending on scoring type
+				sendMessage(-1,"Round "+round+" complete. "+sortedBots[0].getName()+" is leading.");
+			else
+				sendMessage(-1,"Round "+round+" complete. "+sortedBots[0].getName()+" is the winner.");
+		// stream the final scores and the end of round messages
+		if (spectators != null)
+			spectators.publish(framesPlayed, round, timePlayed(), botsInfo, bullets, messages);
+	}
+
+	/**
+	 * Plays one frame of the game: takes a snapshot of the Bots and Bullets,
+	 * gets and processes a move from each active Bot, then moves the Bullets.
+	 */
+	void playFrame()
+	{
+		framesPlayed++;
+		// A. increment the circular replay buffer
+		if (++replayEndFrame == NUM_FRAMES)
+			replayEndFrame = 0;
+
+		// B. create copies of all the bullet and Bot info to pass to each
+		// Bot when getting their moves
+		ArenaEvents.TickPhase phase = ArenaEvents.startPhase();
+		buildFrameInfo();
+		phase = ArenaEvents.nextPhase(phase, "frame info", ticksPlayed, round);
+
+		// C. process moves for each bot (messages sent from here on are
+		// delivered together at the end of the frame)
+		inFrame = true;
+		for (int i = 0; i<numBots; i++)
+		{
+			// only  move bot if it's active
+			if (!botsInfo[i].isOverheated() && !botsInfo[i].isDead() && !botsInfo[i].isOut())
+				processMove(i);
+			// 6. in test mode, force a bot move
+			if (state == TEST_MODE && gotBot == i)
+			{
+				botsInfo[i].setX(forceBotX);
+				botsInfo[i].setY(forceBotY);
+			}
+		}
+		phase = ArenaEvents.nextPhase(phase, "moves", ticksPlayed, round);
+		// D. Process the bullet moves/collisions
+		moveBullets();
+		phase = ArenaEvents.nextPhase(phase, "bullets", ticksPlayed, round);
+		// E. Deliver this frame's messages
+		inFrame = false;
+		deliverMessages();
+		// F. Stream the frame to the spectators
+		if (spectators != null)
+		{
+			phase = ArenaEvents.nextPhase(phase, "messages", ticksPlayed, round);
+			spectators.publish(framesPlayed, round, timePlayed(), botsInfo, bullets, messages);
+			ArenaEvents.endPhase(phase, "spectators", ticksPlayed, round);
+		}
+		else
+			ArenaEvents.endPhase(phase, "messages", ticksPlayed, round);
+	}
+
+	/**
+	 * Builds the arrays of live Bots, dead Bots and Bullets that are handed out
+	 * to the Bots during the current frame, and the snapshot and spatial index
+	 * (if any Bots asked for them). Bots that use a WorldView get the frame
+	 * copied into frameStore instead, and the arrays are skipped if no Bot needs them.
+	 */
+	void buildFrameInfo()
+	{
+		frameWorld = worldUsed ? new WorldState(botsInfo, bullets, numBots, numBullets, rightEdge, bottomEdge) : null;
+		frameSpace = spaceUsed ? new SpatialIndex(botsInfo, bullets, rightEdge, bottomEdge) : null;
+		if (viewUsed)
+			frameStore.fill(botsInfo, bullets);
+		if (remoteHub != null)
+			remoteHub.exchange(frameStore, framesPlayed, (long)(REMOTE_DEADLINE*1000000000L));
+		if (deltaFeed != null)
+			deltaFeed.update(botsInfo, bullets);
+		if (!legacyUsed)
+			return;
+		frameBullets = new LinkedList<Bullet>();
+		frameLiveBots = new BotInfo[botsLeft];
+		int nextLiveBotIndex = 0;
+		frameDeadBots = new BotInfo[numBots-(round-1)*ELIMINATIONS_PER_ROUND-botsLeft];
+		int nextDeadBotIndex = 0;
+		for (int j=0; j<numBots; j++)
+		{
+			if (!botsInfo[j].isOut())
+				if (!botsInfo[j].isDead())
+					frameLiveBots[nextLiveBotIndex++] = botsInfo[j];
+				else
+					frameDeadBots[nextDeadBotIndex++] = botsInfo[j].copy(); // important to deep copy or else some
+																	   // bots will get info about the current move
+																	   // for some of the other bots
+			int bulletCount =0;
+			for (int k=0; k<numBullets; k++)
+				if (bullets[j][k] != null)
+				{
+					frameBullets.add(bullets[j][k]);
+					bulletCount++;
+				}
+		}
+		// asynchronous Bots read their frame while this thread carries on, so they get copies
+		if (asyncMoves)
+		{
+			frameLiveCopies = new BotInfo[frameLiveBots.length];
+			for (int j=0; j<frameLiveBots.length; j++)
+				frameLiveCopies[j] = frameLiveBots[j].copy();
+			frameBulletCopies = new Bullet[frameBullets.size()];
+			int j = 0;
+			for (Bullet b : frameBullets)
+				frameBulletCopies[j++] = b.copy();
+		}
+	}
+
+	/**
+	 * Gets the next move from an active Bot and processes it, or overheats the
+	 * Bot if it is over the CPU limit.
+	 * @param i The Bot to move
+	 */
+	private void processMove(int i)
+	{
+		// Update Bot's Score
+		botsInfo[i].setScore(currentScore(i, false));
+		// Asynchronous Bots are charged for what they did on their own thread since the last frame
+		AsyncBot async = asyncBots[i];
+		if (async != null)
+			async.charge(botsInfo[i], nanoTimeCorrection);
+		// Check think time and memory allocated to see if over limit
+		boolean overCPU = botsInfo[i].getThinkTime() > PROCESSOR_LIMIT;
+		boolean overMemory = ALLOCATION_LIMIT > 0 && botsInfo[i].getAllocatedBytes() > ALLOCATION_LIMIT;
+		if ((overCPU || overMemory) && state != TEST_MODE)
+		{
+			botsInfo[i].overheated();
+			ArenaEvents.overheat(botsInfo[i], overCPU);
+			if (async != null)
+			{
+				async.stop();
+				lingering.add(async);
+				asyncBots[i] = null;
+			}
+			if (soundOn)
+				overheat.play();
+			sendMessage(SYSTEM_MSG, botsInfo[i].getName()+" overheated - "+(overCPU?"CPU":"memory")+" limit exceeded.");
+		}
+		else //bot still alive! Process move
+		{
+			// 1. Get bot team name (asynchronous Bots report it from their own thread)
+			long startAlloc, startThink;
+			if (async == null)
+			{
+				// BOT METHOD CALL - timed and exceptions caught
+				ArenaEvents.BotCall call = ArenaEvents.startCall();
+				startAlloc = allocatedBytes();
+				startThink = System.nanoTime();
+				try {
+					botsInfo[i].setTeamName(bots[i].getTeamName());
+				}
+				catch(Exception e)
+				{
+					botsInfo[i].exceptionThrown(e);
+				}
+				botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+				botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+				ArenaEvents.endCall(call, botsInfo[i], "getTeamName");
+				// ***********************
+			}
+
+			// 2. set up to get the next move
+			// 2a. Can the current bot shoot?
+			BotInfo currentBot = botsInfo[i]; 	// current Bot
+			boolean shotOK = false;				// can shoot?
+			for (int j=0; j<numBullets; j++)
+			{
+				if (bullets[i][j] == null)
+					shotOK = true;
+			}
+			// 2b. The bots have to be passed temp arrays of bullets so they can't
+			// mess them up (e.g. by setting array entries to null). Bots with a
+			// WorldView can't change anything, so they don't need them.
+			// Asynchronous Bots get arrays of copies.
+			Bullet[] cleanBulletArray = null;
+			BotInfo[] cleanLiveBotsArray = null;
+			BotInfo[] cleanDeadBotsArray = null;
+			if (!viewUsers[i])
+			{
+				if (async != null)
+					cleanBulletArray = frameBulletCopies.clone();
+				else
+				{
+					cleanBulletArray = new Bullet[frameBullets.size()];
+					int cleanBAIndex = 0;
+					Iterator<Bullet> it = frameBullets.iterator();
+					while (it.hasNext())
+						cleanBulletArray[cleanBAIndex++] = it.next();
+				}
+				// 2c. For the same reason, they must get temp arrays of live and dead bots too.
+				//     We also remove the current bot from the list of livebots here.
+				BotInfo[] liveBots = async != null ? frameLiveCopies : frameLiveBots;
+				cleanLiveBotsArray = new BotInfo[liveBots.length-1];
+				int k = 0;
+				for (int j=0; j<liveBots.length; j++)
+					if (liveBots[j].getBotNumber() != i)
+						cleanLiveBotsArray[k++] = liveBots[j];
+				cleanDeadBotsArray = new BotInfo[frameDeadBots.length];
+				for (int j=0; j<frameDeadBots.length; j++)
+					cleanDeadBotsArray[j] = frameDeadBots[j];
+			}
+
+			// 3. now, get the move
+			int move = -1;
+			AsyncBot.Posted posted = null;
+			if (async != null)
+			{
+				// take the last move the Bot posted in time (or STAY), then show it this frame
+				posted = async.takeMove();
+				move = posted == null ? STAY : posted.move;
+				async.show(currentBot.copy(), shotOK, cleanLiveBotsArray, cleanDeadBotsArray, cleanBulletArray, frameWorld, (long)(ASYNC_DEADLINE*1000000000L));
+			}
+			else
+			{
+				if (worldUsers[i])
+					bots[i].assignWorld(frameWorld);
+				if (spaceUsers[i])
+					bots[i].assignSpatialIndex(frameSpace);
+				if (deltaUsers[i])
+					bots[i].assignDeltaFeed(deltaFeed);
+				// BOT METHOD CALL - timed and exceptions caught
+				ArenaEvents.BotCall call = ArenaEvents.startCall();
+				startAlloc = allocatedBytes();
+				startThink = System.nanoTime();
+				try {
+					if (viewUsers[i])
+						move = bots[i].getMove(views[i]);
+					else
+						move = bots[i].getMove(currentBot, shotOK, cleanLiveBotsArray, cleanDeadBotsArray, cleanBulletArray);
+				}
+				catch(Exception e)
 				{
-					// BOT METHOD CALL - timed and exceptions caught
-					long startThink = System.nanoTime();
-					try {
-						bots[i].incomingMessage(id, msg);
+					botsInfo[i].exceptionThrown(e);
+				}
+				botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+				botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+				ArenaEvents.endCall(call, botsInfo[i], "getMove");
+				// ***********************
+			}
+
+			botsInfo[i].setLastMove(move);
+
+			// 4. Process the move
+			switch(move)
+			{
+			case UP:
+				botsInfo[i].setY(botsInfo[i].getY()-BOT_SPEED);
+				break;
+			case DOWN:
+				botsInfo[i].setY(botsInfo[i].getY()+BOT_SPEED);
+				break;
+			case LEFT:
+				botsInfo[i].setX(botsInfo[i].getX()-BOT_SPEED);
+				break;
+			case RIGHT:
+				botsInfo[i].setX(botsInfo[i].getX()+BOT_SPEED);
+				break;
+			case FIREUP:
+				for (int j=0; j<numBullets; j++) // looks for the first unused bullet slot
+					if (bullets[i][j] == null)
+					{
+						bullets[i][j] = new Bullet(botsInfo[i].getX()+Bot.RADIUS, botsInfo[i].getY()-1, 0, -BULLET_SPEED);
+						if (interactions != null)
+							interactions.shot(i);
+						if (state != TEST_MODE)
+							if (soundOn)
+								shot.play();
+						break;
+					}
+				break;
+			case FIREDOWN:
+				for (int j=0; j<numBullets; j++)// looks for the first unused bullet slot
+					if (bullets[i][j] == null)
+					{
+						bullets[i][j] = new Bullet(botsInfo[i].getX()+Bot.RADIUS, botsInfo[i].getY()+Bot.RADIUS * 2 + 1, 0, BULLET_SPEED);
+						if (interactions != null)
+							interactions.shot(i);
+						if (state != TEST_MODE)
+							if (soundOn)
+								shot.play();
+						break;
+					}
+				break;
+			case FIRELEFT:
+				for (int j=0; j<numBullets; j++)// looks for the first unused bullet slot
+					if (bullets[i][j] == null)
+					{
+						bullets[i][j] = new Bullet(botsInfo[i].getX()-1, botsInfo[i].getY()+Bot.RADIUS, -BULLET_SPEED, 0);
+						if (interactions != null)
+							interactions.shot(i);
+						if (state != TEST_MODE)
+							if (soundOn)
+								shot.play();
+						break;
 					}
-					catch(Exception e)
+				break;
+			case FIRERIGHT:
+				for (int j=0; j<numBullets; j++)// looks for the first unused bullet slot
+					if (bullets[i][j] == null)
 					{
-						botsInfo[i].exceptionThrown(e);
+						bullets[i][j] = new Bullet(botsInfo[i].getX()+Bot.RADIUS * 2 + 1, botsInfo[i].getY()+Bot.RADIUS, BULLET_SPEED, 0);
+						if (interactions != null)
+							interactions.shot(i);
+						if (state != TEST_MODE)
+							if (soundOn)
+								shot.play();
+						break;
 					}
+				break;
+			case SEND_MESSAGE:
+				String msg = null;
+				if (posted != null) // the Bot posted its message along with the move
+				{
+					msg = posted.message;
+					if (botsInfo[i].getNumMessages() < MESSAGES_PER_ROUND && state != TEST_MODE)
+						sendMessage(i, msg, posted.channel);
+					break;
+				}
+				// get the message
+				// BOT METHOD CALL - timed and exceptions caught
+				ArenaEvents.BotCall call = ArenaEvents.startCall();
+				startAlloc = allocatedBytes();
+				startThink = System.nanoTime();
+				try {
+					msg = bots[i].outgoingMessage();
+					int channel = bots[i].messageChannel();
 					botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
-					// ***********************
+					botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+					ArenaEvents.endCall(call, botsInfo[i], "outgoingMessage");
+					// make sure they are not over the limit
+					if (botsInfo[i].getNumMessages() < MESSAGES_PER_ROUND && state != TEST_MODE)
+						sendMessage(i, msg, channel); // send the message
+				}
+				catch (Exception e)
+				{
+					botsInfo[i].exceptionThrown(e);
+					botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+					botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+					ArenaEvents.endCall(call, botsInfo[i], "outgoingMessage");
+				}
+				// ***********************
+				break;
+			}
+			// 5. Bot collisions
+			if (move == UP || move == DOWN || move == LEFT || move == RIGHT) // if a move was made...
+			{
+				// 5a. other bots
+				int other = collision(i);
+				if (other >= 0)
+				{
+					if (interactions != null)
+						interactions.bumped(i, other);
+					// reverse the previous move on collision
+					if (move == UP)
+						botsInfo[i].setY(botsInfo[i].getY()+BOT_SPEED);
+					else if (move == DOWN)
+						botsInfo[i].setY(botsInfo[i].getY()-BOT_SPEED);
+					else if (move == LEFT)
+						botsInfo[i].setX(botsInfo[i].getX()+BOT_SPEED);
+					else if (move == RIGHT)
+						botsInfo[i].setX(botsInfo[i].getX()-BOT_SPEED);
+				}
+				// 5b. wall collisions - reset the bot to be inside the boundaries
+				if (botsInfo[i].getX() < LEFT_EDGE)
+					botsInfo[i].setX(LEFT_EDGE);
+				if (botsInfo[i].getX() > rightEdge-Bot.RADIUS*2)
+					botsInfo[i].setX(rightEdge-Bot.RADIUS*2);
+				if (botsInfo[i].getY() < TOP_EDGE)
+					botsInfo[i].setY(TOP_EDGE);
+				if (botsInfo[i].getY() > bottomEdge-Bot.RADIUS*2)
+					botsInfo[i].setY(bottomEdge-Bot.RADIUS*2);
+			}
+		}
+	}
+
+	/**
+	 * Checks a Bot against all of the other Bots in the round.
+	 * @param botNum The Bot to check
+	 * @return true if the Bot is touching another Bot
+	 */
+	boolean collidesWithBot(int botNum)
+	{
+		return collision(botNum) >= 0;
+	}
+
+	/**
+	 * Finds the first of the other Bots in the round that a Bot is touching.
+	 * @param botNum The Bot to check
+	 * @return The number of the Bot it is touching, or -1 if none
+	 */
+	int collision(int botNum)
+	{
+		for (int j=0; j<numBots; j++)
+		{
+			if (j!=botNum && !botsInfo[botNum].isOut()) // don't collide with self or bots that are out
+			{
+				double d = Math.sqrt(Math.pow(botsInfo[botNum].getX()-botsInfo[j].getX(),2)+Math.pow(botsInfo[botNum].getY()-botsInfo[j].getY(),2));
+				if (d < Bot.RADIUS*2)
+					return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves all the Bullets one step, removing the ones that leave the screen
+	 * and processing the ones that hit a Bot.
+	 */
+	void moveBullets()
+	{
+		for (int i=0; i<numBots; i++)
+			for (int k=0; k<numBullets; k++)
+			{
+				if (bullets[i][k] != null)
+				{
+					bullets[i][k].moveOneStep();
+					// 6a. destroy bullet if off screen
+					if (bullets[i][k].getX() < LEFT_EDGE || bullets[i][k].getX() > rightEdge ||
+							bullets[i][k].getY() < TOP_EDGE || bullets[i][k].getY() > bottomEdge)
+					{
+						bullets[i][k] = null;
+					}
+					else // 6b. otherwise, check for bot collisions
+					{
+						if (state != TEST_MODE) // not if in test mode
+						{
+							int j = bulletHit(i, k); // only one collision per bullet
+							if (j >= 0) // hit something
+							{
+								bullets[i][k] = null; // no more bullet
+								if (interactions != null)
+									interactions.hit(i, j, !botsInfo[j].isDead(), ticksPlayed);
+								if (botsInfo[j].isDead() == false) // kill bot if possible
+								{
+									if (soundOn)
+										death.play();
+									botsInfo[i].addKill();
+									botsInfo[j].killed(botsInfo[i].getName(), i);
+									botsInfo[j].setTickOfDeath(ticksPlayed);
+									ArenaEvents.kill(botsInfo[i], botsInfo[j], ticksPlayed);
+									botsInfo[j].setScore(currentScore(j,false)); // final score of dead bot
+									//botsInfo[i].setScore(currentScore(i,false));
+									botsLeft--;
+									sendMessage(SYSTEM_MSG, botsInfo[j].getName()+" destroyed by "+botsInfo[i].getName()+".");
+								}
+							}
+						}
+					}
 				}
+			}
+	}
+
+	/**
+	 * Checks a Bullet against all of the Bots in the round except the one that fired it.
+	 * @param botNum The Bot that owns the Bullet
+	 * @param bulletNum The Bullet's slot
+	 * @return The number of the Bot that was hit, or -1 if nothing was hit
+	 */
+	int bulletHit(int botNum, int bulletNum)
+	{
+		for (int j = 0; j<numBots; j++)
+		{
+			if (!botsInfo[j].isOut() && botNum != j)
+			{
+				double d = Math.sqrt(Math.pow(bullets[botNum][bulletNum].getX()-(botsInfo[j].getX()+Bot.RADIUS),2)+Math.pow(bullets[botNum][bulletNum].getY()-(botsInfo[j].getY()+Bot.RADIUS),2));
+				if (d < Bot.RADIUS) // hit something
+					return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The per-thread allocation counter, or null if the JVM doesn't have one
+	 */
+	private static com.sun.management.ThreadMXBean allocationCounter()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported())
+		{
+			((com.sun.management.ThreadMXBean)bean).setThreadAllocatedMemoryEnabled(true);
+			return (com.sun.management.ThreadMXBean)bean;
+		}
+		return null;
+	}
+
+	/**
+	 * Used with System.nanoTime() around each Bot method call to charge the Bot
+	 * for the memory it allocates.
+	 * @return Bytes allocated by the current thread so far (always 0 if not supported)
+	 */
+	static long allocatedBytes()
+	{
+		return allocationCounter == null ? 0 : allocationCounter.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Sends a broadcast message to the bots
+	 * @param id Message sender
+	 * @param msg Message
+	 */
+	void sendMessage(int id, String msg)
+	{
+		sendMessage(id, msg, CHANNEL_ALL);
+	}
+
+	/**
+	 * Sends a message to the bots on a channel. The message is truncated and queued,
+	 * and a Bot that reaches its message cap is announced, right away. During a
+	 * frame, delivery waits until the end of the frame (see deliverMessages()).
+	 * A message on any other channel reaches nobody, so it is dropped without
+	 * being shown or counted toward the sender's cap.
+	 * @param id Message sender
+	 * @param msg Message
+	 * @param channel CHANNEL_ALL, CHANNEL_TEAM, or the Bot number it is for
+	 */
+	void sendMessage(int id, String msg, int channel)
+	{
+		if (channel != CHANNEL_ALL && channel != CHANNEL_TEAM && (channel < 0 || channel >= numBots))
+			return;
+		if (msg != null && !msg.equals(""))
+		{
+			if (id >= 0 && botsInfo[id].getNumMessages() >= MESSAGES_PER_ROUND)
+				return; // already capped
+			msg = msg.substring(0,Math.min(MAX_MESSAGE_LENGTH,msg.length()));
+			bus.add(id, channel, msg);
 			// echo the message to the screen
 			if (id >= 0)
 			{
 				botsInfo[id].sentMessage(); // increment messages sent by bot
-				messages.addFirst(botsInfo[id].getName()+": "+msg);
+				ArenaEvents.message(botsInfo[id], channel, msg.length());
+				String name = botsInfo[id].getName();
+				if (channel == CHANNEL_TEAM)
+					name += " (to team)";
+				else if (channel >= 0 && channel < numBots)
+					name += " (to "+botsInfo[channel].getName()+")";
+				messages.add(id, name, msg, round, framesPlayed);
 				// check if over limit
-				if (botsInfo[id].getNumMessages() >= TIME_LIMIT/SECS_PER_MSG)
-					sendMessage(-1,"Messages capped for "+botsInfo[id].getName());
+				if (botsInfo[id].getNumMessages() >= MESSAGES_PER_ROUND)
+				{
+					String notice = "Messages capped for "+botsInfo[id].getName();
+					bus.add(SYSTEM_MSG, notice);
+					messages.add(SYSTEM_MSG, "Referee", notice, round, framesPlayed);
+				}
 			}
 			else
-				messages.addFirst("Referee: "+msg);
+				messages.add(SYSTEM_MSG, "Referee", msg, round, framesPlayed);
 			// reset the scroll every time a message sent
 			firstMessage = 0;
+			if (!inFrame)
+				deliverMessages();
+		}
+	}
+
+	/**
+	 * Delivers the queued messages to the Bots still in play, in the order they
+	 * were sent. Each message only goes to the Bots on its channel (see
+	 * MessageBus.reaches()). Each Bot gets all of its messages in one go, and with
+	 * enough Bots the Bots are served in parallel (each Bot is still only called by
+	 * one thread at a time, and is timed on the thread that calls it).
+	 */
+	void deliverMessages()
+	{
+		if (bus.size() == 0)
+			return;
+		teamIds = bus.hasTeamMessages() ? teamIds() : null;
+		if (numBots >= PARALLEL_DELIVERY_BOTS)
+			IntStream.range(0, numBots).parallel().forEach(this::deliverMessages);
+		else
+			for (int i = 0; i<numBots; i++)
+				deliverMessages(i);
+		bus.clear();
+	}
+
+	/**
+	 * @return A number for each Bot's current team (-1 for Bots with no team), so
+	 * team messages can be matched without comparing names
+	 */
+	private int[] teamIds()
+	{
+		int[] ids = new int[numBots];
+		HashMap<String, Integer> teams = new HashMap<String, Integer>();
+		for (int i = 0; i<numBots; i++)
+		{
+			String team = botsInfo[i].getTeamName();
+			if (team == null)
+				ids[i] = -1;
+			else
+			{
+				Integer id = teams.get(team);
+				if (id == null)
+					teams.put(team, id = teams.size());
+				ids[i] = id;
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Delivers the queued messages to one Bot
+	 * @param i The Bot
+	 */
+	private void deliverMessages(int i)
+	{
+		if (asyncBots[i] != null) // delivered on the Bot's own thread
+		{
+			for (int n = 0; n<bus.size(); n++)
+				if (bus.reaches(n, i, teamIds))
+					asyncBots[i].queueMessage(bus.sender(n), bus.text(n));
+		}
+		else if (!botsInfo[i].isDead() && !botsInfo[i].isOut() && !botsInfo[i].isOverheated())
+		{
+			if (batchUsers[i] && batches[i].fill(i, teamIds) == 0)
+				return;
+			// BOT METHOD CALL - timed and exceptions caught
+			ArenaEvents.BotCall call = ArenaEvents.startCall();
+			long startAlloc = allocatedBytes();
+			long startThink = System.nanoTime();
+			if (batchUsers[i])
+			{
+				try {
+					bots[i].incomingMessages(batches[i]);
+				}
+				catch(Exception e)
+				{
+					botsInfo[i].exceptionThrown(e);
+				}
+			}
+			else for (int n = 0; n<bus.size(); n++)
+			{
+				if (!bus.reaches(n, i, teamIds))
+					continue;
+				try {
+					bots[i].incomingMessage(bus.sender(n), bus.text(n));
+				}
+				catch(Exception e)
+				{
+					botsInfo[i].exceptionThrown(e);
+				}
+			}
+			botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+			botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+			ArenaEvents.endCall(call, botsInfo[i], batchUsers[i] ? "incomingMessages" : "incomingMessage");
+			// ***********************
 		}
 	}
 
@@ -1336,7 +2497,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 * @param gameOver Whether or not the game is over (full score alloted in this case)
 	 * @return The score
 	 */
-	private double currentScore(int botNum, boolean gameOver)
+	double currentScore(int botNum, boolean gameOver)
 	{
 		double score = KILL_SCORE * botsInfo[botNum].getNumKills() * (round+1.0)/2 - ERROR_PENALTY * botsInfo[botNum].getNumExceptions() + EFFICIENCY_BONUS * (PROCESSOR_LIMIT - botsInfo[botNum].getThinkTime());
 		if (score < 0)
@@ -1345,10 +2506,10 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 			score += TIME_LIMIT * 0.1 * (round+1.0)/2;
 		else
 		{
-			if (botsInfo[botNum].getTimeOfDeath() > 0)
-				score += botsInfo[botNum].getTimeOfDeath()*POINTS_PER_SECOND*(round+1.0)/2;
+			if (botsInfo[botNum].getTickOfDeath() > 0)
+				score += botsInfo[botNum].getTickOfDeath()*POINTS_PER_SECOND/TICKS_PER_SECOND*(round+1.0)/2;
 			else
-				score += timePlayed*POINTS_PER_SECOND*(round+1.0)/2;
+				score += ticksPlayed*POINTS_PER_SECOND/TICKS_PER_SECOND*(round+1.0)/2;
 		}
 		return score < 0?0:score;
 	}
@@ -1358,16 +2519,16 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	 * @param descending If true, sorts in descending order. Ascending otherwise
 	 * @return the sorted array
 	 */
-	private BotInfo[] sortedBotInfoArray(boolean descending)
+	BotInfo[] sortedBotInfoArray(boolean descending)
 	{
 		// Create a new array for sorting
-		BotInfo[] newInfos = new BotInfo[NUM_BOTS];
-		for (int i=0; i<NUM_BOTS; i++)
+		BotInfo[] newInfos = new BotInfo[numBots];
+		for (int i=0; i<numBots; i++)
 		{
 			newInfos[i] = botsInfo[i];
 		}
 		// Bubblesort. I know, I know...
-		for (int i=NUM_BOTS-1; i>0; i--)
+		for (int i=numBots-1; i>0; i--)
 			for (int j=1; j<=i; j++)
 			{
 				double score1 = newInfos[j].getScore()+newInfos[j].getCumulativeScore();
@@ -1395,7 +2556,8 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	{
 		if (speed < 8)
 			speed *= 2;
-		gameTimer.setDelay(1000/30/speed);
+		gameTimer.setDelay(1000/TICKS_PER_SECOND/speed);
+		restartClock();
 	}
 
 	/**
@@ -1405,7 +2567,8 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	{
 		if (speed > 1)
 			speed /= 2;
-		gameTimer.setDelay(1000/30/speed);
+		gameTimer.setDelay(1000/TICKS_PER_SECOND/speed);
+		restartClock();
 	}
 
 	/**
@@ -1414,7 +2577,9 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 	private void resetGameSpeed()
 	{
 		speed = 1;
-		gameTimer.setDelay(1000/30/speed);
+		if (!headless)
+			gameTimer.setDelay(1000/TICKS_PER_SECOND/speed);
+		restartClock();
 	}
 
 	/**
@@ -1451,7 +2616,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 			g.fillRect(0,0,RIGHT_EDGE,BOTTOM_EDGE+TEXT_BUFFER);
 
 			// Draw the bots & their bullets
-			for (int i=0; i<NUM_BOTS; i++)
+			for (int i=0; i<numBots; i++)
 			{
 				if (!botsInfo[i].isOut()) // skip bots that are out
 					if (botsInfo[i].isDead()) // dead bot
@@ -1461,6 +2626,8 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					else // active bot
 					{
 						// BOT METHOD CALL - timed and exceptions caught
+						ArenaEvents.BotCall call = ArenaEvents.startCall();
+						long startAlloc = allocatedBytes();
 						long startThink = System.nanoTime();
 						try {
 							bots[i].draw(g, (int)(botsInfo[i].getX()+0.5), (int)(botsInfo[i].getY()+0.5));
@@ -1470,6 +2637,8 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 							botsInfo[i].exceptionThrown(e);
 						}
 						botsInfo[i].setThinkTime((System.nanoTime()-startThink)*nanoTimeCorrection);
+						botsInfo[i].addAllocatedBytes(allocatedBytes()-startAlloc);
+						ArenaEvents.endCall(call, botsInfo[i], "draw");
 						// ***********************
 
 						// special test mode output
@@ -1491,7 +2660,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					}
 
 				// bullets for bot i
-				for (int j=0; j<NUM_BULLETS; j++)
+				for (int j=0; j<numBullets; j++)
 				{
 					if (bullets[i][j] != null)
 						bullets[i][j].draw(g);
@@ -1500,7 +2669,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 
 			// draw the bot titles
 			// these are drawn last so they're on top of the other bots
-			for (int i=0; i<NUM_BOTS; i++)
+			for (int i=0; i<numBots; i++)
 			{
 				if (botsInfo[i].isDead() == false && botsInfo[i].isOut() == false)
 				{
@@ -1508,7 +2677,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					// default is red, but goes to gray if they can take a shot
 					g.setColor(new Color (170,42,42));
 					if (!botsInfo[i].isOverheated())
-						for (int j=0; j<NUM_BULLETS; j++)
+						for (int j=0; j<numBullets; j++)
 							if (bullets[i][j] == null)
 							{
 								g.setColor(Color.gray);
@@ -1548,23 +2717,23 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 		if (state != WAIT_TO_START)
 		{
 			g.setColor(new Color(60,60,60,130));
-			g.fillRect(0, yOffset-STATS_FONT-5, RIGHT_EDGE, STATS_FONT*(NUM_BOTS+1)+10+24);
+			g.fillRect(0, yOffset-STATS_FONT-5, RIGHT_EDGE, STATS_FONT*(numBots+2)+10+24);
 
 			g.setColor(Color.white);
 			g.setFont(new Font("MonoSpaced",Font.BOLD,24));
 			g.drawString("Stats for Round "+round, (RIGHT_EDGE+LEFT_EDGE)/2-120, yOffset);
 			yOffset += 24;
 			g.setFont(new Font("MonoSpaced",Font.PLAIN,STATS_FONT));
-			g.drawString("Name     Team     Round  Total  Time  Errors  Messages  Processor  Killed By",xOffset,yOffset);
-			for (int i=0; i<NUM_BOTS; i++)
+			g.drawString("Name     Team     Round  Total  Time  Errors  Msgs  Processor  Alloc(MB)  Killed By",xOffset,yOffset);
+			for (int i=0; i<numBots; i++)
 			{
 				String output = pad(newInfos[i].getName(), 8, false) + " " + pad(newInfos[i].getTeamName(),8, false)+" ";
 				output += (newInfos[i].isOut()?"     ":pad(df.format(newInfos[i].getScore()),5, true))+"  "+pad(df.format(newInfos[i].getScore()+newInfos[i].getCumulativeScore()),5, true)+" ";
 				if (!newInfos[i].isOut())
 				{
-					output += (newInfos[i].isDead()?pad(df.format(newInfos[i].getTimeOfDeath()),5,true):(state == GAME_OVER || state == WINNER?pad(df.format(TIME_LIMIT),5,true):pad(df.format(timePlayed),5,true)))+" ";
-					output += pad(""+newInfos[i].getNumExceptions(),6,true)+"    "+pad(""+newInfos[i].getNumMessages(),4,true)+"    ";
-					output += pad(df2.format(newInfos[i].getThinkTime()),8, true)+"    "+pad(newInfos[i].getKilledBy(),8,false);
+					output += (newInfos[i].isDead()?pad(df.format(newInfos[i].getTimeOfDeath()),5,true):(state == GAME_OVER || state == WINNER?pad(df.format(TIME_LIMIT),5,true):pad(df.format(timePlayed()),5,true)))+" ";
+					output += pad(""+newInfos[i].getNumExceptions(),6,true)+"  "+pad(""+newInfos[i].getNumMessages(),4,true)+"  ";
+					output += pad(df2.format(newInfos[i].getThinkTime()),9, true)+"  "+pad(df2.format(newInfos[i].getAllocatedBytes()/1048576.0),9, true)+"  "+pad(newInfos[i].getKilledBy(),8,false);
 				}
 
 				if (newInfos[i].isDead() && state != GAME_OVER && state != WINNER || newInfos[i].isOut() || state == GAME_OVER && newInfos[i].isOutNextRound() || state == WINNER && i != 0)
@@ -1574,6 +2743,10 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 				g.drawString(output,xOffset,yOffset+STATS_FONT+i*STATS_FONT);
 
 			}
+			// how well the arena kept up with the clock
+			g.setColor(Color.gray);
+			g.drawString("Ticks: "+framesPlayed+" played, "+caughtUpTicks+" caught up, "+skippedTicks+" skipped, worst lag "+worstLag,
+					xOffset,yOffset+STATS_FONT+numBots*STATS_FONT);
 		}
 	}
 	/**
@@ -1706,9 +2879,9 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 				g.setFont(new Font("MonoSpaced",Font.PLAIN, 14));
 				y+=16;
 				if (round == 1)
-					g.drawString("- "+NUM_BOTS+" robots to start",10,y);
+					g.drawString("- "+numBots+" robots to start",10,y);
 				else
-					g.drawString("- "+(NUM_BOTS-ELIMINATIONS_PER_ROUND*(round-1))+" robots left",10,y);
+					g.drawString("- "+(numBots-ELIMINATIONS_PER_ROUND*(round-1))+" robots left",10,y);
 				y+=15;
 				g.drawString("- each round lasts "+TIME_LIMIT+" seconds",10,y);
 				y+=15;
@@ -1716,7 +2889,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 				y+=15;
 				g.drawString("- each robot can have "+NUM_BULLETS+" bullets active at once",10,y);
 				y+=15;
-				g.drawString("- each robot can send "+(int)(TIME_LIMIT/SECS_PER_MSG)+" messages per round",10,y);
+				g.drawString("- each robot can send "+MESSAGES_PER_ROUND+" messages per round",10,y);
 				y+=15;
 				g.drawString("- each robot has "+PROCESSOR_LIMIT+" seconds of processor time",10,y);
 				y+=26;
@@ -1777,7 +2950,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 			{
 				g.setColor(Color.gray);
 				g.setFont(new Font("MonoSpaced",Font.BOLD, 45));
-				g.drawString(""+pad(df.format(Math.abs(TIME_LIMIT-timePlayed)),5,true),RIGHT_EDGE-152,BOTTOM_EDGE+40);
+				g.drawString(""+pad(df.format(Math.abs(TIME_LIMIT-timePlayed())),5,true),RIGHT_EDGE-152,BOTTOM_EDGE+40);
 				if (speed != 1)
 				{
 					g.setFont(new Font("MonoSpaced",Font.BOLD, 10));
@@ -1788,24 +2961,18 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 			// the message area
 			g.setFont(new Font("MonoSpaced",Font.PLAIN, 12));
 			int offSet = 14;
-			int counter = 0;
 			double fade = 1;
-			Iterator<String> i = messages.iterator();
-			while (i.hasNext() && counter < 6 + firstMessage)
+			for (int n = firstMessage; n < Math.min(messages.size(), firstMessage+6); n++)
 			{
-				String msg = i.next();
-				if (counter >= firstMessage)
-				{
-					if (msg.startsWith("Referee"))
-						g.setColor(new Color((int)(128*fade),(int)(128*fade),(int)(128*fade)));
-					else
-						g.setColor(new Color((int)(128*fade),(int)(128*fade),0));
+				String msg = messages.line(n);
+				if (messages.sender(n) == SYSTEM_MSG)
+					g.setColor(new Color((int)(128*fade),(int)(128*fade),(int)(128*fade)));
+				else
+					g.setColor(new Color((int)(128*fade),(int)(128*fade),0));
 
-					g.drawString(msg.substring(0,Math.min(77,msg.length())),10,BOTTOM_EDGE+TEXT_BUFFER - offSet);
-					offSet += 14;
-					//fade /= 1.15;
-				}
-				counter++;
+				g.drawString(msg.substring(0,Math.min(77,msg.length())),10,BOTTOM_EDGE+TEXT_BUFFER - offSet);
+				offSet += 14;
+				//fade /= 1.15;
 			}
 
 			// print the stats if in debug mode
@@ -1839,7 +3006,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					if (soundOn)
 						fanfare.play();
 					countDown = 60;
-					startTime = System.currentTimeMillis();
+					restartClock();
 					gameTimer.start();
 					if (botsLeft <= ELIMINATIONS_PER_ROUND+1)
 						sendMessage(SYSTEM_MSG,"Final Round starting. Good luck!");
@@ -1852,7 +3019,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					if (soundOn)
 						stop.play();
 					gameTimer.stop();
-					timePlayed = 0;
+					ticksPlayed = 0;
 					state = WAIT_TO_START;
 					reset();
 				}
@@ -1862,7 +3029,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 				{
 					// check for and process bot grabs
 					gotBot = -1;
-					for (int i=0; i<NUM_BOTS; i++)
+					for (int i=0; i<numBots; i++)
 					{
 						if (e.getX() > botsInfo[i].getX() && e.getX() < botsInfo[i].getX()+Bot.RADIUS*2 &&
 								e.getY() > botsInfo[i].getY() && e.getY() < botsInfo[i].getY()+Bot.RADIUS*2)
@@ -1893,7 +3060,7 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 				{
 					if (soundOn)
 						drone.loop();
-					startTime = System.currentTimeMillis();
+					restartClock();
 					state = GAME_ON;
 				}
 				else if (state == GAME_ON && countDown <= 0) // pause
@@ -1901,7 +3068,6 @@ public class BattleBotArena extends JPanel implements MouseListener, MouseWheelL
 					drone.stop();
 					if (soundOn)
 						stop.play();
-					pauseTime = System.nanoTime();
 					pauseCount = PAUSE_FLASH_TIME;
 					replayCurrentFrame = replayEndFrame;
 					endFrameCounter = END_FRAME_COUNT;
@@ -23,9 +23,9 @@ public class BotInfo {
 	 */
 	private double x, y;
 	/**
-	 * When the bot died
+	 * When the bot died, in ticks since the round started
 	 */
-	private double timeOfDeath = 0;
+	private int tickOfDeath = 0;
 	/**
 	 * How many exceptions thrown
 	 */
@@ -34,6 +34,10 @@ public class BotInfo {
 	 * CPU time used
 	 */
 	private double thinkTime = 0;
+	/**
+	 * Memory allocated, in bytes
+	 */
+	private long allocatedBytes = 0;
 	/**
 	 * Set to true when dead
 	 */
@@ -78,6 +82,10 @@ public class BotInfo {
 	 * Who killed this Bot
 	 */
 	private String killedBy="";
+	/**
+	 * Number of the Bot that killed this Bot, or -1
+	 */
+	private int killerNumber = -1;
 	/**
 	 * Number of kills by this Bot this round
 	 */
@@ -86,10 +94,6 @@ public class BotInfo {
 	 * True when the Bot is alive but overheated
 	 */
 	private boolean overheated = false;
-	/**
-	 * Decimal formatting object.
-	 */
-	private DecimalFormat df = new DecimalFormat("0.0");
 
 	/**
 	 * Constructor
@@ -116,9 +120,10 @@ public class BotInfo {
 	protected BotInfo copy()
 	{
 		BotInfo b = new BotInfo(x, y, botNumber, name);
-		b.timeOfDeath = timeOfDeath;
+		b.tickOfDeath = tickOfDeath;
 		b.numExceptions = numExceptions;//
 		b.thinkTime = thinkTime;//
+		b.allocatedBytes = allocatedBytes;
 		b.dead = dead;//
 		b.out = out;
 		b.outNext = outNext;
@@ -128,6 +133,7 @@ public class BotInfo {
 		b.numMessages = numMessages;//
 		b.team = team;//
 		b.killedBy = killedBy;
+		b.killerNumber = killerNumber;
 		b.numKills = numKills;
 		b.overheated = overheated;
 		return b;
@@ -138,8 +144,9 @@ public class BotInfo {
 	 */
 	public String toString()
 	{
+		DecimalFormat df = new DecimalFormat("0.0");
 		return "Name: "+name+". Team: "+team+". Score: "+df.format(score)+
-		". At: ("+df.format(x)+","+df.format(y)+"). Dead: "+dead+"("+timeOfDeath+")"+" <"+
+		". At: ("+df.format(x)+","+df.format(y)+"). Dead: "+dead+"("+getTimeOfDeath()+")"+" <"+
 		thinkTime+","+numExceptions+","+numMessages+","+lastMove+">";
 	}
 
@@ -189,16 +196,22 @@ public class BotInfo {
 		this.y = y;
 	}
 	/**
-	 * @return The Bot's time of death this round, or 0 if not dead.
+	 * @return The Bot's time of death this round in seconds of game time, or 0 if not dead.
 	 */
 	public double getTimeOfDeath() {
-		return timeOfDeath;
+		return tickOfDeath/(double)BattleBotArena.TICKS_PER_SECOND;
 	}
 	/**
-	 * @param timeOfDeath The time the bot died
+	 * @return The tick of the round the Bot died on, or 0 if not dead.
 	 */
-	protected void setTimeOfDeath(double timeOfDeath) {
-		this.timeOfDeath = timeOfDeath;
+	public int getTickOfDeath() {
+		return tickOfDeath;
+	}
+	/**
+	 * @param tickOfDeath The tick the bot died on
+	 */
+	protected void setTickOfDeath(int tickOfDeath) {
+		this.tickOfDeath = tickOfDeath;
 	}
 	/**
 	 * @return Number of exceptions thrown this round
@@ -215,6 +228,7 @@ public class BotInfo {
 	protected void exceptionThrown(Exception e) {
 		if (BattleBotArena.DEBUG) e.printStackTrace();
 		this.numExceptions++;
+		ArenaEvents.exception(this, e);
 	}
 
 	/**
@@ -232,6 +246,22 @@ public class BotInfo {
 	protected void setThinkTime(double thinkTime) {
 		this.thinkTime += thinkTime/1000000000L;
 	}
+	/**
+	 * @return The number of bytes of memory allocated by the Bot this round
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Called after the Bot has had a method called. Increases the amount of
+	 * recorded memory allocated.
+	 * @param bytes How many bytes were allocated in the last operation
+	 */
+	protected void addAllocatedBytes(long bytes) {
+		this.allocatedBytes += bytes;
+	}
+
 	/**
 	 * @return true iff the bot is dead
 	 */
@@ -246,6 +276,15 @@ public class BotInfo {
 		this.killedBy = killer;
 		this.dead = true;
 	}
+	/**
+	 * Called when the bot is destroyed by another Bot in the arena.
+	 * @param killer The name of the Bot that killed this bot
+	 * @param killerNumber The number of the Bot that killed this bot
+	 */
+	protected void killed(String killer, int killerNumber) {
+		killed(killer);
+		this.killerNumber = killerNumber;
+	}
 
 	/**
 	 * @return The Bot's current score for this round
@@ -344,6 +383,13 @@ public class BotInfo {
 		return killedBy;
 	}
 
+	/**
+	 * @return Number of the Bot that killed this Bot, or -1
+	 */
+	protected int getKillerNumber() {
+		return killerNumber;
+	}
+
 	/**
 	 * @return This Bot's cumulative score
 	 */
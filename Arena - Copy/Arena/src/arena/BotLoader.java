@@ -0,0 +1,287 @@
+package arena;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import bots.Bot;
+
+/**
+ * Finds and creates the Bots for a match, so that new Bots can be added without
+ * editing <i>fullReset()</i> in the arena.<br><br>
+ *
+ * <b>Discovery</b><br><br>
+ *
+ * Bots are discovered with a <i>ServiceLoader&lt;Bot&gt;</i>, both on the classpath and
+ * in every JAR in the bots directory. A JAR (or the classpath) lists its Bots in a
+ * <i>META-INF/services/bots.Bot</i> file, one fully qualified class name per line.
+ * Bots that are not listed anywhere can still be named in a roster, as long as they
+ * are in the <i>bots</i> package on the classpath or in one of the JARs.<br><br>
+ *
+ * <b>Rosters</b><br><br>
+ *
+ * A roster file lists the Bots that will play, one per line. Each line is a class
+ * name (e.g. <i>ScrapBot</i> or <i>bots.ScrapBot</i>), optionally followed by
+ * <i>*n</i> to enter n copies of the same Bot. Blank lines and lines starting with
+ * <i>#</i> are ignored. For example:
+ * <pre>
+ * # Period 3
+ * ScrapBot
+ * CloseBot
+ * Drone *4
+ * </pre>
+ *
+ * If a BotReloader is given, Bots with a class file in its directory are loaded
+ * from there instead, so they can be reloaded between rounds.<br><br>
+ *
+ * Classes and constructors are cached, and the Bots in a roster are created in
+ * parallel. A Bot whose class can't be found or whose constructor throws an
+ * exception is reported on System.err and its slot is left empty (the arena fills
+ * empty slots with its own Bots).
+ */
+public class BotLoader {
+
+	/**
+	 * Name of the system property holding the roster file
+	 */
+	public static final String ROSTER_PROPERTY = "arena.roster";
+	/**
+	 * Name of the system property holding the bots directory
+	 */
+	public static final String BOTS_DIR_PROPERTY = "arena.bots";
+	/**
+	 * Default bots directory (JARs in this directory are searched for Bots)
+	 */
+	public static final String DEFAULT_BOTS_DIR = "bots";
+
+	/**
+	 * Class loader for the JARs in the bots directory
+	 */
+	private final ClassLoader loader;
+	/**
+	 * Loads Bots from a watched directory of class files, or null if not used
+	 */
+	private final BotReloader reloader;
+	/**
+	 * Discovered Bot classes, by simple name and by full name
+	 */
+	private final ConcurrentHashMap<String, Class<? extends Bot>> classes = new ConcurrentHashMap<String, Class<? extends Bot>>();
+	/**
+	 * Cached no-arg constructors
+	 */
+	private final ConcurrentHashMap<Class<? extends Bot>, Constructor<? extends Bot>> constructors = new ConcurrentHashMap<Class<? extends Bot>, Constructor<? extends Bot>>();
+
+	/**
+	 * Creates a loader for the classpath and the JARs in a directory, and runs discovery.
+	 * @param botsDir Directory of Bot JARs (may be null or missing)
+	 */
+	public BotLoader(File botsDir)
+	{
+		this(botsDir, null);
+	}
+
+	/**
+	 * Creates a loader that prefers the reloadable classes in a BotReloader's directory
+	 * over the ones on the classpath or in the JARs.
+	 * @param botsDir Directory of Bot JARs (may be null or missing)
+	 * @param reloader Directory of reloadable Bot classes (may be null)
+	 */
+	public BotLoader(File botsDir, BotReloader reloader)
+	{
+		this.reloader = reloader;
+		loader = jarLoader(botsDir);
+		discover();
+	}
+
+	/**
+	 * Builds the Bots listed in a roster file.
+	 * @param rosterFile The roster
+	 * @return One Bot per roster entry (null for entries that could not be created)
+	 * @throws IOException If the roster can't be read
+	 */
+	public Bot[] loadRoster(File rosterFile) throws IOException
+	{
+		return loadRoster(rosterFile, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Builds the first Bots listed in a roster file. Entries past the limit are
+	 * never created.
+	 * @param rosterFile The roster
+	 * @param maxBots Most Bots to build
+	 * @return One Bot per roster entry, up to maxBots (null for entries that could not be created)
+	 * @throws IOException If the roster can't be read
+	 */
+	public Bot[] loadRoster(File rosterFile, int maxBots) throws IOException
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(rosterFile));
+		try {
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+				int copies = 1;
+				int star = line.indexOf('*');
+				if (star >= 0)
+				{
+					try {
+						copies = Integer.parseInt(line.substring(star+1).trim());
+					} catch (NumberFormatException e) {
+						System.err.println("BotLoader: skipping bad roster line \""+line+"\" in "+rosterFile);
+						continue;
+					}
+					line = line.substring(0, star).trim();
+				}
+				for (int i=0; i<copies && names.size()<maxBots; i++)
+					names.add(line);
+			}
+		} finally {
+			in.close();
+		}
+		return createBots(names.toArray(new String[names.size()]));
+	}
+
+	/**
+	 * Creates Bots by class name, in parallel.
+	 * @param names Simple or fully qualified class names
+	 * @return The Bots, in the same order (null for names that could not be created)
+	 */
+	public Bot[] createBots(final String[] names)
+	{
+		final Bot[] bots = new Bot[names.length];
+		IntStream.range(0, names.length).parallel().forEach(i -> bots[i] = createBot(names[i]));
+		return bots;
+	}
+
+	/**
+	 * Creates one Bot.
+	 * @param name Simple or fully qualified class name
+	 * @return The new Bot, or null if it could not be created
+	 */
+	public Bot createBot(String name)
+	{
+		if (reloader != null && reloader.hasClass(name))
+		{
+			Bot bot = reloader.create(name);
+			if (bot != null)
+				return bot;
+		}
+		Class<? extends Bot> c = findClass(name);
+		if (c == null)
+		{
+			System.err.println("BotLoader: no Bot class named "+name);
+			return null;
+		}
+		try {
+			Constructor<? extends Bot> constructor = constructors.get(c);
+			if (constructor == null)
+			{
+				constructor = c.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				constructors.put(c, constructor);
+			}
+			return constructor.newInstance();
+		} catch (Exception e) {
+			System.err.println("BotLoader: could not create "+name+" ("+e+")");
+			if (BattleBotArena.DEBUG) e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @return The simple names of all the Bots found by discovery
+	 */
+	public String[] discoveredNames()
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		for (String name : classes.keySet())
+			if (name.indexOf('.') < 0)
+				names.add(name);
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Finds a Bot class, first among the discovered Bots and then in the <i>bots</i> package.
+	 * @param name Simple or fully qualified class name
+	 * @return The class, or null if there is no such Bot
+	 */
+	private Class<? extends Bot> findClass(String name)
+	{
+		Class<? extends Bot> c = classes.get(name);
+		if (c != null)
+			return c;
+		String fullName = name.indexOf('.') < 0 ? "bots."+name : name;
+		try {
+			Class<?> found = Class.forName(fullName, false, loader);
+			if (!Bot.class.isAssignableFrom(found))
+				return null;
+			c = found.asSubclass(Bot.class);
+			register(c);
+			return c;
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Looks up all the Bots registered with ServiceLoader. Only the classes are
+	 * loaded here. The Bots themselves are created when a roster asks for them.
+	 */
+	private void discover()
+	{
+		Iterator<ServiceLoader.Provider<Bot>> providers = ServiceLoader.load(Bot.class, loader).stream().iterator();
+		while (providers.hasNext())
+		{
+			try {
+				register(providers.next().type());
+			} catch (Exception e) {
+				System.err.println("BotLoader: skipping a Bot that could not be loaded ("+e+")");
+			}
+		}
+	}
+
+	/**
+	 * Adds a class to the cache under its simple and full names
+	 * @param c The Bot class
+	 */
+	private void register(Class<? extends Bot> c)
+	{
+		classes.putIfAbsent(c.getSimpleName(), c);
+		classes.putIfAbsent(c.getName(), c);
+	}
+
+	/**
+	 * @param botsDir Directory of Bot JARs
+	 * @return A class loader for the JARs, or the arena's own class loader if there are none
+	 */
+	private static ClassLoader jarLoader(File botsDir)
+	{
+		ClassLoader parent = BotLoader.class.getClassLoader();
+		File[] jars = botsDir == null ? null : botsDir.listFiles((dir, name) -> name.endsWith(".jar"));
+		if (jars == null || jars.length == 0)
+			return parent;
+		ArrayList<URL> urls = new ArrayList<URL>();
+		for (File jar : jars)
+		{
+			try {
+				urls.add(jar.toURI().toURL());
+			} catch (MalformedURLException e) {
+				System.err.println("BotLoader: skipping "+jar);
+			}
+		}
+		return new URLClassLoader(urls.toArray(new URL[urls.size()]), parent);
+	}
+}
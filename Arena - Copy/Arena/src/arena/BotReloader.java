@@ -0,0 +1,242 @@
+package arena;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import bots.Bot;
+
+/**
+ * Loads Bots from a directory of compiled classes and reloads them when their
+ * class files change, so that Bot authors can edit, recompile and see the new
+ * version at the start of the next round without restarting the arena.<br><br>
+ *
+ * The directory is laid out like any other class folder, so <i>bots.MyBot</i>
+ * lives in <i>&lt;dir&gt;/bots/MyBot.class</i>. Since a Bot must be a single class
+ * with no inner classes, each Bot class is given its own class loader that defines
+ * just that class and leaves everything else (Bot, BotInfo, the JDK...) to the
+ * arena's class loader. A new version of a Bot gets a new class loader, and the
+ * old one is dropped along with the old Bot object.<br><br>
+ *
+ * A daemon thread watches the directory and marks changed Bots. Nothing is
+ * swapped until the arena calls <i>refresh()</i> in <i>reset()</i>, which loads
+ * each changed class once and replaces every copy of that Bot, so two versions
+ * of a Bot never play in the same round. Bots that have not changed keep their
+ * class (and the JIT's work on it).
+ */
+public class BotReloader implements Runnable {
+
+	/**
+	 * Name of the system property holding the directory of Bot classes to watch
+	 */
+	public static final String CLASSES_PROPERTY = "arena.botClasses";
+
+	/**
+	 * The directory holding the bots package
+	 */
+	private final File packageDir;
+	/**
+	 * Latest loaded version of each Bot class, by simple name
+	 */
+	private final ConcurrentHashMap<String, Class<? extends Bot>> current = new ConcurrentHashMap<String, Class<? extends Bot>>();
+	/**
+	 * Simple names of the Bots whose class files changed since they were last loaded
+	 */
+	private final Set<String> changed = ConcurrentHashMap.newKeySet();
+	/**
+	 * Watches packageDir for new and modified class files
+	 */
+	private final WatchService watcher;
+
+	/**
+	 * Starts watching a directory of Bot classes.
+	 * @param classesDir The directory (Bots are expected in its <i>bots</i> subdirectory)
+	 * @throws IOException If the directory can't be watched
+	 */
+	public BotReloader(File classesDir) throws IOException
+	{
+		packageDir = new File(classesDir, "bots");
+		watcher = packageDir.toPath().getFileSystem().newWatchService();
+		packageDir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		Thread t = new Thread(this, "BotReloader");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * @param name Simple or fully qualified class name
+	 * @return true if the Bot has a class file in the watched directory
+	 */
+	public boolean hasClass(String name)
+	{
+		return classFile(simpleName(name)).isFile();
+	}
+
+	/**
+	 * Creates a Bot from the latest version of its class file.
+	 * @param name Simple or fully qualified class name
+	 * @return The new Bot, or null if it could not be loaded or created
+	 */
+	public Bot create(String name)
+	{
+		String simpleName = simpleName(name);
+		try {
+			Class<? extends Bot> c = current.get(simpleName);
+			if (c == null)
+			{
+				c = load(simpleName);
+				current.put(simpleName, c);
+			}
+			return c.getDeclaredConstructor().newInstance();
+		} catch (Throwable e) { // a half-written class file throws errors, not exceptions
+			System.err.println("BotReloader: could not load "+simpleName+" ("+e+")");
+			if (BattleBotArena.DEBUG) e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Called between rounds. Loads the new version of each Bot class whose file
+	 * has changed, then replaces every Bot that isn't an instance of the latest
+	 * version of its class. A class that fails to load keeps its old version.
+	 * @param bots The Bots currently playing (replaced in place)
+	 */
+	public void refresh(Bot[] bots)
+	{
+		for (String simpleName : changed.toArray(new String[0]))
+		{
+			changed.remove(simpleName);
+			if (!hasClass(simpleName))
+				continue;
+			try {
+				current.put(simpleName, load(simpleName));
+			} catch (Throwable e) { // a half-written class file throws errors, not exceptions
+				System.err.println("BotReloader: could not load "+simpleName+" ("+e+")");
+				if (BattleBotArena.DEBUG) e.printStackTrace();
+			}
+		}
+		for (int i=0; i<bots.length; i++)
+		{
+			if (bots[i] == null)
+				continue;
+			Class<? extends Bot> c = current.get(bots[i].getClass().getSimpleName());
+			if (c != null && bots[i].getClass() != c)
+			{
+				Bot newBot = create(c.getSimpleName());
+				if (newBot != null)
+					bots[i] = newBot;
+			}
+		}
+	}
+
+	/**
+	 * Marks Bots as changed when their class files are written.
+	 */
+	public void run()
+	{
+		try {
+			while (true)
+			{
+				WatchKey key = watcher.take();
+				for (WatchEvent<?> event : key.pollEvents())
+				{
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+					{
+						changed.addAll(current.keySet());
+						continue;
+					}
+					String file = ((Path)event.context()).getFileName().toString();
+					if (file.endsWith(".class"))
+						changed.add(file.substring(0, file.length()-".class".length()));
+				}
+				key.reset();
+			}
+		} catch (InterruptedException e) {
+		} catch (ClosedWatchServiceException e) {
+		}
+	}
+
+	/**
+	 * Defines a fresh copy of a Bot class in its own class loader
+	 * @param simpleName The Bot's class name, without the package
+	 * @return The new class
+	 */
+	private Class<? extends Bot> load(String simpleName) throws IOException, ClassNotFoundException
+	{
+		byte[] bytes = Files.readAllBytes(classFile(simpleName).toPath());
+		ClassLoader loader = new SingleClassLoader("bots."+simpleName, bytes, BotReloader.class.getClassLoader());
+		return Class.forName("bots."+simpleName, true, loader).asSubclass(Bot.class);
+	}
+
+	/**
+	 * @param simpleName The Bot's class name, without the package
+	 * @return The Bot's class file
+	 */
+	private File classFile(String simpleName)
+	{
+		return new File(packageDir, simpleName+".class");
+	}
+
+	/**
+	 * @param name Simple or fully qualified class name
+	 * @return The class name without the package
+	 */
+	private static String simpleName(String name)
+	{
+		return name.substring(name.lastIndexOf('.')+1);
+	}
+
+	/**
+	 * A class loader that defines a single class from bytes and delegates every
+	 * other class to its parent.
+	 */
+	private static class SingleClassLoader extends ClassLoader {
+
+		/**
+		 * The one class defined here
+		 */
+		private final String className;
+		/**
+		 * The class file
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * @param className Fully qualified name of the class
+		 * @param bytes Contents of the class file
+		 * @param parent Loader for everything else
+		 */
+		SingleClassLoader(String className, byte[] bytes, ClassLoader parent)
+		{
+			super(parent);
+			this.className = className;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Defines our class ourselves (child first), and delegates the rest.
+		 */
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+		{
+			if (!name.equals(className))
+				return super.loadClass(name, resolve);
+			synchronized (getClassLoadingLock(name))
+			{
+				Class<?> c = findLoadedClass(name);
+				if (c == null)
+					c = defineClass(name, bytes, 0, bytes.length);
+				if (resolve)
+					resolveClass(c);
+				return c;
+			}
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package arena;
+
+import java.util.Arrays;
+
+/**
+ * What changed since the last frame, for Bots that keep their own picture of the
+ * arena up to date instead of rebuilding it every frame (see
+ * <i>Bot.usesDeltaFeed()</i>). The arena works the changes out once per frame and
+ * every Bot that asked for them reads the same feed.<br><br>
+ *
+ * The feed is a list of events, read with <i>size()</i> and the accessors that
+ * take an event index. The first frame of a round has an APPEARED event for every
+ * Bot in the round. After that there are events for Bots that moved, bullets that
+ * were fired or are gone (they hit something or left the screen), Bots that died
+ * or overheated, and team name changes. Bullets in flight don't get events because
+ * they always move by their speed every frame.<br><br>
+ *
+ * Like WorldView, the feed describes the start of the frame, and is updated in
+ * place every frame, so only read it during <i>getMove()</i>. If your Bot misses
+ * frames (e.g. the arena stopped calling it), it has also missed those events.
+ * Pair it with <i>usesWorldView()</i> so the arena doesn't build arrays for you.
+ */
+public final class DeltaFeed {
+
+	/**
+	 * A Bot is in the round, at (x, y). Only sent on the first frame.
+	 */
+	public static final int APPEARED = 0;
+	/**
+	 * A Bot moved by (dx, dy) and is now at (x, y)
+	 */
+	public static final int MOVED = 1;
+	/**
+	 * A Bot fired the bullet in slot <i>slot</i>, now at (x, y) with speed (dx, dy)
+	 */
+	public static final int BULLET_FIRED = 2;
+	/**
+	 * The bullet in a Bot's slot <i>slot</i> is gone
+	 */
+	public static final int BULLET_GONE = 3;
+	/**
+	 * A Bot died
+	 */
+	public static final int DIED = 4;
+	/**
+	 * A Bot overheated
+	 */
+	public static final int OVERHEATED = 5;
+	/**
+	 * A Bot changed its team name to <i>team()</i>
+	 */
+	public static final int TEAM_CHANGED = 6;
+
+	/**
+	 * Number of Bots and bullet slots per Bot
+	 */
+	private final int numBots, numBullets;
+	/**
+	 * The events
+	 */
+	private int[] type, bot, slot;
+	private double[] x, y, dx, dy;
+	private String[] team;
+	private int size;
+	/**
+	 * Frames since the start of the round
+	 */
+	private int frame;
+	/**
+	 * What the Bots saw last frame
+	 */
+	private final double[] lastX, lastY;
+	private final byte[] lastStatus;
+	private final String[] lastTeam;
+	private final Bullet[] lastBullets;
+
+	/**
+	 * Creates an empty feed for a new round
+	 * @param numBots Number of Bots
+	 * @param numBullets Bullet slots per Bot
+	 */
+	DeltaFeed(int numBots, int numBullets)
+	{
+		this.numBots = numBots;
+		this.numBullets = numBullets;
+		lastX = new double[numBots];
+		lastY = new double[numBots];
+		lastStatus = new byte[numBots];
+		lastTeam = new String[numBots];
+		lastBullets = new Bullet[numBots*numBullets];
+		int capacity = Math.max(16, numBots*2);
+		type = new int[capacity];
+		bot = new int[capacity];
+		slot = new int[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		dx = new double[capacity];
+		dy = new double[capacity];
+		team = new String[capacity];
+		frame = -1;
+	}
+
+	/**
+	 * Works out the events since the last call
+	 * @param botsInfo All the Bots
+	 * @param bullets All the bullet slots
+	 */
+	void update(BotInfo[] botsInfo, Bullet[][] bullets)
+	{
+		size = 0;
+		frame++;
+		for (int i=0; i<numBots; i++)
+		{
+			BotInfo info = botsInfo[i];
+			byte status = info.isOut() ? WorldState.OUT : info.isDead() ? WorldState.DEAD : info.isOverheated() ? WorldState.OVERHEATED : WorldState.ALIVE;
+			if (frame == 0)
+			{
+				if (status != WorldState.OUT)
+					add(APPEARED, i, -1, info.getX(), info.getY(), 0, 0, null);
+			}
+			else
+			{
+				if (info.getX() != lastX[i] || info.getY() != lastY[i])
+					add(MOVED, i, -1, info.getX(), info.getY(), info.getX()-lastX[i], info.getY()-lastY[i], null);
+				if (status != lastStatus[i])
+					if (status == WorldState.DEAD)
+						add(DIED, i, -1, info.getX(), info.getY(), 0, 0, null);
+					else if (status == WorldState.OVERHEATED)
+						add(OVERHEATED, i, -1, info.getX(), info.getY(), 0, 0, null);
+			}
+			String newTeam = info.getTeamName();
+			if (newTeam == null ? lastTeam[i] != null : !newTeam.equals(lastTeam[i]))
+				add(TEAM_CHANGED, i, -1, info.getX(), info.getY(), 0, 0, newTeam);
+			lastX[i] = info.getX();
+			lastY[i] = info.getY();
+			lastStatus[i] = status;
+			lastTeam[i] = newTeam;
+			for (int k=0; k<numBullets; k++)
+			{
+				Bullet b = bullets[i][k];
+				Bullet last = lastBullets[i*numBullets+k];
+				if (b == last)
+					continue;
+				if (last != null)
+					add(BULLET_GONE, i, k, last.getX(), last.getY(), 0, 0, null);
+				if (b != null)
+					add(BULLET_FIRED, i, k, b.getX(), b.getY(), b.getXSpeed(), b.getYSpeed(), null);
+				lastBullets[i*numBullets+k] = b;
+			}
+		}
+	}
+
+	/**
+	 * @return Number of events this frame
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return Frames since the start of the round (0 on the first frame)
+	 */
+	public int frame()
+	{
+		return frame;
+	}
+
+	/**
+	 * @param e Event index
+	 * @return The kind of event (APPEARED, MOVED...)
+	 */
+	public int type(int e)
+	{
+		return type[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return The Bot it happened to (for bullet events, the Bot that owns the bullet)
+	 */
+	public int bot(int e)
+	{
+		return bot[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return The bullet slot (-1 if it's not a bullet event)
+	 */
+	public int slot(int e)
+	{
+		return slot[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return X location of the Bot or bullet
+	 */
+	public double x(int e)
+	{
+		return x[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return Y location of the Bot or bullet
+	 */
+	public double y(int e)
+	{
+		return y[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return How far the Bot moved in X, or the new bullet's X speed
+	 */
+	public double dx(int e)
+	{
+		return dx[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return How far the Bot moved in Y, or the new bullet's Y speed
+	 */
+	public double dy(int e)
+	{
+		return dy[e];
+	}
+
+	/**
+	 * @param e Event index
+	 * @return The new team name, for a TEAM_CHANGED event (may be null)
+	 */
+	public String team(int e)
+	{
+		return team[e];
+	}
+
+	/**
+	 * Adds an event
+	 */
+	private void add(int type, int bot, int slot, double x, double y, double dx, double dy, String team)
+	{
+		if (size == this.type.length)
+			grow(size*2);
+		this.type[size] = type;
+		this.bot[size] = bot;
+		this.slot[size] = slot;
+		this.x[size] = x;
+		this.y[size] = y;
+		this.dx[size] = dx;
+		this.dy[size] = dy;
+		this.team[size] = team;
+		size++;
+	}
+
+	/**
+	 * Makes room for more events (the feed only grows, so this stops happening
+	 * after the first busy frames)
+	 * @param capacity The new number of events
+	 */
+	private void grow(int capacity)
+	{
+		type = Arrays.copyOf(type, capacity);
+		bot = Arrays.copyOf(bot, capacity);
+		slot = Arrays.copyOf(slot, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		dx = Arrays.copyOf(dx, capacity);
+		dy = Arrays.copyOf(dy, capacity);
+		team = Arrays.copyOf(team, capacity);
+	}
+}
@@ -0,0 +1,90 @@
+package arena;
+
+/**
+ * The arena's primitive copy of the current frame, read by the Bots through
+ * WorldView. The arrays are allocated once per round and refilled in place at
+ * the start of every frame, so handing the frame to a Bot costs nothing.
+ */
+class FrameStore {
+
+	/**
+	 * Bot status, as in WorldState
+	 */
+	static final byte ALIVE = WorldState.ALIVE, OVERHEATED = WorldState.OVERHEATED, DEAD = WorldState.DEAD, OUT = WorldState.OUT;
+
+	/**
+	 * Number of Bots and bullet slots per Bot
+	 */
+	final int numBots, numBullets;
+	/**
+	 * Bots, by Bot number
+	 */
+	final double[] botX, botY;
+	final byte[] status;
+	final int[] lastMove;
+	final int[] bulletsInPlay;
+	final String[] name, team;
+	/**
+	 * Bullets in play, packed into the first bulletCount entries
+	 */
+	final double[] bulletX, bulletY, bulletXSpeed, bulletYSpeed;
+	final int[] bulletOwner;
+	int bulletCount;
+
+	/**
+	 * @param numBots Number of Bots
+	 * @param numBullets Bullet slots per Bot
+	 */
+	FrameStore(int numBots, int numBullets)
+	{
+		this.numBots = numBots;
+		this.numBullets = numBullets;
+		botX = new double[numBots];
+		botY = new double[numBots];
+		status = new byte[numBots];
+		lastMove = new int[numBots];
+		bulletsInPlay = new int[numBots];
+		name = new String[numBots];
+		team = new String[numBots];
+		bulletX = new double[numBots*numBullets];
+		bulletY = new double[numBots*numBullets];
+		bulletXSpeed = new double[numBots*numBullets];
+		bulletYSpeed = new double[numBots*numBullets];
+		bulletOwner = new int[numBots*numBullets];
+	}
+
+	/**
+	 * Copies the current frame in
+	 * @param botsInfo All the Bots
+	 * @param bullets All the bullet slots
+	 */
+	void fill(BotInfo[] botsInfo, Bullet[][] bullets)
+	{
+		bulletCount = 0;
+		for (int i=0; i<numBots; i++)
+		{
+			BotInfo info = botsInfo[i];
+			botX[i] = info.getX();
+			botY[i] = info.getY();
+			status[i] = info.isOut() ? OUT : info.isDead() ? DEAD : info.isOverheated() ? OVERHEATED : ALIVE;
+			lastMove[i] = info.getLastMove();
+			name[i] = info.getName();
+			team[i] = info.getTeamName();
+			bulletsInPlay[i] = 0;
+			for (int k=0; k<numBullets; k++)
+			{
+				Bullet b = bullets[i][k];
+				if (b != null)
+				{
+					bulletX[bulletCount] = b.getX();
+					bulletY[bulletCount] = b.getY();
+					bulletXSpeed[bulletCount] = b.getXSpeed();
+					bulletYSpeed[bulletCount] = b.getYSpeed();
+					bulletOwner[bulletCount] = i;
+					bulletCount++;
+					bulletsInPlay[i]++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package arena;
+
+import java.util.Arrays;
+
+/**
+ * Who did what to whom during a round: shots fired, hits, kills and bumps
+ * (a Bot moving into another Bot and being pushed back). The arena reports each
+ * event from the tick loop as it happens, and the counts are kept up to date as
+ * the round goes, so nothing has to be replayed to get them.<br><br>
+ *
+ * The counts for each Bot are kept in arrays indexed by Bot number. The counts
+ * for each pair of Bots are kept in a small hash table of primitive arrays. Only
+ * the pairs that actually met are stored, so a round with thousands of Bots
+ * doesn't need a numBots x numBots matrix. The pairs are numbered in the order
+ * they first met. The arena hands the round to its ResultsStore when it ends,
+ * which adds it to the stats of earlier rounds and matches.<br><br>
+ *
+ * A hit is any bullet that hits a Bot, dead or alive, so a Bot's accuracy is
+ * hits/shots. A kill is a hit on a live Bot.
+ */
+class Interactions {
+
+	/**
+	 * Number of Bots in the round
+	 */
+	private final int numBots;
+	/**
+	 * Counts for each Bot, and the tick of its first kill (0 if none yet)
+	 */
+	private final int[] shots, hits, firstKill;
+	/**
+	 * The pairs: Bot, other Bot and counts
+	 */
+	private int[] pairBot, pairOther, pairHits, pairKills, pairBumps;
+	private int numPairs;
+	/**
+	 * Hash table from bot*numBots+other to pair number+1 (0 for an empty slot)
+	 */
+	private long[] keys;
+	private int[] slots;
+
+	/**
+	 * Creates the counts for a new round
+	 * @param numBots Number of Bots in the round
+	 */
+	Interactions(int numBots)
+	{
+		this.numBots = numBots;
+		shots = new int[numBots];
+		hits = new int[numBots];
+		firstKill = new int[numBots];
+		int capacity = Math.max(16, numBots);
+		pairBot = new int[capacity];
+		pairOther = new int[capacity];
+		pairHits = new int[capacity];
+		pairKills = new int[capacity];
+		pairBumps = new int[capacity];
+		keys = new long[Integer.highestOneBit(capacity)*4];
+		slots = new int[keys.length];
+	}
+
+	/**
+	 * A Bot fired a bullet
+	 * @param bot The Bot
+	 */
+	void shot(int bot)
+	{
+		shots[bot]++;
+	}
+
+	/**
+	 * A Bot's bullet hit another Bot
+	 * @param bot The Bot that fired
+	 * @param other The Bot that was hit
+	 * @param kill true if the hit killed it
+	 * @param tick The tick it happened on
+	 */
+	void hit(int bot, int other, boolean kill, int tick)
+	{
+		hits[bot]++;
+		int pair = pair(bot, other);
+		pairHits[pair]++;
+		if (kill)
+		{
+			pairKills[pair]++;
+			if (firstKill[bot] == 0)
+				firstKill[bot] = tick;
+		}
+	}
+
+	/**
+	 * A Bot moved into another Bot and was pushed back
+	 * @param bot The Bot that moved
+	 * @param other The Bot it moved into
+	 */
+	void bumped(int bot, int other)
+	{
+		int pair = pair(bot, other);
+		pairBumps[pair]++;
+	}
+
+	/**
+	 * @return Number of Bots in the round
+	 */
+	int getNumBots()
+	{
+		return numBots;
+	}
+
+	/**
+	 * @param bot A Bot's number
+	 * @return Bullets it has fired
+	 */
+	int getShots(int bot)
+	{
+		return shots[bot];
+	}
+
+	/**
+	 * @param bot A Bot's number
+	 * @return Bullets it has landed on other Bots
+	 */
+	int getHits(int bot)
+	{
+		return hits[bot];
+	}
+
+	/**
+	 * @param bot A Bot's number
+	 * @return Share of its bullets that hit a Bot (NaN if it hasn't fired)
+	 */
+	double getAccuracy(int bot)
+	{
+		return shots[bot] == 0 ? Double.NaN : (double)hits[bot]/shots[bot];
+	}
+
+	/**
+	 * @param bot A Bot's number
+	 * @return The tick of its first kill in the round (0 if it hasn't killed)
+	 */
+	int getFirstKill(int bot)
+	{
+		return firstKill[bot];
+	}
+
+	/**
+	 * @return Number of pairs of Bots that have met
+	 */
+	int getNumPairs()
+	{
+		return numPairs;
+	}
+
+	/**
+	 * @param pair A pair number
+	 * @return The Bot that fired or moved
+	 */
+	int getPairBot(int pair)
+	{
+		return pairBot[pair];
+	}
+
+	/**
+	 * @param pair A pair number
+	 * @return The Bot it hit or moved into
+	 */
+	int getPairOther(int pair)
+	{
+		return pairOther[pair];
+	}
+
+	/**
+	 * @param pair A pair number
+	 * @return Times the first Bot hit the second
+	 */
+	int getPairHits(int pair)
+	{
+		return pairHits[pair];
+	}
+
+	/**
+	 * @param pair A pair number
+	 * @return Times the first Bot killed the second (0 or 1 in a round)
+	 */
+	int getPairKills(int pair)
+	{
+		return pairKills[pair];
+	}
+
+	/**
+	 * @param pair A pair number
+	 * @return Times the first Bot moved into the second
+	 */
+	int getPairBumps(int pair)
+	{
+		return pairBumps[pair];
+	}
+
+	/**
+	 * Finds a pair, adding it if the Bots haven't met yet
+	 * @param bot The Bot that acted
+	 * @param other The Bot it acted on
+	 * @return The pair number
+	 */
+	private int pair(int bot, int other)
+	{
+		long key = (long)bot*numBots+other+1;
+		int mask = keys.length-1;
+		int i = (int)(key*0x9E3779B97F4A7C15L >>> 32) & mask;
+		while (keys[i] != 0)
+		{
+			if (keys[i] == key)
+				return slots[i]-1;
+			i = (i+1) & mask;
+		}
+		if (numPairs == pairBot.length)
+		{
+			int capacity = numPairs*2;
+			pairBot = Arrays.copyOf(pairBot, capacity);
+			pairOther = Arrays.copyOf(pairOther, capacity);
+			pairHits = Arrays.copyOf(pairHits, capacity);
+			pairKills = Arrays.copyOf(pairKills, capacity);
+			pairBumps = Arrays.copyOf(pairBumps, capacity);
+		}
+		pairBot[numPairs] = bot;
+		pairOther[numPairs] = other;
+		keys[i] = key;
+		slots[i] = ++numPairs;
+		if (numPairs*2 > keys.length)
+			rehash();
+		return numPairs-1;
+	}
+
+	/**
+	 * Doubles the hash table
+	 */
+	private void rehash()
+	{
+		long[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new long[oldKeys.length*2];
+		slots = new int[keys.length];
+		int mask = keys.length-1;
+		for (int j=0; j<oldKeys.length; j++)
+			if (oldKeys[j] != 0)
+			{
+				int i = (int)(oldKeys[j]*0x9E3779B97F4A7C15L >>> 32) & mask;
+				while (keys[i] != 0)
+					i = (i+1) & mask;
+				keys[i] = oldKeys[j];
+				slots[i] = oldSlots[j];
+			}
+	}
+}
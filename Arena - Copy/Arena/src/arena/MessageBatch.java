@@ -0,0 +1,89 @@
+package arena;
+
+import java.util.Arrays;
+
+/**
+ * The messages that reached a Bot this frame, for Bots whose
+ * <i>usesMessageBatch()</i> returns true. Instead of one call to
+ * <i>incomingMessage()</i> per message, these Bots get one call to
+ * <i>incomingMessages()</i> per frame with everything addressed to them: broadcasts,
+ * messages to their team, and messages sent straight to them.<br><br>
+ *
+ * Messages are indexed from 0 to <i>size()</i>-1 in the order they were sent. The
+ * batch is reused every frame, so only read it during <i>incomingMessages()</i>.
+ */
+public final class MessageBatch {
+
+	/**
+	 * The frame's messages
+	 */
+	private final MessageBus bus;
+	/**
+	 * Indexes into the bus of the messages for this Bot
+	 */
+	private int[] picks = new int[16];
+	private int size;
+
+	/**
+	 * @param bus The arena's message queue
+	 */
+	MessageBatch(MessageBus bus)
+	{
+		this.bus = bus;
+	}
+
+	/**
+	 * Picks out the messages addressed to a Bot
+	 * @param me The Bot
+	 * @param teamIds Team of every Bot (see MessageBus.reaches())
+	 * @return Number of messages picked
+	 */
+	int fill(int me, int[] teamIds)
+	{
+		size = 0;
+		for (int n = 0; n<bus.size(); n++)
+			if (bus.reaches(n, me, teamIds))
+			{
+				if (size == picks.length)
+					picks = Arrays.copyOf(picks, size*2);
+				picks[size++] = n;
+			}
+		return size;
+	}
+
+	/**
+	 * @return Number of messages
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param i Message index
+	 * @return Bot number of the sender, or <i>BattleBotArena.SYSTEM_MSG</i> for the referee
+	 */
+	public int sender(int i)
+	{
+		return bus.sender(picks[i]);
+	}
+
+	/**
+	 * @param i Message index
+	 * @return How it was sent: <i>BattleBotArena.CHANNEL_ALL</i>,
+	 * <i>BattleBotArena.CHANNEL_TEAM</i>, or your Bot number for a direct message
+	 */
+	public int channel(int i)
+	{
+		return bus.channel(picks[i]);
+	}
+
+	/**
+	 * @param i Message index
+	 * @return The text of the message
+	 */
+	public String text(int i)
+	{
+		return bus.text(picks[i]);
+	}
+}
@@ -0,0 +1,164 @@
+package arena;
+
+/**
+ * Queue of the messages sent during a frame. Messages are added as the
+ * Bots send them and delivered to all the Bots in one batch at the end of the
+ * move phase (see deliverMessages() in the arena), instead of interrupting move
+ * processing for every message.<br><br>
+ *
+ * The queue is a ring buffer of senders and texts that is only touched by the game
+ * thread, so it needs no locks. It grows when a frame has more messages than it
+ * has room for, and is reused from frame to frame after that.<br><br>
+ *
+ * Each message also has a channel (CHANNEL_ALL, CHANNEL_TEAM or a Bot number), and
+ * is only delivered to the Bots it reaches (see reaches()).
+ */
+class MessageBus {
+
+	/**
+	 * Senders, channels and texts, oldest at head
+	 */
+	private int[] senders, channels;
+	private String[] texts;
+	/**
+	 * Index of the oldest message, and number of messages queued
+	 */
+	private int head, size;
+
+	/**
+	 * @param capacity Starting number of messages the queue can hold
+	 */
+	MessageBus(int capacity)
+	{
+		senders = new int[Math.max(capacity, 1)];
+		channels = new int[Math.max(capacity, 1)];
+		texts = new String[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Queues a broadcast message
+	 * @param sender Bot number of the sender, or SYSTEM_MSG
+	 * @param text The message (already checked and truncated)
+	 */
+	void add(int sender, String text)
+	{
+		add(sender, BattleBotArena.CHANNEL_ALL, text);
+	}
+
+	/**
+	 * Queues a message
+	 * @param sender Bot number of the sender, or SYSTEM_MSG
+	 * @param channel CHANNEL_ALL, CHANNEL_TEAM or the Bot number it is for
+	 * @param text The message (already checked and truncated)
+	 */
+	void add(int sender, int channel, String text)
+	{
+		if (size == senders.length)
+			grow();
+		int tail = (head+size)%senders.length;
+		senders[tail] = sender;
+		channels[tail] = channel;
+		texts[tail] = text;
+		size++;
+	}
+
+	/**
+	 * @return Number of messages queued
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param n 0 for the oldest message, 1 for the next...
+	 * @return The sender of the message
+	 */
+	int sender(int n)
+	{
+		return senders[(head+n)%senders.length];
+	}
+
+	/**
+	 * @param n 0 for the oldest message, 1 for the next...
+	 * @return The channel of the message
+	 */
+	int channel(int n)
+	{
+		return channels[(head+n)%channels.length];
+	}
+
+	/**
+	 * @return true if any queued message goes to a team (so the arena needs team ids)
+	 */
+	boolean hasTeamMessages()
+	{
+		for (int n=0; n<size; n++)
+			if (channel(n) == BattleBotArena.CHANNEL_TEAM)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Checks whether a message is for a Bot. Broadcasts reach everyone, team messages
+	 * reach every Bot on the sender's team (including the sender; a Bot with no team
+	 * has no team mates), and direct messages reach only the Bot they were sent to.
+	 * @param n 0 for the oldest message, 1 for the next...
+	 * @param bot The Bot
+	 * @param teamIds A number for each Bot's team (-1 for none), or null if there are
+	 * no team messages
+	 * @return true if the message reaches the Bot
+	 */
+	boolean reaches(int n, int bot, int[] teamIds)
+	{
+		int channel = channel(n);
+		if (channel == BattleBotArena.CHANNEL_ALL)
+			return true;
+		if (channel == BattleBotArena.CHANNEL_TEAM)
+		{
+			int sender = sender(n);
+			return sender >= 0 && teamIds[sender] >= 0 && teamIds[sender] == teamIds[bot];
+		}
+		return channel == bot;
+	}
+
+	/**
+	 * @param n 0 for the oldest message, 1 for the next...
+	 * @return The text of the message
+	 */
+	String text(int n)
+	{
+		return texts[(head+n)%texts.length];
+	}
+
+	/**
+	 * Empties the queue after delivery
+	 */
+	void clear()
+	{
+		for (int n=0; n<size; n++)
+			texts[(head+n)%texts.length] = null;
+		head = (head+size)%senders.length;
+		size = 0;
+	}
+
+	/**
+	 * Doubles the capacity, keeping the messages in order
+	 */
+	private void grow()
+	{
+		int[] newSenders = new int[senders.length*2];
+		int[] newChannels = new int[channels.length*2];
+		String[] newTexts = new String[texts.length*2];
+		for (int n=0; n<size; n++)
+		{
+			newSenders[n] = sender(n);
+			newChannels[n] = channel(n);
+			newTexts[n] = text(n);
+		}
+		senders = newSenders;
+		channels = newChannels;
+		texts = newTexts;
+		head = 0;
+	}
+}
@@ -0,0 +1,238 @@
+package arena;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The messages shown in the message area of the arena. The newest CAPACITY
+ * messages (HEADLESS_CAPACITY in a headless arena) are kept in a ring of records
+ * (sender, frame, name and text), so the log takes the same memory no matter how
+ * long the match runs, and the display and scrolling can jump straight to any
+ * message.<br><br>
+ *
+ * Older messages fall off the end of the ring. If the log has an archive file,
+ * they are appended to it first (one line per message, through a direct buffer),
+ * so the full history of a long tournament is still on disk. The arena only
+ * keeps an archive if the ARCHIVE_PROPERTY system property names one. Each line
+ * is round, frame, sender, name and text separated by tabs. Backslashes, tabs and
+ * line breaks in the name and text are written as \\, \t, \n and \r, so every
+ * message is exactly one line of five fields.
+ */
+class MessageLog {
+
+	/**
+	 * Number of messages kept in memory by the arena's own log
+	 */
+	static final int CAPACITY = 512;
+	/**
+	 * Number of messages kept by headless arenas, which have no message area to
+	 * scroll (there can be hundreds of them in one JVM, see ArenaServer)
+	 */
+	static final int HEADLESS_CAPACITY = 16;
+	/**
+	 * Name of the system property holding the archive file (messages that fall
+	 * off the ring are dropped if it is not set)
+	 */
+	static final String ARCHIVE_PROPERTY = "arena.messageLog";
+
+	/**
+	 * The records. Slot (newest-n) mod capacity holds the nth newest message.
+	 */
+	private final int capacity;
+	private final int[] senders;
+	private final int[] frames;
+	private final int[] rounds;
+	private final String[] names;
+	private final String[] texts;
+	/**
+	 * Number of messages ever added (the newest is in slot (total-1) mod capacity)
+	 */
+	private long total;
+	/**
+	 * The archive, or null
+	 */
+	private FileChannel archive;
+	/**
+	 * Off-heap buffer for lines on their way to the archive
+	 */
+	private ByteBuffer archiveBuffer;
+	private CharsetEncoder encoder;
+
+	/**
+	 * @param archiveFile File to append overflowing messages to, or null to drop them
+	 */
+	MessageLog(File archiveFile)
+	{
+		this(archiveFile, CAPACITY);
+	}
+
+	/**
+	 * @param archiveFile File to append overflowing messages to, or null to drop them
+	 * @param capacity Number of messages to keep in memory
+	 */
+	MessageLog(File archiveFile, int capacity)
+	{
+		this.capacity = capacity;
+		senders = new int[capacity];
+		frames = new int[capacity];
+		rounds = new int[capacity];
+		names = new String[capacity];
+		texts = new String[capacity];
+		if (archiveFile == null)
+			return;
+		try {
+			archive = FileChannel.open(archiveFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			archiveBuffer = ByteBuffer.allocateDirect(64*1024);
+			encoder = StandardCharsets.UTF_8.newEncoder();
+		} catch (IOException e) {
+			System.err.println("MessageLog: can't write "+archiveFile+" ("+e+"), old messages will be dropped");
+		}
+	}
+
+	/**
+	 * Adds a message, pushing the oldest one out to the archive if the ring is full
+	 * @param sender Bot number, or SYSTEM_MSG for the referee
+	 * @param name Sender's name
+	 * @param text The message
+	 * @param round Round number
+	 * @param frame Frame number within the round
+	 */
+	void add(int sender, String name, String text, int round, int frame)
+	{
+		int slot = (int)(total%capacity);
+		if (total >= capacity)
+			archive(slot);
+		senders[slot] = sender;
+		names[slot] = name;
+		texts[slot] = text.intern(); // referee notices and Bot chatter repeat a lot
+		rounds[slot] = round;
+		frames[slot] = frame;
+		total++;
+	}
+
+	/**
+	 * @return Number of messages available for display
+	 */
+	int size()
+	{
+		return (int)Math.min(total, capacity);
+	}
+
+	/**
+	 * @return Number of messages added since the log was last cleared
+	 */
+	long count()
+	{
+		return total;
+	}
+
+	/**
+	 * @param n 0 for the newest message, 1 for the one before...
+	 * @return The sender (a Bot number, or SYSTEM_MSG)
+	 */
+	int sender(int n)
+	{
+		return senders[slot(n)];
+	}
+
+	/**
+	 * @param n 0 for the newest message, 1 for the one before...
+	 * @return The message as displayed (<i>Name: text</i>)
+	 */
+	String line(int n)
+	{
+		return names[slot(n)]+": "+texts[slot(n)];
+	}
+
+	/**
+	 * Empties the log for a new round, archiving everything in it first
+	 */
+	void clear()
+	{
+		for (long n = Math.max(0, total-capacity); n < total; n++)
+			archive((int)(n%capacity));
+		flush();
+		total = 0;
+	}
+
+	/**
+	 * Writes out any buffered archive lines
+	 */
+	void flush()
+	{
+		if (archive == null)
+			return;
+		try {
+			archiveBuffer.flip();
+			while (archiveBuffer.hasRemaining())
+				archive.write(archiveBuffer);
+			archiveBuffer.clear();
+		} catch (IOException e) {
+			System.err.println("MessageLog: archive write failed ("+e+"), old messages will be dropped");
+			archive = null;
+		}
+	}
+
+	/**
+	 * @param n 0 for the newest message, 1 for the one before...
+	 * @return The ring slot holding the message
+	 */
+	private int slot(int n)
+	{
+		return (int)((total-1-n)%capacity);
+	}
+
+	/**
+	 * Appends the message in a slot to the archive
+	 * @param slot The slot
+	 */
+	private void archive(int slot)
+	{
+		if (archive == null)
+			return;
+		CharBuffer line = CharBuffer.wrap(rounds[slot]+"\t"+frames[slot]+"\t"+senders[slot]+"\t"+escape(names[slot])+"\t"+escape(texts[slot])+"\n");
+		while (true)
+		{
+			CoderResult result = encoder.encode(line, archiveBuffer, true);
+			if (!result.isOverflow())
+				break;
+			flush();
+			if (archive == null)
+				return;
+		}
+		encoder.reset();
+	}
+
+	/**
+	 * @param field A name or message
+	 * @return The field with backslashes, tabs and line breaks escaped
+	 */
+	private static String escape(String field)
+	{
+		if (field.indexOf('\\') < 0 && field.indexOf('\t') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0)
+			return field;
+		StringBuilder escaped = new StringBuilder(field.length()+8);
+		for (int i=0; i<field.length(); i++)
+		{
+			char c = field.charAt(i);
+			if (c == '\\')
+				escaped.append("\\\\");
+			else if (c == '\t')
+				escaped.append("\\t");
+			else if (c == '\n')
+				escaped.append("\\n");
+			else if (c == '\r')
+				escaped.append("\\r");
+			else
+				escaped.append(c);
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,270 @@
+package arena;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+import bots.Bot;
+
+/**
+ * Skill ratings for Bots, built up from the results of many matches. A match's
+ * cumulative scores only say who did well in that match, and a single match is
+ * very noisy, so ratings are the better way to rank Bots across many runs.<br><br>
+ *
+ * The model is a free-for-all version of Elo. Each Bot in a match is rated
+ * against the average rating of the others. Its expected result is
+ * 1/(1+10^((others-rating)/400)). Its actual result is the share of the other
+ * Bots it placed above, with ties counting a half. The rating moves by K times
+ * (actual-expected), less the match's average of that, so the ratings don't
+ * drift up or down as a whole. K is larger for a Bot's first PROVISIONAL_GAMES
+ * matches so new Bots find their level quickly. An update takes time
+ * proportional to the number of Bots in the match.<br><br>
+ *
+ * Copies of the same Bot in a match (Bots with the same name) are rated as one
+ * entrant against the Bots with other names. The results of the copies are
+ * averaged, how the copies placed against each other doesn't count, and the
+ * rating moves and the games played go up once per name per match.<br><br>
+ *
+ * Ratings are kept by name (the Bot's class, for Bots in the arena). Every
+ * method is synchronized, so matches that finish at the same time on different
+ * threads (see ArenaServer and Tournament) can all record their results. The
+ * ratings are stored in a small binary file (name, rating and games for each
+ * Bot). It is loaded when the Ratings are created, and written by <i>save()</i>.
+ * To rate every match played on screen, start the arena with
+ * <i>-Darena.ratings=file</i>.
+ */
+public class Ratings {
+
+	/**
+	 * Name of the system property holding the file the arena keeps its ratings in
+	 */
+	public static final String FILE_PROPERTY = "arena.ratings";
+	/**
+	 * Rating of a Bot that hasn't played yet
+	 */
+	public static final double INITIAL_RATING = 1500;
+	/**
+	 * Most a rating can move in one match (twice as much while provisional)
+	 */
+	public static final double K = 32;
+	/**
+	 * Number of matches a Bot's rating is provisional for
+	 */
+	public static final int PROVISIONAL_GAMES = 10;
+
+	/**
+	 * Marks the start of the file, and the format version
+	 */
+	private static final int MAGIC = 0x42425231; // "BBR1"
+
+	/**
+	 * Where the ratings are stored (null if they aren't)
+	 */
+	private final File file;
+	/**
+	 * Rating and games played for each Bot, by name
+	 */
+	private final HashMap<String, double[]> ratings = new HashMap<String, double[]>();
+
+	/**
+	 * Loads the ratings stored in a file
+	 * @param file The file (may be null, or missing -- everyone starts at INITIAL_RATING)
+	 * @throws IOException If the file is there but can't be read
+	 */
+	public Ratings(File file) throws IOException
+	{
+		this.file = file;
+		if (file == null || !file.exists())
+			return;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file+" is not a ratings file");
+			int count = in.readInt();
+			for (int i=0; i<count; i++)
+			{
+				String name = in.readUTF();
+				ratings.put(name, new double[] {in.readDouble(), in.readInt()});
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Records the result of a match
+	 * @param names Name of each Bot in the match (copies of a Bot share a name)
+	 * @param placings Where each Bot placed (0 for first; Bots that tied have the same placing)
+	 */
+	public synchronized void record(String[] names, int[] placings)
+	{
+		int n = names.length;
+		// number each name, and count its copies
+		HashMap<String, Integer> index = new HashMap<String, Integer>();
+		int[] entrant = new int[n];
+		int[] copies = new int[n];
+		for (int i=0; i<n; i++)
+		{
+			Integer e = index.get(names[i]);
+			if (e == null)
+			{
+				e = index.size();
+				index.put(names[i], e);
+			}
+			entrant[i] = e;
+			copies[e]++;
+		}
+		int m = index.size();
+		if (m < 2)
+			return;
+		// how many Bots got each placing, then how many placed below each placing
+		int[] below = new int[n+1];
+		for (int i=0; i<n; i++)
+			below[Math.min(placings[i], n-1)]++;
+		int[] tied = below.clone();
+		for (int p=n-1; p>=0; p--)
+			below[p] = below[p+1]+tied[p+1];
+		// everyone's rating before the match
+		double[][] entries = new double[m][];
+		for (String name : index.keySet())
+		{
+			int e = index.get(name);
+			entries[e] = ratings.get(name);
+			if (entries[e] == null)
+			{
+				entries[e] = new double[] {INITIAL_RATING, 0};
+				ratings.put(name, entries[e]);
+			}
+		}
+		double total = 0;
+		for (int i=0; i<n; i++)
+			total += entries[entrant[i]][0];
+		// the Bots each name's copies placed above, counting ties as a half
+		double[] above = new double[m];
+		for (int i=0; i<n; i++)
+		{
+			int p = Math.min(placings[i], n-1);
+			above[entrant[i]] += below[p]+(tied[p]-1)/2.0;
+		}
+		double[] surprise = new double[m];
+		double totalSurprise = 0;
+		for (int e=0; e<m; e++)
+		{
+			int c = copies[e];
+			// between them, the copies score exactly one for each pair of copies
+			double actual = (above[e]-c*(c-1)/2.0)/(c*(n-c));
+			double others = (total-c*entries[e][0])/(n-c);
+			double expected = 1/(1+Math.pow(10, (others-entries[e][0])/400));
+			surprise[e] = actual-expected;
+			totalSurprise += surprise[e];
+		}
+		// K depends on the games played before this match
+		double[] k = new double[m];
+		for (int e=0; e<m; e++)
+			k[e] = entries[e][1] < PROVISIONAL_GAMES ? 2*K : K;
+		// rating against the field average doesn't quite add up to zero, so take
+		// out the difference or the ratings would creep up over many matches
+		for (int e=0; e<m; e++)
+		{
+			entries[e][0] += k[e]*(surprise[e]-totalSurprise/m);
+			entries[e][1]++;
+		}
+	}
+
+	/**
+	 * Records the result of a match that has just finished in an arena. The Bots
+	 * are placed in the order of their total scores, and rated by class (see key()).
+	 * @param arena The arena
+	 */
+	void record(BattleBotArena arena)
+	{
+		BotInfo[] sorted = arena.sortedBotInfoArray(true);
+		String[] names = new String[sorted.length];
+		int[] placings = new int[sorted.length];
+		for (int i=0; i<sorted.length; i++)
+		{
+			names[i] = key(arena.getBot(sorted[i].getBotNumber()));
+			double total = sorted[i].getScore()+sorted[i].getCumulativeScore();
+			placings[i] = i > 0 && total == sorted[i-1].getScore()+sorted[i-1].getCumulativeScore() ? placings[i-1] : i;
+		}
+		record(names, placings);
+	}
+
+	/**
+	 * The name a Bot is rated under: its class, since the names Bots give
+	 * themselves often include their Bot number, or the name of a remote Bot
+	 * @param bot The Bot
+	 * @return The name
+	 */
+	static String key(Bot bot)
+	{
+		return bot instanceof RemoteBot ? String.valueOf(bot.getName()) : bot.getClass().getSimpleName();
+	}
+
+	/**
+	 * @param name A Bot's name
+	 * @return Its rating (INITIAL_RATING if it hasn't played)
+	 */
+	public synchronized double getRating(String name)
+	{
+		double[] entry = ratings.get(name);
+		return entry == null ? INITIAL_RATING : entry[0];
+	}
+
+	/**
+	 * @param name A Bot's name
+	 * @return Number of matches it has been rated on
+	 */
+	public synchronized int getGames(String name)
+	{
+		double[] entry = ratings.get(name);
+		return entry == null ? 0 : (int)entry[1];
+	}
+
+	/**
+	 * @return Names of all the rated Bots, highest rated first
+	 */
+	public synchronized String[] getNames()
+	{
+		ArrayList<String> names = new ArrayList<String>(ratings.keySet());
+		Collections.sort(names, (a, b) -> Double.compare(ratings.get(b)[0], ratings.get(a)[0]));
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Writes the ratings to their file. The file is replaced in one step, so a
+	 * crash while saving leaves the old ratings intact.
+	 * @throws IOException If the file can't be written
+	 */
+	public synchronized void save() throws IOException
+	{
+		if (file == null)
+			return;
+		File temp = new File(file.getPath()+".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(ratings.size());
+			for (String name : ratings.keySet())
+			{
+				double[] entry = ratings.get(name);
+				out.writeUTF(name);
+				out.writeDouble(entry[0]);
+				out.writeInt((int)entry[1]);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
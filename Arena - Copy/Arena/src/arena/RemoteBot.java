@@ -0,0 +1,394 @@
+package arena;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import bots.Bot;
+
+/**
+ * The arena's stand-in for a Bot running in another process (see RemoteHub).
+ * The hub sends it each frame and collects its move before the Bots move, so
+ * <i>getMove()</i> just returns the move that came back. A remote Bot that
+ * disconnects stays in the round and STAYs from then on.<br><br>
+ *
+ * The time a remote Bot spends thinking is spent in its own process, so it is
+ * not charged to the Bot. The arena's deadline for each frame takes its place.
+ */
+public class RemoteBot extends Bot {
+
+	/**
+	 * Most bytes of messages held for a remote Bot that isn't reading them
+	 */
+	private static final int MAX_QUEUED = 1024*1024;
+	/**
+	 * Nothing to send
+	 */
+	private static final ByteBuffer NONE = ByteBuffer.allocate(0);
+
+	/**
+	 * The hub and the socket
+	 */
+	private final RemoteHub hub;
+	private final SocketChannel channel;
+	private boolean connected = true;
+	/**
+	 * Incoming bytes
+	 */
+	private ByteBuffer in = ByteBuffer.allocate(4096);
+	/**
+	 * Messages waiting to go out with the next frame, and the ones going out now
+	 */
+	private ByteBuffer queued = ByteBuffer.allocate(1024), sending = ByteBuffer.allocate(1024);
+	/**
+	 * The ROUND and TEAMS messages going out now
+	 */
+	private ByteBuffer round = NONE, teams = NONE;
+	/**
+	 * The buffers for the gathering write: round, teams, messages, frame
+	 */
+	private final ByteBuffer[] outgoing = new ByteBuffer[4];
+	/**
+	 * True once the Bot is in a round, and if it is starting a new one
+	 */
+	private boolean playing, newRound;
+	/**
+	 * Version of the team names the Bot has been sent
+	 */
+	private int teamsVersion;
+	/**
+	 * The frame the Bot owes a move for, or -1
+	 */
+	private int awaiting = -1;
+	/**
+	 * The last move, message and channel the Bot sent
+	 */
+	private int move = BattleBotArena.STAY;
+	private String message;
+	private int messageChannel = BattleBotArena.CHANNEL_ALL;
+	/**
+	 * Name and team as sent by the Bot
+	 */
+	private String name, team;
+
+	/**
+	 * @param hub The hub the Bot is connected to
+	 * @param channel The Bot's socket
+	 */
+	RemoteBot(RemoteHub hub, SocketChannel channel)
+	{
+		this.hub = hub;
+		this.channel = channel;
+	}
+
+	/**
+	 * @return The hub the Bot is connected to
+	 */
+	RemoteHub hub()
+	{
+		return hub;
+	}
+
+	/**
+	 * @return The Bot number the arena assigned this round
+	 */
+	int number()
+	{
+		return botNumber;
+	}
+
+	/**
+	 * @return true if the Bot has been in a round
+	 */
+	boolean isPlaying()
+	{
+		return playing && connected;
+	}
+
+	/**
+	 * @return true if the Bot owes a move for the frame it was last sent
+	 */
+	boolean isWaiting()
+	{
+		return awaiting >= 0;
+	}
+
+	/**
+	 * @return true if the last frame has not all been written to the socket yet
+	 */
+	boolean isSending()
+	{
+		return connected && outgoing[3] != null && outgoing[3].hasRemaining();
+	}
+
+	/**
+	 * Sends the Bot a frame with one gathering write: a ROUND message if the round
+	 * has just started, a TEAMS message if the team names have changed, the queued
+	 * messages, and the frame. If the socket can't take it all, the rest is written
+	 * when the socket is ready (see flush()), and the Bot skips frames until then.
+	 * @param store The frame
+	 * @param frameNum The frame number
+	 * @param teamsVersion The hub's version of the team names
+	 * @param teams The TEAMS message
+	 * @param frame The FRAME message (shared by all the Bots -- not changed here)
+	 * @return true if the frame was sent and a move is expected
+	 */
+	boolean send(FrameStore store, int frameNum, int teamsVersion, ByteBuffer teams, ByteBuffer frame)
+	{
+		if (!connected || isSending())
+			return false;
+		round = NONE;
+		if (newRound)
+		{
+			int size = 4+1+4+4+4;
+			for (int i=0; i<store.numBots; i++)
+				size += RemoteHub.utfSize(store.name[i]);
+			round = ByteBuffer.allocate(size);
+			round.putInt(size-4).put(RemoteHub.ROUND).putInt(botNumber).putInt(store.numBots).putInt(store.numBullets);
+			for (int i=0; i<store.numBots; i++)
+				RemoteHub.putUTF(round, RemoteHub.utf(store.name[i]));
+			round.flip();
+			newRound = false;
+		}
+		this.teams = this.teamsVersion == teamsVersion ? NONE : teams.duplicate();
+		this.teamsVersion = teamsVersion;
+		ByteBuffer swap = sending;
+		sending = queued;
+		sending.flip();
+		queued = swap;
+		queued.clear();
+		outgoing[0] = round;
+		outgoing[1] = this.teams;
+		outgoing[2] = sending;
+		outgoing[3] = frame.duplicate();
+		awaiting = frameNum;
+		flush();
+		return connected;
+	}
+
+	/**
+	 * Writes as much of the current frame as the socket will take
+	 */
+	void flush()
+	{
+		try {
+			channel.write(outgoing);
+			SelectionKey key = channel.keyFor(hub.selector());
+			if (key != null)
+				key.interestOps(outgoing[3].hasRemaining() ? SelectionKey.OP_READ|SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		} catch (IOException e) {
+			disconnect(e);
+		}
+	}
+
+	/**
+	 * Reads whatever the Bot has sent and handles the complete messages
+	 */
+	void read()
+	{
+		try {
+			if (channel.read(in) < 0)
+			{
+				disconnect(null);
+				return;
+			}
+			in.flip();
+			while (in.remaining() >= 4)
+			{
+				int length = in.getInt(in.position());
+				if (length < 1 || length > RemoteHub.MAX_MESSAGE)
+					throw new IOException("bad message length "+length);
+				if (in.remaining() < 4+length)
+					break;
+				int end = in.position()+4+length;
+				in.position(in.position()+4);
+				handle(in.get());
+				in.position(end);
+			}
+			in.compact();
+			if (in.remaining() == 0) // make room for a message bigger than the buffer
+			{
+				ByteBuffer bigger = ByteBuffer.allocate(in.capacity()*2);
+				in.flip();
+				bigger.put(in);
+				in = bigger;
+			}
+		} catch (IOException | RuntimeException e) {
+			disconnect(e);
+		}
+	}
+
+	/**
+	 * Handles one message from the Bot
+	 * @param type The message type (the rest of the message is in the buffer)
+	 */
+	private void handle(byte type)
+	{
+		if (type == RemoteHub.HELLO)
+		{
+			name = RemoteHub.getUTF(in);
+			if (name == null)
+				name = "Remote";
+		}
+		else if (type == RemoteHub.MOVE)
+		{
+			int frameNum = in.getInt();
+			move = in.get();
+			team = RemoteHub.getUTF(in);
+			message = RemoteHub.getUTF(in);
+			messageChannel = in.getInt();
+			if (frameNum == awaiting)
+				awaiting = -1;
+		}
+	}
+
+	/**
+	 * Closes the connection
+	 * @param e What went wrong, or null if the Bot hung up
+	 */
+	void disconnect(Exception e)
+	{
+		if (!connected)
+			return;
+		connected = false;
+		awaiting = -1;
+		move = BattleBotArena.STAY;
+		if (e != null)
+			System.err.println("RemoteBot "+name+" disconnected ("+e+")");
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// closing anyway
+		}
+	}
+
+	/**
+	 * Queues a message to go out with the next frame
+	 * @param sender The sender
+	 * @param msg The message
+	 */
+	private void queue(int sender, String msg)
+	{
+		byte[] bytes = RemoteHub.utf(msg);
+		int size = 4+1+4+2+(bytes == null ? 0 : bytes.length);
+		if (queued.remaining() < size)
+		{
+			if (queued.position()+size > MAX_QUEUED)
+				return; // the Bot isn't reading -- drop it
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(queued.capacity()*2, queued.position()+size));
+			queued.flip();
+			bigger.put(queued);
+			queued = bigger;
+		}
+		queued.putInt(size-4).put(RemoteHub.MESSAGE).putInt(sender);
+		RemoteHub.putUTF(queued, bytes);
+	}
+
+	/**
+	 * Not used (see usesWorldView())
+	 */
+	public int getMove(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets)
+	{
+		return getMove((WorldView)null);
+	}
+
+	/**
+	 * Makes the last move the Bot sent (each move is only made once)
+	 */
+	public int getMove(WorldView world)
+	{
+		int next = move;
+		move = BattleBotArena.STAY;
+		return next;
+	}
+
+	/**
+	 * Remote Bots take the WorldView, so the arena doesn't build arrays for them
+	 */
+	public boolean usesWorldView()
+	{
+		return true;
+	}
+
+	/**
+	 * Draws a plain circle
+	 */
+	public void draw(Graphics g, int x, int y)
+	{
+		g.setColor(connected ? Color.orange : Color.darkGray);
+		g.fillOval(x, y, Bot.RADIUS*2, Bot.RADIUS*2);
+	}
+
+	/**
+	 * Returns the name the Bot said hello with
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Returns the team the Bot sent with its last move
+	 */
+	public String getTeamName()
+	{
+		return team;
+	}
+
+	/**
+	 * Returns the message the Bot sent with its SEND_MESSAGE move
+	 */
+	public String outgoingMessage()
+	{
+		String msg = message;
+		message = null;
+		return msg;
+	}
+
+	/**
+	 * Returns the channel the Bot sent with its message
+	 */
+	public int messageChannel()
+	{
+		return messageChannel;
+	}
+
+	/**
+	 * Passes the message on with the next frame
+	 */
+	public void incomingMessage(int botNum, String msg)
+	{
+		if (connected)
+			queue(botNum, msg);
+	}
+
+	/**
+	 * No images
+	 */
+	public String[] imageNames()
+	{
+		return null;
+	}
+
+	/**
+	 * No images
+	 */
+	public void loadedImages(Image[] images)
+	{
+	}
+
+	/**
+	 * Sends the Bot its new number and the names of the other Bots with the next frame
+	 */
+	public void newRound()
+	{
+		playing = true;
+		newRound = true;
+		move = BattleBotArena.STAY;
+		awaiting = -1;
+	}
+}
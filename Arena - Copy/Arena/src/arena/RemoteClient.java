@@ -0,0 +1,305 @@
+package arena;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import bots.Bot;
+
+/**
+ * Runs an ordinary Bot in its own process and connects it to an arena's
+ * RemoteHub. For example, with the arena started with
+ * <i>-Darena.remoteBots=1</i>:
+ * <pre>
+ * java arena.RemoteClient localhost 4520 ScrapBot
+ * </pre>
+ * The client decodes each frame into the same kind of data the arena keeps, so
+ * the Bot gets a WorldView or the usual arrays, exactly as it would in the arena.
+ * The WorldState, SpatialIndex and DeltaFeed are not available to remote Bots.
+ * If several frames arrive while the Bot is thinking, it only answers the newest.
+ */
+public class RemoteClient {
+
+	/**
+	 * The Bot
+	 */
+	private final Bot bot;
+	/**
+	 * The connection to the hub
+	 */
+	private final SocketChannel channel;
+	private ByteBuffer in = ByteBuffer.allocate(64*1024);
+	private ByteBuffer out = ByteBuffer.allocate(1024);
+	/**
+	 * The Bot's number and the current frame
+	 */
+	private int me = -1, frameNum;
+	private FrameStore store;
+	private WorldView view;
+	/**
+	 * Messages waiting for a Bot that takes them in a batch
+	 */
+	private MessageBus bus = new MessageBus(16);
+	private MessageBatch batch = new MessageBatch(bus);
+	private boolean usesBatch;
+	/**
+	 * Exceptions the Bot has thrown
+	 */
+	private int exceptions;
+
+	/**
+	 * Connects a Bot to a hub and says hello
+	 * @param bot The Bot
+	 * @param host The arena's host
+	 * @param port The hub's port
+	 * @throws IOException If the hub can't be reached
+	 */
+	public RemoteClient(Bot bot, String host, int port) throws IOException
+	{
+		this.bot = bot;
+		channel = SocketChannel.open(new InetSocketAddress(host, port));
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		byte[] name = RemoteHub.utf(bot.getName());
+		out.clear();
+		out.putInt(1+2+(name == null ? 0 : name.length)).put(RemoteHub.HELLO);
+		RemoteHub.putUTF(out, name);
+		write();
+	}
+
+	/**
+	 * Plays until the arena hangs up
+	 * @throws IOException If the connection fails
+	 */
+	public void run() throws IOException
+	{
+		while (channel.read(in) >= 0)
+		{
+			boolean newFrame = false;
+			in.flip();
+			while (in.remaining() >= 4)
+			{
+				int length = in.getInt(in.position());
+				if (length < 1 || length > RemoteHub.MAX_MESSAGE)
+					throw new IOException("bad message length "+length);
+				if (in.remaining() < 4+length)
+					break;
+				int end = in.position()+4+length;
+				in.position(in.position()+4);
+				newFrame |= handle(in.get());
+				in.position(end);
+			}
+			in.compact();
+			if (in.remaining() == 0) // make room for a message bigger than the buffer
+			{
+				ByteBuffer bigger = ByteBuffer.allocate(in.capacity()*2);
+				in.flip();
+				bigger.put(in);
+				in = bigger;
+			}
+			if (newFrame)
+				move();
+		}
+		channel.close();
+	}
+
+	/**
+	 * Handles one message from the arena
+	 * @param type The message type (the rest of the message is in the buffer)
+	 * @return true if it was a frame
+	 */
+	private boolean handle(byte type)
+	{
+		if (type == RemoteHub.ROUND)
+		{
+			me = in.getInt();
+			store = new FrameStore(in.getInt(), in.getInt());
+			for (int i=0; i<store.numBots; i++)
+				store.name[i] = RemoteHub.getUTF(in);
+			view = new WorldView(store, me);
+			// BOT METHOD CALLS - exceptions caught
+			try {
+				bot.assignNumber(me);
+				bot.newRound();
+				usesBatch = bot.usesMessageBatch();
+			} catch (Exception e) {
+				exceptionThrown(e);
+			}
+			// ***********************
+		}
+		else if (type == RemoteHub.TEAMS)
+		{
+			int numBots = in.getInt();
+			for (int i=0; i<numBots; i++)
+			{
+				String team = RemoteHub.getUTF(in);
+				if (store != null && i < store.numBots)
+					store.team[i] = team;
+			}
+		}
+		else if (type == RemoteHub.MESSAGE)
+		{
+			int sender = in.getInt();
+			String msg = RemoteHub.getUTF(in);
+			if (usesBatch)
+				bus.add(sender, msg);
+			else
+			{
+				// BOT METHOD CALL - exceptions caught
+				try {
+					bot.incomingMessage(sender, msg);
+				} catch (Exception e) {
+					exceptionThrown(e);
+				}
+				// ***********************
+			}
+		}
+		else if (type == RemoteHub.FRAME && store != null)
+		{
+			frameNum = in.getInt();
+			int numBots = in.getInt();
+			for (int i=0; i<numBots; i++)
+			{
+				store.botX[i] = in.getDouble();
+				store.botY[i] = in.getDouble();
+				store.status[i] = in.get();
+				store.lastMove[i] = in.get();
+				store.bulletsInPlay[i] = 0;
+			}
+			store.bulletCount = in.getInt();
+			for (int k=0; k<store.bulletCount; k++)
+			{
+				store.bulletX[k] = in.getDouble();
+				store.bulletY[k] = in.getDouble();
+				store.bulletXSpeed[k] = in.getDouble();
+				store.bulletYSpeed[k] = in.getDouble();
+				store.bulletOwner[k] = in.getInt();
+				store.bulletsInPlay[store.bulletOwner[k]]++;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Asks the Bot for its move on the newest frame and sends it to the arena
+	 * @throws IOException If the connection fails
+	 */
+	private void move() throws IOException
+	{
+		int move = BattleBotArena.STAY;
+		String team = null, msg = null;
+		int channel = BattleBotArena.CHANNEL_ALL;
+		// BOT METHOD CALLS - exceptions caught
+		try {
+			if (usesBatch && bus.size() > 0)
+			{
+				batch.fill(me, null);
+				bus.clear();
+				bot.incomingMessages(batch);
+			}
+			team = bot.getTeamName();
+			if (bot.usesWorldView())
+				move = bot.getMove(view);
+			else
+				move = getMoveWithArrays();
+			if (move == BattleBotArena.SEND_MESSAGE)
+			{
+				msg = bot.outgoingMessage();
+				channel = bot.messageChannel();
+			}
+		} catch (Exception e) {
+			exceptionThrown(e);
+		}
+		// ***********************
+		byte[] teamBytes = RemoteHub.utf(team), msgBytes = RemoteHub.utf(msg);
+		int size = 4+1+4+1+2+(teamBytes == null ? 0 : teamBytes.length)+2+(msgBytes == null ? 0 : msgBytes.length)+4;
+		if (out.capacity() < size)
+			out = ByteBuffer.allocate(size);
+		out.clear();
+		out.putInt(size-4).put(RemoteHub.MOVE).putInt(frameNum).put((byte)move);
+		RemoteHub.putUTF(out, teamBytes);
+		RemoteHub.putUTF(out, msgBytes);
+		out.putInt(channel);
+		write();
+	}
+
+	/**
+	 * Builds the usual arrays from the frame and calls the array version of getMove()
+	 * @return The move
+	 */
+	private int getMoveWithArrays()
+	{
+		BotInfo[] infos = new BotInfo[store.numBots];
+		int live = 0, dead = 0;
+		for (int i=0; i<store.numBots; i++)
+		{
+			BotInfo info = new BotInfo(store.botX[i], store.botY[i], i, store.name[i]);
+			info.setTeamName(store.team[i]);
+			info.setLastMove(store.lastMove[i]);
+			if (store.status[i] == FrameStore.DEAD)
+			{
+				info.killed("");
+				dead++;
+			}
+			else if (store.status[i] == FrameStore.OVERHEATED)
+				info.overheated();
+			if ((store.status[i] == FrameStore.ALIVE || store.status[i] == FrameStore.OVERHEATED) && i != me)
+				live++;
+			infos[i] = info;
+		}
+		BotInfo[] liveBots = new BotInfo[live], deadBots = new BotInfo[dead];
+		live = dead = 0;
+		for (int i=0; i<store.numBots; i++)
+			if (store.status[i] == FrameStore.DEAD)
+				deadBots[dead++] = infos[i];
+			else if (store.status[i] != FrameStore.OUT && i != me)
+				liveBots[live++] = infos[i];
+		Bullet[] bullets = new Bullet[store.bulletCount];
+		for (int k=0; k<store.bulletCount; k++)
+			bullets[k] = new Bullet(store.bulletX[k], store.bulletY[k], store.bulletXSpeed[k], store.bulletYSpeed[k]);
+		return bot.getMove(infos[me], store.bulletsInPlay[me] < store.numBullets, liveBots, deadBots, bullets);
+	}
+
+	/**
+	 * Reports an exception thrown by the Bot
+	 * @param e The exception
+	 */
+	private void exceptionThrown(Exception e)
+	{
+		exceptions++;
+		System.err.println(bot.getName()+" threw "+e+" ("+exceptions+" so far)");
+	}
+
+	/**
+	 * Sends the contents of the output buffer
+	 * @throws IOException If the connection fails
+	 */
+	private void write() throws IOException
+	{
+		out.flip();
+		while (out.hasRemaining())
+			channel.write(out);
+	}
+
+	/**
+	 * Connects a Bot to an arena
+	 * @param args host, port, Bot class name (as in a roster file)
+	 * @throws IOException If the connection fails
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 3)
+		{
+			System.err.println("Usage: java arena.RemoteClient host port BotClass");
+			return;
+		}
+		BotLoader loader = new BotLoader(new File(System.getProperty(BotLoader.BOTS_DIR_PROPERTY, BotLoader.DEFAULT_BOTS_DIR)));
+		Bot bot = loader.createBot(args[2]);
+		if (bot == null)
+			return;
+		new RemoteClient(bot, args[0], Integer.parseInt(args[1])).run();
+	}
+}
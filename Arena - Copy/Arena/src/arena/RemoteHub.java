@@ -0,0 +1,356 @@
+package arena;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Hosts Bots that run in their own processes, so a Bot that crashes or eats all
+ * its memory can't take the arena down with it. Each remote Bot connects to the
+ * hub over a loopback socket and plays through a RemoteBot, the in-process
+ * stand-in the arena sees. The RemoteClient class runs any ordinary Bot class
+ * as a remote Bot.<br><br>
+ *
+ * <b>Frames</b><br><br>
+ *
+ * One thread (the arena's) serves every remote Bot. Once per frame the hub encodes
+ * the frame once, then hands it to each remote Bot in play with a single gathering
+ * write of that Bot's pending messages followed by the shared frame. It then waits
+ * on a selector until every Bot has answered with its move, or the frame's time is
+ * up (REMOTE_DEADLINE in the arena). A Bot that misses the deadline STAYs, and its
+ * late move is used on the next frame. A Bot whose socket can't keep up skips
+ * frames until it has read the ones already sent.<br><br>
+ *
+ * <b>Protocol</b><br><br>
+ *
+ * Every message is a 4-byte length (of the rest of the message), a 1-byte type,
+ * and the fields below. Numbers are big-endian. Strings are a 2-byte length (-1
+ * for null) and that many bytes of UTF-8.
+ * <pre>
+ * Bot to arena:
+ *   HELLO    name
+ *   MOVE     int frame, byte move, team, message (null unless SEND_MESSAGE), int channel
+ * Arena to Bot:
+ *   ROUND    int yourNumber, int numBots, int bulletsPerBot, numBots names
+ *   TEAMS    int numBots, numBots team names
+ *   MESSAGE  int sender, text
+ *   FRAME    int frame, int numBots, numBots * (double x, double y, byte status, byte lastMove),
+ *            int numBullets, numBullets * (double x, double y, double xSpeed, double ySpeed, int owner)
+ * </pre>
+ * Status is as in WorldState (ALIVE, OVERHEATED, DEAD or OUT). ROUND comes before
+ * the first frame of each round, and TEAMS before any frame in which a team name
+ * has changed since the Bot last saw them.
+ */
+public class RemoteHub {
+
+	/**
+	 * Name of the system property holding the port the arena listens on for remote Bots
+	 */
+	public static final String PORT_PROPERTY = "arena.remotePort";
+	/**
+	 * Name of the system property holding the number of remote Bots the arena waits for
+	 */
+	public static final String COUNT_PROPERTY = "arena.remoteBots";
+	/**
+	 * Port used if the property is not set
+	 */
+	public static final int DEFAULT_PORT = 4520;
+	/**
+	 * How long the arena waits for its remote Bots to connect, in milliseconds
+	 */
+	public static final long ACCEPT_TIMEOUT = 30000;
+
+	/**
+	 * Message types
+	 */
+	static final byte HELLO = 1, MOVE = 2, ROUND = 10, TEAMS = 11, MESSAGE = 12, FRAME = 13;
+	/**
+	 * Largest message either side will accept
+	 */
+	static final int MAX_MESSAGE = 1024*1024;
+
+	/**
+	 * The listening socket
+	 */
+	private final ServerSocketChannel server;
+	/**
+	 * Waits on all the remote Bots' sockets
+	 */
+	private final Selector selector;
+	/**
+	 * Every remote Bot that has said hello
+	 */
+	private final ArrayList<RemoteBot> bots = new ArrayList<RemoteBot>();
+	/**
+	 * The current frame, encoded once for every Bot
+	 */
+	private ByteBuffer frame = ByteBuffer.allocateDirect(64*1024);
+	/**
+	 * The TEAMS message, and the teams it was built from
+	 */
+	private ByteBuffer teams = ByteBuffer.allocate(0);
+	private String[] lastTeams = new String[0];
+	/**
+	 * Bumped every time the team names change
+	 */
+	private int teamsVersion;
+
+	/**
+	 * Starts listening for remote Bots on the loopback interface
+	 * @param port The port (0 for any free port)
+	 * @throws IOException If the port can't be opened
+	 */
+	public RemoteHub(int port) throws IOException
+	{
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+		server.register(selector, 0);
+	}
+
+	/**
+	 * @return The port the hub is listening on
+	 */
+	public int getPort()
+	{
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Waits for remote Bots to connect and say hello
+	 * @param count Number of Bots to wait for
+	 * @param timeoutMillis Longest time to wait
+	 * @return The Bots that joined (possibly fewer than count)
+	 * @throws IOException If the listening socket fails
+	 */
+	public RemoteBot[] accept(int count, long timeoutMillis) throws IOException
+	{
+		ArrayList<RemoteBot> joined = new ArrayList<RemoteBot>();
+		long deadline = System.nanoTime()+timeoutMillis*1000000L;
+		server.keyFor(selector).interestOps(SelectionKey.OP_ACCEPT);
+		while (joined.size() < count)
+		{
+			long left = (deadline-System.nanoTime())/1000000;
+			if (left <= 0)
+				break;
+			selector.select(left);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid())
+					continue;
+				if (key.isAcceptable())
+				{
+					SocketChannel channel = server.accept();
+					if (channel == null)
+						continue;
+					channel.configureBlocking(false);
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+					channel.register(selector, SelectionKey.OP_READ, new RemoteBot(this, channel));
+				}
+				else if (key.isReadable())
+				{
+					RemoteBot bot = (RemoteBot)key.attachment();
+					boolean named = bot.getName() != null;
+					bot.read();
+					if (!named && bot.getName() != null)
+					{
+						bots.add(bot);
+						joined.add(bot);
+					}
+				}
+			}
+		}
+		server.keyFor(selector).interestOps(0);
+		return joined.toArray(new RemoteBot[joined.size()]);
+	}
+
+	/**
+	 * Closes every connection and stops listening
+	 */
+	public void close()
+	{
+		for (RemoteBot bot : bots)
+			bot.disconnect(null);
+		try {
+			selector.close();
+			server.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+
+	/**
+	 * Called by the arena at the start of every frame. Sends the frame to every
+	 * remote Bot in play and collects their moves.
+	 * @param store The frame
+	 * @param frameNum Frame number within the round
+	 * @param budgetNanos How long the Bots have to answer
+	 */
+	void exchange(FrameStore store, int frameNum, long budgetNanos)
+	{
+		long deadline = System.nanoTime()+budgetNanos;
+		encodeTeams(store);
+		encodeFrame(store, frameNum);
+		int waiting = 0;
+		for (RemoteBot bot : bots)
+		{
+			int i = bot.number();
+			if (bot.isPlaying() && i < store.numBots && store.status[i] == FrameStore.ALIVE)
+				if (bot.send(store, frameNum, teamsVersion, teams, frame))
+					waiting++;
+		}
+		while (waiting > 0)
+		{
+			long left = deadline-System.nanoTime();
+			if (left <= 0)
+				break;
+			try {
+				selector.select(Math.max(1, left/1000000));
+			} catch (IOException e) {
+				System.err.println("RemoteHub: select failed ("+e+")");
+				break;
+			}
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				RemoteBot bot = (RemoteBot)key.attachment();
+				if (bot == null || !key.isValid())
+					continue;
+				boolean wasWaiting = bot.isWaiting();
+				if (key.isWritable())
+					bot.flush();
+				if (key.isValid() && key.isReadable())
+					bot.read();
+				if (wasWaiting && !bot.isWaiting())
+					waiting--;
+			}
+		}
+	}
+
+	/**
+	 * @return The selector, for the Bots to register with
+	 */
+	Selector selector()
+	{
+		return selector;
+	}
+
+	/**
+	 * Rebuilds the TEAMS message if any team name has changed
+	 * @param store The frame
+	 */
+	private void encodeTeams(FrameStore store)
+	{
+		boolean changed = lastTeams.length != store.numBots;
+		for (int i=0; !changed && i<store.numBots; i++)
+			changed = store.team[i] == null ? lastTeams[i] != null : !store.team[i].equals(lastTeams[i]);
+		if (!changed)
+			return;
+		lastTeams = store.team.clone();
+		int size = 4+1+4;
+		byte[][] bytes = new byte[store.numBots][];
+		for (int i=0; i<store.numBots; i++)
+		{
+			bytes[i] = utf(store.team[i]);
+			size += 2+(bytes[i] == null ? 0 : bytes[i].length);
+		}
+		teams = ByteBuffer.allocate(size);
+		teams.putInt(size-4).put(TEAMS).putInt(store.numBots);
+		for (int i=0; i<store.numBots; i++)
+			putUTF(teams, bytes[i]);
+		teams.flip();
+		teamsVersion++;
+	}
+
+	/**
+	 * Encodes the FRAME message. The buffer is reused unless a Bot is still
+	 * reading the last one.
+	 * @param store The frame
+	 * @param frameNum Frame number within the round
+	 */
+	private void encodeFrame(FrameStore store, int frameNum)
+	{
+		int size = 4+1+4+4+store.numBots*18+4+store.bulletCount*36;
+		boolean inUse = false;
+		for (RemoteBot bot : bots)
+			inUse |= bot.isSending();
+		if (inUse || frame.capacity() < size)
+			frame = ByteBuffer.allocateDirect(Math.max(frame.capacity(), size));
+		frame.clear();
+		frame.putInt(size-4).put(FRAME).putInt(frameNum).putInt(store.numBots);
+		for (int i=0; i<store.numBots; i++)
+			frame.putDouble(store.botX[i]).putDouble(store.botY[i]).put(store.status[i]).put((byte)store.lastMove[i]);
+		frame.putInt(store.bulletCount);
+		for (int k=0; k<store.bulletCount; k++)
+			frame.putDouble(store.bulletX[k]).putDouble(store.bulletY[k]).putDouble(store.bulletXSpeed[k]).putDouble(store.bulletYSpeed[k]).putInt(store.bulletOwner[k]);
+		frame.flip();
+	}
+
+	/**
+	 * @param s A string (may be null)
+	 * @return Its UTF-8 bytes (cut to fit the 2-byte length), or null
+	 */
+	static byte[] utf(String s)
+	{
+		if (s == null)
+			return null;
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		return bytes.length <= Short.MAX_VALUE ? bytes : Arrays.copyOf(bytes, Short.MAX_VALUE);
+	}
+
+	/**
+	 * Writes a string in the protocol's format
+	 * @param buffer The buffer
+	 * @param bytes The string's UTF-8 bytes (see utf()), or null
+	 */
+	static void putUTF(ByteBuffer buffer, byte[] bytes)
+	{
+		if (bytes == null)
+			buffer.putShort((short)-1);
+		else
+		{
+			buffer.putShort((short)bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	/**
+	 * Reads a string in the protocol's format
+	 * @param buffer The buffer
+	 * @return The string, or null
+	 */
+	static String getUTF(ByteBuffer buffer)
+	{
+		int length = buffer.getShort();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param s A string (may be null)
+	 * @return The number of bytes putUTF() will write for it
+	 */
+	static int utfSize(String s)
+	{
+		return 2+(s == null ? 0 : utf(s).length);
+	}
+}
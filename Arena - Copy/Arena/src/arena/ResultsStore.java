@@ -0,0 +1,492 @@
+package arena;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps the end-of-round stats of every Bot in every match, so they can be
+ * analysed after the arena has moved on. The store is a directory with one file
+ * per column. Each file holds one primitive value per row, big-endian. There is
+ * one row per Bot per round (Bots already knocked out get no row). Bots and
+ * killers are stored as numbers, looked up in <i>names.txt</i>, which has one
+ * name per line.
+ * <pre>
+ * match.i32  round.i32  bot.i32  score.f64  kills.i32  exceptions.i32
+ * messages.i32  think.f64 (seconds)  alloc.f64 (bytes)  death.i32 (tick, 0 if alive)
+ * killer.i32 (name number, -1 if not killed)  shots.i32  hits.i32
+ * firstkill.i32 (tick, 0 if no kills)
+ * </pre>
+ * The <i>pairs</i> directory under it has the same layout, with a row for every
+ * pair of Bots that hit or bumped into each other in a round (see Interactions):
+ * <pre>
+ * match.i32  round.i32  bot.i32  other.i32  hits.i32  kills.i32  bumps.i32
+ * </pre>
+ * Bots are named by class (see <i>Ratings.key()</i>), so their rows add up across
+ * matches.<br><br>
+ *
+ * A query maps the column files it needs straight into memory and scans them as
+ * IntBuffers or DoubleBuffers, so even millions of rows are never turned into
+ * objects. <i>meanBy()</i>, <i>accuracy()</i>, <i>killMatrix()</i> and
+ * <i>pairMatrix()</i> cover the usual questions. Anything else can be done with
+ * <i>ints()</i>, <i>doubles()</i> and <i>pairInts()</i>.<br><br>
+ *
+ * Appends are synchronized, so the arenas of an ArenaServer can share one store.
+ * If the arena is stopped in the middle of an append, the columns can end up
+ * different lengths. The rows that all of them have are still good, and
+ * <i>getRows()</i> and <i>getPairRows()</i> only count those. Each table is cut
+ * back to those rows when the store is opened and before every append, so the
+ * next round's rows line up in every column. To keep the stats of matches played
+ * on screen, start the arena with <i>-Darena.results=directory</i>.
+ */
+public class ResultsStore {
+
+	/**
+	 * Name of the system property holding the directory the arena keeps its results in
+	 */
+	public static final String DIR_PROPERTY = "arena.results";
+
+	/**
+	 * Columns holding ints
+	 */
+	public static final String MATCH = "match", ROUND = "round", BOT = "bot", KILLS = "kills", EXCEPTIONS = "exceptions",
+			MESSAGES = "messages", DEATH = "death", KILLER = "killer", SHOTS = "shots", HITS = "hits", FIRST_KILL = "firstkill";
+	/**
+	 * Columns holding doubles
+	 */
+	public static final String SCORE = "score", THINK = "think", ALLOC = "alloc";
+	/**
+	 * Columns of the pairs table (with MATCH, ROUND, BOT, HITS and KILLS)
+	 */
+	public static final String OTHER = "other", BUMPS = "bumps";
+
+	/**
+	 * Every column, in the order append() fills them
+	 */
+	private static final String[] INT_COLUMNS = {MATCH, ROUND, BOT, KILLS, EXCEPTIONS, MESSAGES, DEATH, KILLER, SHOTS, HITS, FIRST_KILL};
+	private static final String[] DOUBLE_COLUMNS = {SCORE, THINK, ALLOC};
+	private static final String[] PAIR_COLUMNS = {MATCH, ROUND, BOT, OTHER, HITS, KILLS, BUMPS};
+	/**
+	 * The dictionary of Bot names
+	 */
+	private static final String NAMES_FILE = "names.txt";
+
+	/**
+	 * The store's directory, and the directory of the pairs table
+	 */
+	private final File dir, pairDir;
+	/**
+	 * Bot names, by number and number by name
+	 */
+	private final ArrayList<String> names = new ArrayList<String>();
+	private final HashMap<String, Integer> numbers = new HashMap<String, Integer>();
+	/**
+	 * Number of the last match added
+	 */
+	private int lastMatch = -1;
+
+	/**
+	 * Opens a store, creating it if need be
+	 * @param dir The store's directory
+	 * @throws IOException If the directory can't be created or read
+	 */
+	public ResultsStore(File dir) throws IOException
+	{
+		this.dir = dir;
+		pairDir = new File(dir, "pairs");
+		Files.createDirectories(pairDir.toPath());
+		File namesFile = new File(dir, NAMES_FILE);
+		if (namesFile.exists())
+		{
+			BufferedReader in = Files.newBufferedReader(namesFile.toPath(), StandardCharsets.UTF_8);
+			try {
+				String line;
+				while ((line = in.readLine()) != null)
+				{
+					numbers.put(line, names.size());
+					names.add(line);
+				}
+			} finally {
+				in.close();
+			}
+		}
+		int rows = getRows();
+		trim(dir, INT_COLUMNS, ".i32", 4, rows);
+		trim(dir, DOUBLE_COLUMNS, ".f64", 8, rows);
+		trim(pairDir, PAIR_COLUMNS, ".i32", 4, getPairRows());
+		if (rows > 0)
+			lastMatch = ints(MATCH).get(rows-1);
+	}
+
+	/**
+	 * @return A number for a new match, one more than the last match stored
+	 */
+	public synchronized int newMatch()
+	{
+		return ++lastMatch;
+	}
+
+	/**
+	 * Stores the stats of the round that has just ended in an arena
+	 * @param arena The arena
+	 * @param match The match number (see newMatch())
+	 */
+	void append(BattleBotArena arena, int match)
+	{
+		int numBots = arena.getNumBots();
+		int rows = 0;
+		for (int i=0; i<numBots; i++)
+			if (!arena.getBotInfo(i).isOut())
+				rows++;
+		int[][] ints = new int[INT_COLUMNS.length][rows];
+		double[][] doubles = new double[DOUBLE_COLUMNS.length][rows];
+		String[] bots = new String[numBots];
+		for (int i=0; i<numBots; i++)
+			bots[i] = Ratings.key(arena.getBot(i));
+		Interactions interactions = arena.getInteractions();
+		int pairs = interactions == null ? 0 : interactions.getNumPairs();
+		int[][] pairInts = new int[PAIR_COLUMNS.length][pairs];
+		synchronized (this)
+		{
+			int row = 0;
+			for (int i=0; i<numBots; i++)
+			{
+				BotInfo info = arena.getBotInfo(i);
+				if (info.isOut())
+					continue;
+				ints[0][row] = match;
+				ints[1][row] = arena.getRound();
+				ints[2][row] = number(bots[i]);
+				ints[3][row] = info.getNumKills();
+				ints[4][row] = info.getNumExceptions();
+				ints[5][row] = info.getNumMessages();
+				ints[6][row] = info.getTickOfDeath();
+				ints[7][row] = info.getKillerNumber() < 0 ? -1 : number(bots[info.getKillerNumber()]);
+				if (interactions != null)
+				{
+					ints[8][row] = interactions.getShots(i);
+					ints[9][row] = interactions.getHits(i);
+					ints[10][row] = interactions.getFirstKill(i);
+				}
+				doubles[0][row] = info.getScore();
+				doubles[1][row] = info.getThinkTime();
+				doubles[2][row] = info.getAllocatedBytes();
+				row++;
+			}
+			for (int p=0; p<pairs; p++)
+			{
+				pairInts[0][p] = match;
+				pairInts[1][p] = arena.getRound();
+				pairInts[2][p] = number(bots[interactions.getPairBot(p)]);
+				pairInts[3][p] = number(bots[interactions.getPairOther(p)]);
+				pairInts[4][p] = interactions.getPairHits(p);
+				pairInts[5][p] = interactions.getPairKills(p);
+				pairInts[6][p] = interactions.getPairBumps(p);
+			}
+			// write after the last complete row, over anything a torn append left behind
+			long rowsBefore = getRows(), pairsBefore = getPairRows();
+			try {
+				for (int c=0; c<INT_COLUMNS.length; c++)
+				{
+					ByteBuffer buffer = ByteBuffer.allocate(rows*4);
+					buffer.asIntBuffer().put(ints[c]);
+					write(dir, INT_COLUMNS[c]+".i32", rowsBefore*4, buffer);
+				}
+				for (int c=0; c<DOUBLE_COLUMNS.length; c++)
+				{
+					ByteBuffer buffer = ByteBuffer.allocate(rows*8);
+					buffer.asDoubleBuffer().put(doubles[c]);
+					write(dir, DOUBLE_COLUMNS[c]+".f64", rowsBefore*8, buffer);
+				}
+				for (int c=0; c<PAIR_COLUMNS.length; c++)
+				{
+					ByteBuffer buffer = ByteBuffer.allocate(pairs*4);
+					buffer.asIntBuffer().put(pairInts[c]);
+					write(pairDir, PAIR_COLUMNS[c]+".i32", pairsBefore*4, buffer);
+				}
+			} catch (IOException e) {
+				System.err.println("ResultsStore: can't write to "+dir+" ("+e+")");
+			}
+		}
+	}
+
+	/**
+	 * @return Number of rows stored
+	 */
+	public synchronized int getRows()
+	{
+		long rows = Long.MAX_VALUE;
+		for (String column : INT_COLUMNS)
+			rows = Math.min(rows, new File(dir, column+".i32").length()/4);
+		for (String column : DOUBLE_COLUMNS)
+			rows = Math.min(rows, new File(dir, column+".f64").length()/8);
+		return (int)rows;
+	}
+
+	/**
+	 * @return Number of rows in the pairs table
+	 */
+	public synchronized int getPairRows()
+	{
+		long rows = Long.MAX_VALUE;
+		for (String column : PAIR_COLUMNS)
+			rows = Math.min(rows, new File(pairDir, column+".i32").length()/4);
+		return (int)rows;
+	}
+
+	/**
+	 * @return Number of Bot names in the dictionary
+	 */
+	public synchronized int getNameCount()
+	{
+		return names.size();
+	}
+
+	/**
+	 * @param number A number from the bot or killer column
+	 * @return The Bot's name
+	 */
+	public synchronized String getName(int number)
+	{
+		return names.get(number);
+	}
+
+	/**
+	 * Maps a column of ints into memory
+	 * @param column The column (MATCH, ROUND, BOT, KILLS, EXCEPTIONS, MESSAGES, DEATH or KILLER)
+	 * @return A read-only view of the rows stored so far
+	 * @throws IOException If the column can't be read
+	 */
+	public IntBuffer ints(String column) throws IOException
+	{
+		return map(dir, column+".i32", (long)getRows()*4).asIntBuffer();
+	}
+
+	/**
+	 * Maps a column of doubles into memory
+	 * @param column The column (SCORE, THINK or ALLOC)
+	 * @return A read-only view of the rows stored so far
+	 * @throws IOException If the column can't be read
+	 */
+	public DoubleBuffer doubles(String column) throws IOException
+	{
+		return map(dir, column+".f64", (long)getRows()*8).asDoubleBuffer();
+	}
+
+	/**
+	 * Maps a column of the pairs table into memory
+	 * @param column The column (MATCH, ROUND, BOT, OTHER, HITS, KILLS or BUMPS)
+	 * @return A read-only view of the rows stored so far
+	 * @throws IOException If the column can't be read
+	 */
+	public IntBuffer pairInts(String column) throws IOException
+	{
+		return map(pairDir, column+".i32", (long)getPairRows()*4).asIntBuffer();
+	}
+
+	/**
+	 * Averages a column for each Bot (or killer, or any other column of numbers)
+	 * @param group The column to group by, e.g. BOT
+	 * @param value The column to average, e.g. THINK for the mean CPU time of each Bot
+	 * @return The mean for each number in the group column (NaN where there are no rows)
+	 * @throws IOException If the columns can't be read
+	 */
+	public double[] meanBy(String group, String value) throws IOException
+	{
+		IntBuffer groups = ints(group);
+		int n = groups.limit();
+		int size = 0;
+		for (int row=0; row<n; row++)
+			size = Math.max(size, groups.get(row)+1);
+		double[] sums = new double[size];
+		int[] counts = new int[size];
+		boolean isInt = false;
+		for (String column : INT_COLUMNS)
+			isInt |= column.equals(value);
+		if (isInt)
+		{
+			IntBuffer values = ints(value);
+			for (int row=0; row<n; row++)
+			{
+				int g = groups.get(row);
+				if (g >= 0)
+				{
+					sums[g] += values.get(row);
+					counts[g]++;
+				}
+			}
+		}
+		else
+		{
+			DoubleBuffer values = doubles(value);
+			for (int row=0; row<n; row++)
+			{
+				int g = groups.get(row);
+				if (g >= 0)
+				{
+					sums[g] += values.get(row);
+					counts[g]++;
+				}
+			}
+		}
+		for (int g=0; g<size; g++)
+			sums[g] = counts[g] == 0 ? Double.NaN : sums[g]/counts[g];
+		return sums;
+	}
+
+	/**
+	 * Counts who killed whom
+	 * @return kills[killer][victim], indexed by name number
+	 * @throws IOException If the columns can't be read
+	 */
+	public int[][] killMatrix() throws IOException
+	{
+		IntBuffer bots = ints(BOT), killers = ints(KILLER);
+		int n = Math.min(bots.limit(), killers.limit());
+		int size = getNameCount();
+		int[][] kills = new int[size][size];
+		for (int row=0; row<n; row++)
+		{
+			int killer = killers.get(row);
+			if (killer >= 0)
+				kills[killer][bots.get(row)]++;
+		}
+		return kills;
+	}
+
+	/**
+	 * Adds up a column of the pairs table for each pair of Bots, e.g. HITS for
+	 * how often each Bot hits each other Bot, or BUMPS for who gets in whose way
+	 * @param value The column (HITS, KILLS or BUMPS)
+	 * @return totals[bot][other], indexed by name number
+	 * @throws IOException If the columns can't be read
+	 */
+	public int[][] pairMatrix(String value) throws IOException
+	{
+		IntBuffer bots = pairInts(BOT), others = pairInts(OTHER), values = pairInts(value);
+		int n = Math.min(bots.limit(), Math.min(others.limit(), values.limit()));
+		int size = getNameCount();
+		int[][] totals = new int[size][size];
+		for (int row=0; row<n; row++)
+			totals[bots.get(row)][others.get(row)] += values.get(row);
+		return totals;
+	}
+
+	/**
+	 * Works out the share of each Bot's bullets that hit another Bot, over every round stored
+	 * @return Hits/shots for each name number (NaN for Bots that never fired)
+	 * @throws IOException If the columns can't be read
+	 */
+	public double[] accuracy() throws IOException
+	{
+		IntBuffer bots = ints(BOT), shots = ints(SHOTS), hits = ints(HITS);
+		int n = bots.limit();
+		int size = getNameCount();
+		long[] totalShots = new long[size], totalHits = new long[size];
+		for (int row=0; row<n; row++)
+		{
+			totalShots[bots.get(row)] += shots.get(row);
+			totalHits[bots.get(row)] += hits.get(row);
+		}
+		double[] accuracy = new double[size];
+		for (int i=0; i<size; i++)
+			accuracy[i] = totalShots[i] == 0 ? Double.NaN : (double)totalHits[i]/totalShots[i];
+		return accuracy;
+	}
+
+	/**
+	 * @param name A Bot's name
+	 * @return Its number, adding it to the dictionary if it's new
+	 */
+	private int number(String name)
+	{
+		Integer number = numbers.get(name);
+		if (number != null)
+			return number;
+		try {
+			Files.write(new File(dir, NAMES_FILE).toPath(), (name+"\n").getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			System.err.println("ResultsStore: can't write to "+dir+" ("+e+")");
+		}
+		numbers.put(name, names.size());
+		names.add(name);
+		return names.size()-1;
+	}
+
+	/**
+	 * Appends to a column file, cutting off anything after the table's last complete row first
+	 * @param dir The table's directory
+	 * @param file The file
+	 * @param end Bytes in the rows all the table's columns have
+	 * @param buffer The values
+	 * @throws IOException If the file can't be written
+	 */
+	private void write(File dir, String file, long end, ByteBuffer buffer) throws IOException
+	{
+		FileChannel channel = FileChannel.open(new File(dir, file).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			channel.truncate(end);
+			channel.position(end);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Cuts a table's column files back to the rows all of them have
+	 * @param dir The table's directory
+	 * @param columns The columns
+	 * @param suffix Their file suffix
+	 * @param size Bytes per value
+	 * @param rows Rows to keep
+	 * @throws IOException If a file can't be written
+	 */
+	private void trim(File dir, String[] columns, String suffix, int size, int rows) throws IOException
+	{
+		for (String column : columns)
+		{
+			File f = new File(dir, column+suffix);
+			if (f.length() <= (long)rows*size)
+				continue;
+			FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.WRITE);
+			try {
+				channel.truncate((long)rows*size);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Maps the rows of a column file into memory
+	 * @param dir The table's directory
+	 * @param file The file
+	 * @param bytes Bytes to map (the rows all the table's columns have)
+	 * @return The mapped bytes (empty if the file doesn't exist)
+	 * @throws IOException If the file can't be read
+	 */
+	private ByteBuffer map(File dir, String file, long bytes) throws IOException
+	{
+		File f = new File(dir, file);
+		if (!f.exists())
+			return ByteBuffer.allocate(0);
+		FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		try {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+		} finally {
+			channel.close();
+		}
+	}
+}
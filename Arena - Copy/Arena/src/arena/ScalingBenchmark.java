@@ -0,0 +1,192 @@
+package arena;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import bots.Bot;
+import bots.Drone;
+import bots.ScrapBot;
+import bots.SentryBot;
+
+/**
+ * Macro benchmark that plays headless matches with the stock Bots and sweeps the
+ * number of Bots, the bullets per Bot and the size of the arena. Each match is
+ * played for a fixed number of ticks (or until the round ends) and one CSV row
+ * is written per configuration: ticks per second, allocation rate, GC time, and
+ * the median and 99th percentile tick latency.<br><br>
+ *
+ * Usage: <i>java arena.ScalingBenchmark [-bots 16,64,256,1024] [-bullets 4]
+ * [-sizes 700x500,1400x1000] [-ticks 900] [-seed 1] [-out report.csv]</i><br><br>
+ *
+ * The seed fixes the roster and the arena's shuffling and placement. The stock
+ * Bots use Math.random(), so their moves still vary from run to run. The Bots
+ * start on a grid spread over the whole arena (see
+ * <i>BattleBotArena.startColumns()</i>), and a configuration with more Bots than
+ * fit in its arena is skipped. That is why the default sweep also has a
+ * 1400x1000 arena, which has room for 1024 Bots. RandBots are
+ * left out because some rounds they deliberately sleep to overheat, which would
+ * be measured instead of the arena. Allocation is counted on every thread, so
+ * it includes the parallel work the arena does for big rosters.
+ */
+public class ScalingBenchmark {
+
+	/**
+	 * CSV header for the report
+	 */
+	private static final String HEADER = "bots,bulletsPerBot,width,height,seed,ticks,ticksPerSec,allocMBPerSec,gcMillis,p50TickMicros,p99TickMicros,botsLeft";
+
+	/**
+	 * Runs the sweep
+	 * @param args See the class comment
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] botCounts = {16, 64, 256, 1024};
+		int[] bulletCounts = {BattleBotArena.NUM_BULLETS};
+		String[] sizes = {BattleBotArena.RIGHT_EDGE+"x"+BattleBotArena.BOTTOM_EDGE, "1400x1000"};
+		int ticks = 900;
+		long seed = 1;
+		String outFile = null;
+		for (int i=0; i+1<args.length; i+=2)
+		{
+			if (args[i].equals("-bots"))
+				botCounts = parseInts(args[i+1]);
+			else if (args[i].equals("-bullets"))
+				bulletCounts = parseInts(args[i+1]);
+			else if (args[i].equals("-sizes"))
+				sizes = args[i+1].split(",");
+			else if (args[i].equals("-ticks"))
+				ticks = Integer.parseInt(args[i+1]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[i+1]);
+			else if (args[i].equals("-out"))
+				outFile = args[i+1];
+		}
+
+		PrintWriter out = new PrintWriter(outFile == null ? new PrintWriter(System.out, true) : new FileWriter(outFile), true);
+		out.println(HEADER);
+		for (String size : sizes)
+		{
+			int width = Integer.parseInt(size.substring(0, size.indexOf('x')));
+			int height = Integer.parseInt(size.substring(size.indexOf('x')+1));
+			for (int numBullets : bulletCounts)
+				for (int numBots : botCounts)
+					if (BattleBotArena.startColumns(numBots, width, height) == 0)
+						System.err.println("ScalingBenchmark: "+numBots+" Bots don't fit in "+size+", skipped");
+					else
+						out.println(runMatch(numBots, numBullets, width, height, seed, ticks));
+		}
+		if (outFile != null)
+			out.close();
+	}
+
+	/**
+	 * Plays one headless match and measures it
+	 * @return The CSV row for the match
+	 */
+	private static String runMatch(int numBots, int numBullets, int width, int height, long seed, int maxTicks)
+	{
+		BattleBotArena arena = new BattleBotArena(roster(numBots), seed, width, height, numBullets);
+		arena.startMatch();
+
+		long[] tickTimes = new long[maxTicks];
+		long gcBefore = gcMillis();
+		long allocBefore = allocatedBytes();
+		long start = System.nanoTime();
+		int ticks = 0;
+		while (ticks < maxTicks && !arena.isMatchOver())
+		{
+			long tickStart = System.nanoTime();
+			arena.step();
+			tickTimes[ticks++] = System.nanoTime()-tickStart;
+		}
+		double seconds = (System.nanoTime()-start)/1000000000.0;
+		long allocated = allocatedBytes()-allocBefore;
+		long gc = gcMillis()-gcBefore;
+
+		long[] sorted = Arrays.copyOf(tickTimes, ticks);
+		Arrays.sort(sorted);
+		return numBots+","+numBullets+","+width+","+height+","+seed+","+ticks+","
+			+ String.format(Locale.ROOT, "%.1f", ticks/seconds)+","
+			+ (allocBefore < 0 ? "" : String.format(Locale.ROOT, "%.1f", allocated/1048576.0/seconds))+","
+			+ gc+","
+			+ String.format(Locale.ROOT, "%.1f", percentile(sorted, 0.5)/1000.0)+","
+			+ String.format(Locale.ROOT, "%.1f", percentile(sorted, 0.99)/1000.0)+","
+			+ arena.getBotsLeft();
+	}
+
+	/**
+	 * @param numBots Size of the roster
+	 * @return The stock Bots, in the rotation that fullReset() uses for filler
+	 * without the RandBots
+	 */
+	private static Bot[] roster(int numBots)
+	{
+		Bot[] bots = new Bot[numBots];
+		bots[0] = new ScrapBot();
+		for (int i=1; i<numBots; i++)
+			if (i%2 == 1)
+				bots[i] = new Drone();
+			else
+				bots[i] = new SentryBot();
+		return bots;
+	}
+
+	/**
+	 * @param sorted Sorted samples
+	 * @param p Percentile, between 0 and 1
+	 * @return The sample at percentile p
+	 */
+	private static long percentile(long[] sorted, double p)
+	{
+		if (sorted.length == 0)
+			return 0;
+		return sorted[Math.min(sorted.length-1, (int)(p*sorted.length))];
+	}
+
+	/**
+	 * @return Total time spent in garbage collection so far, in ms
+	 */
+	private static long gcMillis()
+	{
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionTime());
+		return total;
+	}
+
+	/**
+	 * Adds up the allocation counters of every live thread, so the arena's
+	 * parallel newRound() calls and message delivery are counted too. (Threads
+	 * that end during a match take their counts with them, but the pool threads
+	 * the arena uses stay alive between ticks.)
+	 * @return Bytes allocated by all threads so far, or -1 if the JVM can't tell us
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		long total = 0;
+		for (long bytes : ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(bean.getAllThreadIds()))
+			total += Math.max(0, bytes);
+		return total;
+	}
+
+	/**
+	 * @param list Comma separated list of ints
+	 * @return The ints
+	 */
+	private static int[] parseInts(String list)
+	{
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for (int i=0; i<parts.length; i++)
+			values[i] = Integer.parseInt(parts[i].trim());
+		return values;
+	}
+}
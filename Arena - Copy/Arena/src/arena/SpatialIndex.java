@@ -0,0 +1,288 @@
+package arena;
+
+import bots.Bot;
+
+/**
+ * Answers the geometry questions that most Bots ask every frame: which Bots are
+ * nearest, which are within range, and which bullets are heading for a given spot.
+ * The arena builds one index per frame (only if a Bot has asked for it, see
+ * <i>Bot.usesSpatialIndex()</i>) and shares it between all the Bots, so the cost of
+ * building it is paid once instead of once per Bot.<br><br>
+ *
+ * Live Bots (including overheated ones) are sorted into a grid of square cells, so
+ * a query only looks at the cells near the point it asks about. Bullets only ever
+ * move along a row or a column, so bullets moving sideways are sorted by the band
+ * of rows they are in, and bullets moving up or down by their band of columns.<br><br>
+ *
+ * Positions are the top left corners used by BotInfo. The index is read only and
+ * describes the frame it was built for. It holds copies of the Bots as they were
+ * at the start of the frame, so every Bot gets the same answers, whatever order
+ * the Bots move in.
+ */
+public final class SpatialIndex {
+
+	/**
+	 * Width and height of a grid cell
+	 */
+	public static final int CELL_SIZE = 50;
+
+	/**
+	 * Grid size
+	 */
+	private final int cols, rows;
+	/**
+	 * Copies of the live Bots, sorted by cell. The Bots in cell c are
+	 * cellBots[cellStart[c]] to cellBots[cellStart[c+1]-1].
+	 */
+	private final BotInfo[] cellBots;
+	private final int[] cellStart;
+	/**
+	 * Bullets moving sideways, sorted by row band (same layout as cellBots)
+	 */
+	private final Bullet[] rowBullets;
+	private final int[] rowStart;
+	/**
+	 * Bullets moving up or down, sorted by column band (same layout as cellBots)
+	 */
+	private final Bullet[] colBullets;
+	private final int[] colStart;
+
+	/**
+	 * Builds the index for one frame, from copies of the Bots as they are now
+	 * @param botsInfo All the Bots
+	 * @param bullets All the bullet slots
+	 * @param rightEdge Right edge of the arena
+	 * @param bottomEdge Bottom edge of the arena
+	 */
+	SpatialIndex(BotInfo[] botsInfo, Bullet[][] bullets, int rightEdge, int bottomEdge)
+	{
+		cols = rightEdge/CELL_SIZE+1;
+		rows = bottomEdge/CELL_SIZE+1;
+
+		// counting sort of the live Bots into cells
+		cellStart = new int[cols*rows+1];
+		int live = 0;
+		for (BotInfo bot : botsInfo)
+			if (!bot.isOut() && !bot.isDead())
+			{
+				cellStart[cell(bot.getX(), bot.getY())+1]++;
+				live++;
+			}
+		for (int c=0; c<cols*rows; c++)
+			cellStart[c+1] += cellStart[c];
+		cellBots = new BotInfo[live];
+		int[] next = cellStart.clone();
+		for (BotInfo bot : botsInfo)
+			if (!bot.isOut() && !bot.isDead())
+				cellBots[next[cell(bot.getX(), bot.getY())]++] = bot.copy();
+
+		// same again for the bullets, by row and by column
+		rowStart = new int[rows+1];
+		colStart = new int[cols+1];
+		int sideways = 0, upDown = 0;
+		for (Bullet[] slots : bullets)
+			for (Bullet b : slots)
+				if (b != null)
+					if (b.getYSpeed() == 0)
+					{
+						rowStart[band(b.getY(), rows)+1]++;
+						sideways++;
+					}
+					else
+					{
+						colStart[band(b.getX(), cols)+1]++;
+						upDown++;
+					}
+		for (int r=0; r<rows; r++)
+			rowStart[r+1] += rowStart[r];
+		for (int c=0; c<cols; c++)
+			colStart[c+1] += colStart[c];
+		rowBullets = new Bullet[sideways];
+		colBullets = new Bullet[upDown];
+		int[] nextRow = rowStart.clone();
+		int[] nextCol = colStart.clone();
+		for (Bullet[] slots : bullets)
+			for (Bullet b : slots)
+				if (b != null)
+					if (b.getYSpeed() == 0)
+						rowBullets[nextRow[band(b.getY(), rows)]++] = b;
+					else
+						colBullets[nextCol[band(b.getX(), cols)]++] = b;
+	}
+
+	/**
+	 * @param me The Bot asking
+	 * @return The nearest other live Bot, or null if there are none
+	 */
+	public BotInfo nearest(BotInfo me)
+	{
+		BotInfo[] found = nearest(me.getX(), me.getY(), 1, me.getBotNumber());
+		return found.length == 0 ? null : found[0];
+	}
+
+	/**
+	 * Finds the k nearest live Bots to a point.
+	 * @param x X location (a Bot's top left corner)
+	 * @param y Y location
+	 * @param k How many Bots to find
+	 * @param exclude Number of a Bot to leave out (usually the Bot asking), or -1
+	 * @return Up to k Bots, nearest first
+	 */
+	public BotInfo[] nearest(double x, double y, int k, int exclude)
+	{
+		k = Math.min(k, cellBots.length);
+		BotInfo[] best = new BotInfo[k];
+		double[] bestDist = new double[k];
+		int found = 0;
+		int cx = clamp((int)(x/CELL_SIZE), cols), cy = clamp((int)(y/CELL_SIZE), rows);
+		// search rings of cells around the point until nothing outside can be closer
+		for (int r=0; k > 0; r++)
+		{
+			int left = cx-r, right = cx+r, top = cy-r, bottom = cy+r;
+			for (int gy=Math.max(top,0); gy<=Math.min(bottom,rows-1); gy++)
+				for (int gx=Math.max(left,0); gx<=Math.min(right,cols-1); gx++)
+				{
+					if (gx != left && gx != right && gy != top && gy != bottom)
+						continue; // inner cells were searched in an earlier ring
+					int c = gy*cols+gx;
+					for (int i=cellStart[c]; i<cellStart[c+1]; i++)
+					{
+						BotInfo bot = cellBots[i];
+						if (bot.getBotNumber() == exclude)
+							continue;
+						double d = distSq(x, y, bot);
+						if (found < k || d < bestDist[found-1])
+						{
+							int j = found < k ? found++ : found-1;
+							while (j > 0 && bestDist[j-1] > d)
+							{
+								best[j] = best[j-1];
+								bestDist[j] = bestDist[j-1];
+								j--;
+							}
+							best[j] = bot;
+							bestDist[j] = d;
+						}
+					}
+				}
+			boolean coversGrid = left <= 0 && top <= 0 && right >= cols-1 && bottom >= rows-1;
+			double reach = Math.min(Math.min(x-left*CELL_SIZE, (right+1)*CELL_SIZE-x), Math.min(y-top*CELL_SIZE, (bottom+1)*CELL_SIZE-y));
+			if (coversGrid || found == k && bestDist[k-1] <= reach*reach)
+				break;
+		}
+		if (found < k)
+		{
+			BotInfo[] fewer = new BotInfo[found];
+			System.arraycopy(best, 0, fewer, 0, found);
+			return fewer;
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the live Bots within a distance of a point.
+	 * @param x X location (a Bot's top left corner)
+	 * @param y Y location
+	 * @param radius The distance
+	 * @param exclude Number of a Bot to leave out (usually the Bot asking), or -1
+	 * @return The Bots, in no particular order
+	 */
+	public BotInfo[] withinRadius(double x, double y, double radius, int exclude)
+	{
+		int left = clamp((int)((x-radius)/CELL_SIZE), cols), right = clamp((int)((x+radius)/CELL_SIZE), cols);
+		int top = clamp((int)((y-radius)/CELL_SIZE), rows), bottom = clamp((int)((y+radius)/CELL_SIZE), rows);
+		BotInfo[] found = new BotInfo[cellBots.length];
+		int n = 0;
+		for (int gy=top; gy<=bottom; gy++)
+			for (int gx=left; gx<=right; gx++)
+			{
+				int c = gy*cols+gx;
+				for (int i=cellStart[c]; i<cellStart[c+1]; i++)
+					if (cellBots[i].getBotNumber() != exclude && distSq(x, y, cellBots[i]) <= radius*radius)
+						found[n++] = cellBots[i];
+			}
+		BotInfo[] result = new BotInfo[n];
+		System.arraycopy(found, 0, result, 0, n);
+		return result;
+	}
+
+	/**
+	 * @param me The Bot asking
+	 * @param range How far away to look, in pixels
+	 * @return The bullets that will hit the Bot if it stays where it is
+	 */
+	public Bullet[] incomingBullets(BotInfo me, double range)
+	{
+		return incomingBullets(me.getX(), me.getY(), Bot.RADIUS*2, Bot.RADIUS*2, range);
+	}
+
+	/**
+	 * Finds the bullets heading for a box along its row or column.
+	 * @param left Left edge of the box
+	 * @param top Top edge of the box
+	 * @param width Width of the box
+	 * @param height Height of the box
+	 * @param range How far from the box to look, in pixels
+	 * @return The bullets, in no particular order
+	 */
+	public Bullet[] incomingBullets(double left, double top, double width, double height, double range)
+	{
+		double right = left+width, bottom = top+height;
+		Bullet[] found = new Bullet[rowBullets.length+colBullets.length];
+		int n = 0;
+		for (int r=clamp((int)(top/CELL_SIZE), rows); r<=clamp((int)(bottom/CELL_SIZE), rows); r++)
+			for (int i=rowStart[r]; i<rowStart[r+1]; i++)
+			{
+				Bullet b = rowBullets[i];
+				if (b.getY() >= top && b.getY() <= bottom &&
+						(b.getXSpeed() > 0 && b.getX() <= right && left-b.getX() <= range ||
+						 b.getXSpeed() < 0 && b.getX() >= left && b.getX()-right <= range))
+					found[n++] = b;
+			}
+		for (int c=clamp((int)(left/CELL_SIZE), cols); c<=clamp((int)(right/CELL_SIZE), cols); c++)
+			for (int i=colStart[c]; i<colStart[c+1]; i++)
+			{
+				Bullet b = colBullets[i];
+				if (b.getX() >= left && b.getX() <= right &&
+						(b.getYSpeed() > 0 && b.getY() <= bottom && top-b.getY() <= range ||
+						 b.getYSpeed() < 0 && b.getY() >= top && b.getY()-bottom <= range))
+					found[n++] = b;
+			}
+		Bullet[] result = new Bullet[n];
+		System.arraycopy(found, 0, result, 0, n);
+		return result;
+	}
+
+	/**
+	 * @return The grid cell holding a point
+	 */
+	private int cell(double x, double y)
+	{
+		return band(y, rows)*cols+band(x, cols);
+	}
+
+	/**
+	 * @return The row or column band holding a coordinate
+	 */
+	private static int band(double v, int bands)
+	{
+		return clamp((int)(v/CELL_SIZE), bands);
+	}
+
+	/**
+	 * @return i, kept inside 0 to bands-1
+	 */
+	private static int clamp(int i, int bands)
+	{
+		return i < 0 ? 0 : i >= bands ? bands-1 : i;
+	}
+
+	/**
+	 * @return Squared distance from a point to a Bot
+	 */
+	private static double distSq(double x, double y, BotInfo bot)
+	{
+		double dx = bot.getX()-x, dy = bot.getY()-y;
+		return dx*dx+dy*dy;
+	}
+}
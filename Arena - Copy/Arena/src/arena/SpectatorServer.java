@@ -0,0 +1,396 @@
+package arena;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+
+/**
+ * Streams the match to any number of viewers on other screens or in other
+ * programs. Viewers connect to a loopback socket and receive a frame at the end of
+ * every tick with what the arena draws: the Bots, their bullets, scores, the clock
+ * and the messages. When a round ends there is one more frame with the same tick
+ * number, holding the final scores and the referee's end of round messages. Turn
+ * it on with <i>-Darena.spectatorPort=&lt;port&gt;</i>.<br><br>
+ *
+ * Each tick is encoded at most twice, whatever the number of viewers: once as a
+ * DELTA (the changes since the last tick, from a DeltaFeed) for the viewers that
+ * saw the last tick, and once as a KEY frame (everything) for viewers that just
+ * joined or missed a tick. Every viewer is handed a duplicate of the same direct
+ * buffer. Writes never block: a viewer whose socket is still full from an earlier
+ * frame skips ticks, and gets a KEY frame when it catches up, so a slow viewer
+ * can't slow the match down.<br><br>
+ *
+ * Frames use the same framing as RemoteHub (4-byte length, 1-byte type,
+ * big-endian numbers, strings as a 2-byte length and UTF-8):
+ * <pre>
+ * KEY    int tick, int round, double time, int numBots,
+ *        numBots * (name, team, double x, double y, byte status, double score),
+ *        int numBullets, numBullets * (int owner, short slot, double x, double y, double xSpeed, double ySpeed),
+ *        short numMessages, numMessages * (int sender, line)
+ * DELTA  int tick, int round, double time, int numEvents,
+ *        numEvents * (byte type, int bot, short slot, double x, double y, double dx, double dy, [team]),
+ *        short numMessages, numMessages * (int sender, line)
+ * </pre>
+ * Delta event types are the ones in DeltaFeed, plus SCORE (x is the new score).
+ * The team is only there for TEAM_CHANGED events. Bullets in flight move by their
+ * speed every tick, as in DeltaFeed. Status is as in WorldState.
+ */
+public class SpectatorServer {
+
+	/**
+	 * Name of the system property holding the port viewers connect to
+	 */
+	public static final String PORT_PROPERTY = "arena.spectatorPort";
+	/**
+	 * Frame types
+	 */
+	static final byte KEY = 1, DELTA = 2;
+	/**
+	 * Delta event for a change of score
+	 */
+	public static final int SCORE = 7;
+	/**
+	 * Socket send buffer for each viewer. Kept small so a slow viewer starts
+	 * skipping ticks after a few frames instead of falling seconds behind.
+	 */
+	private static final int SEND_BUFFER = 64*1024;
+
+	/**
+	 * The listening socket
+	 */
+	private final ServerSocketChannel server;
+	/**
+	 * Connected viewers
+	 */
+	private final ArrayList<Viewer> viewers = new ArrayList<Viewer>();
+	/**
+	 * Changes since the last tick
+	 */
+	private DeltaFeed feed;
+	private double[] lastScore = new double[0];
+	/**
+	 * The encoded frames, shared by all the viewers
+	 */
+	private ByteBuffer key = ByteBuffer.allocateDirect(64*1024), delta = ByteBuffer.allocateDirect(16*1024);
+	/**
+	 * Number of messages in the log that have been streamed
+	 */
+	private long messagesSent;
+
+	/**
+	 * Starts listening for viewers on the loopback interface
+	 * @param port The port (0 for any free port)
+	 * @throws IOException If the port can't be opened
+	 */
+	public SpectatorServer(int port) throws IOException
+	{
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+	}
+
+	/**
+	 * @return The port the server is listening on
+	 */
+	public int getPort()
+	{
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * @return Number of connected viewers
+	 */
+	public int getViewerCount()
+	{
+		return viewers.size();
+	}
+
+	/**
+	 * Disconnects the viewers and stops listening
+	 */
+	public void close()
+	{
+		for (Viewer v : viewers)
+			v.close();
+		viewers.clear();
+		try {
+			server.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+
+	/**
+	 * Called by the arena at the start of each round. Every viewer gets a KEY frame next.
+	 * @param numBots Number of Bots
+	 * @param numBullets Bullet slots per Bot
+	 */
+	void newRound(int numBots, int numBullets)
+	{
+		feed = new DeltaFeed(numBots, numBullets);
+		lastScore = new double[numBots];
+		messagesSent = 0;
+		for (Viewer v : viewers)
+			v.synced = false;
+	}
+
+	/**
+	 * Called by the arena at the end of every tick, and once more at the end of
+	 * the round. Sends the tick to every viewer that is ready for it.
+	 * @param tick Tick number within the round
+	 * @param round Round number
+	 * @param time Time played in the round
+	 * @param botsInfo All the Bots
+	 * @param bullets All the bullet slots
+	 * @param messages The message log
+	 */
+	void publish(int tick, int round, double time, BotInfo[] botsInfo, Bullet[][] bullets, MessageLog messages)
+	{
+		acceptViewers();
+		if (feed == null)
+			return;
+		feed.update(botsInfo, bullets);
+		int newMessages = (int)Math.min(messages.count()-messagesSent, messages.size());
+		messagesSent = messages.count();
+		boolean needKey = false, needDelta = false;
+		for (Viewer v : viewers)
+		{
+			v.ready = v.finish();
+			if (!v.ready)
+				v.synced = false; // it misses this tick
+			else if (v.synced)
+				needDelta = true;
+			else
+				needKey = true;
+		}
+		if (needDelta)
+			delta = encode(delta, false, tick, round, time, botsInfo, bullets, messages, newMessages);
+		if (needKey)
+			key = encode(key, true, tick, round, time, botsInfo, bullets, messages, newMessages);
+		for (int i=0; i<numScores(botsInfo); i++)
+			lastScore[i] = botsInfo[i].getScore();
+		for (int i=viewers.size()-1; i>=0; i--)
+		{
+			Viewer v = viewers.get(i);
+			if (v.ready)
+			{
+				v.start(v.synced ? delta : key);
+				v.synced = true;
+			}
+			if (v.closed)
+				viewers.remove(i);
+		}
+	}
+
+	/**
+	 * Accepts any viewers waiting to connect
+	 */
+	private void acceptViewers()
+	{
+		try {
+			SocketChannel channel;
+			while ((channel = server.accept()) != null)
+			{
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER);
+				viewers.add(new Viewer(channel));
+			}
+		} catch (IOException e) {
+			System.err.println("SpectatorServer: accept failed ("+e+")");
+		}
+	}
+
+	/**
+	 * @param botsInfo All the Bots
+	 * @return Number of Bots whose scores are tracked
+	 */
+	private int numScores(BotInfo[] botsInfo)
+	{
+		return Math.min(lastScore.length, botsInfo.length);
+	}
+
+	/**
+	 * Encodes a frame, into a new buffer if a viewer is still reading the old one
+	 * or it is too small
+	 * @param buffer The last buffer of this kind
+	 * @param keyFrame true for a KEY frame, false for a DELTA
+	 * @return The encoded frame, ready to read
+	 */
+	private ByteBuffer encode(ByteBuffer buffer, boolean keyFrame, int tick, int round, double time, BotInfo[] botsInfo, Bullet[][] bullets, MessageLog messages, int newMessages)
+	{
+		for (Viewer v : viewers)
+			if (v.isReading(buffer))
+			{
+				buffer = ByteBuffer.allocateDirect(buffer.capacity());
+				break;
+			}
+		while (true)
+		{
+			try {
+				buffer.clear();
+				buffer.putInt(0).put(keyFrame ? KEY : DELTA).putInt(tick).putInt(round).putDouble(time);
+				if (keyFrame)
+					encodeKey(buffer, botsInfo, bullets);
+				else
+					encodeDelta(buffer, botsInfo);
+				buffer.putShort((short)newMessages);
+				for (int n=newMessages-1; n>=0; n--)
+				{
+					buffer.putInt(messages.sender(n));
+					RemoteHub.putUTF(buffer, RemoteHub.utf(messages.line(n)));
+				}
+				buffer.putInt(0, buffer.position()-4);
+				buffer.flip();
+				return buffer;
+			} catch (BufferOverflowException e) {
+				buffer = ByteBuffer.allocateDirect(buffer.capacity()*2);
+			}
+		}
+	}
+
+	/**
+	 * Writes everything about the Bots and bullets
+	 */
+	private void encodeKey(ByteBuffer buffer, BotInfo[] botsInfo, Bullet[][] bullets)
+	{
+		buffer.putInt(botsInfo.length);
+		int numBullets = 0;
+		for (int i=0; i<botsInfo.length; i++)
+		{
+			BotInfo info = botsInfo[i];
+			RemoteHub.putUTF(buffer, RemoteHub.utf(info.getName()));
+			RemoteHub.putUTF(buffer, RemoteHub.utf(info.getTeamName()));
+			buffer.putDouble(info.getX()).putDouble(info.getY());
+			buffer.put(info.isOut() ? WorldState.OUT : info.isDead() ? WorldState.DEAD : info.isOverheated() ? WorldState.OVERHEATED : WorldState.ALIVE);
+			buffer.putDouble(info.getScore());
+			for (int k=0; k<bullets[i].length; k++)
+				if (bullets[i][k] != null)
+					numBullets++;
+		}
+		buffer.putInt(numBullets);
+		for (int i=0; i<botsInfo.length; i++)
+			for (int k=0; k<bullets[i].length; k++)
+			{
+				Bullet b = bullets[i][k];
+				if (b != null)
+					buffer.putInt(i).putShort((short)k).putDouble(b.getX()).putDouble(b.getY()).putDouble(b.getXSpeed()).putDouble(b.getYSpeed());
+			}
+	}
+
+	/**
+	 * Writes the changes since the last tick
+	 */
+	private void encodeDelta(ByteBuffer buffer, BotInfo[] botsInfo)
+	{
+		int countAt = buffer.position();
+		buffer.putInt(0);
+		int events = feed.size();
+		for (int e=0; e<feed.size(); e++)
+		{
+			buffer.put((byte)feed.type(e)).putInt(feed.bot(e)).putShort((short)feed.slot(e));
+			buffer.putDouble(feed.x(e)).putDouble(feed.y(e)).putDouble(feed.dx(e)).putDouble(feed.dy(e));
+			if (feed.type(e) == DeltaFeed.TEAM_CHANGED)
+				RemoteHub.putUTF(buffer, RemoteHub.utf(feed.team(e)));
+		}
+		for (int i=0; i<numScores(botsInfo); i++)
+			if (botsInfo[i].getScore() != lastScore[i])
+			{
+				buffer.put((byte)SCORE).putInt(i).putShort((short)-1);
+				buffer.putDouble(botsInfo[i].getScore()).putDouble(0).putDouble(0).putDouble(0);
+				events++;
+			}
+		buffer.putInt(countAt, events);
+	}
+
+	/**
+	 * A connected viewer
+	 */
+	private static class Viewer {
+
+		/**
+		 * The viewer's socket
+		 */
+		final SocketChannel channel;
+		/**
+		 * The shared frame being written, and this viewer's view of the rest of it
+		 */
+		ByteBuffer source, inFlight;
+		/**
+		 * True if the viewer has seen every tick since its last KEY frame
+		 */
+		boolean synced;
+		/**
+		 * True if the viewer gets this tick
+		 */
+		boolean ready;
+		boolean closed;
+
+		Viewer(SocketChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		/**
+		 * Writes more of the frame in flight
+		 * @return true if it has all been written
+		 */
+		boolean finish()
+		{
+			if (inFlight != null && inFlight.hasRemaining())
+				write();
+			return !closed && (inFlight == null || !inFlight.hasRemaining());
+		}
+
+		/**
+		 * Starts writing a frame
+		 * @param frame The shared frame (not changed here)
+		 */
+		void start(ByteBuffer frame)
+		{
+			source = frame;
+			inFlight = frame.duplicate();
+			write();
+		}
+
+		/**
+		 * @param buffer An encoded frame
+		 * @return true if part of it is still to be written to this viewer
+		 */
+		boolean isReading(ByteBuffer buffer)
+		{
+			return source == buffer && inFlight.hasRemaining();
+		}
+
+		/**
+		 * Writes without blocking
+		 */
+		private void write()
+		{
+			try {
+				channel.write(inFlight);
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Hangs up
+		 */
+		void close()
+		{
+			closed = true;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package arena;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.util.ArrayList;
+
+import bots.Bot;
+
+/**
+ * Checks who gets a message on each channel. A Talker sends one message to
+ * everyone, one to its team, one straight to the Bot called Target and one to a
+ * Bot number that doesn't exist. Everyone must hear the first, only the Talker's
+ * team-mate the second, only Target the third and nobody the last.
+ */
+public class TestChannels {
+
+	/**
+	 * A Bot that sits still and keeps every message another Bot sends it.
+	 */
+	static class Listener extends Bot {
+
+		String name, team;
+		ArrayList<String> heard = new ArrayList<String>();
+
+		Listener(String name, String team)
+		{
+			this.name = name;
+			this.team = team;
+		}
+
+		public void newRound() {}
+
+		public int getMove(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets)
+		{
+			return BattleBotArena.STAY;
+		}
+
+		public void draw(Graphics g, int x, int y) {}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public String getTeamName()
+		{
+			return team;
+		}
+
+		public String outgoingMessage()
+		{
+			return null;
+		}
+
+		public void incomingMessage(int botNum, String msg)
+		{
+			if (botNum >= 0) // skip the referee
+				heard.add(msg);
+		}
+
+		public String[] imageNames()
+		{
+			return null;
+		}
+
+		public void loadedImages(Image[] images) {}
+	}
+
+	/**
+	 * A Listener that sends one message a frame, each on the next channel in its
+	 * script, then goes quiet. Direct messages use the Bot number of the Bot
+	 * called Target.
+	 */
+	static class Talker extends Listener {
+
+		static final String[] MESSAGES = {"to all", "to team", "to Target", "to nobody"};
+		int sent, target = -1;
+
+		Talker(String team)
+		{
+			super("Talker", team);
+		}
+
+		public int getMove(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets)
+		{
+			for (BotInfo b : liveBots)
+				if (b.getName().equals("Target"))
+					target = b.getBotNumber();
+			return sent < MESSAGES.length ? BattleBotArena.SEND_MESSAGE : BattleBotArena.STAY;
+		}
+
+		public String outgoingMessage()
+		{
+			return MESSAGES[sent];
+		}
+
+		public int messageChannel()
+		{
+			switch (sent++)
+			{
+				case 0: return BattleBotArena.CHANNEL_ALL;
+				case 1: return BattleBotArena.CHANNEL_TEAM;
+				case 2: return target;
+				default: return 99; // no such Bot
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		Talker talker = new Talker("Red");
+		Listener mate = new Listener("Mate", "Red");
+		Listener target = new Listener("Target", "Blue");
+		Listener other = new Listener("Other", "Blue");
+		BattleBotArena arena = new BattleBotArena(new Bot[] {talker, mate, target, other});
+		arena.startMatch();
+		for (int frame=0; frame<Talker.MESSAGES.length+2; frame++)
+			arena.playFrame();
+
+		int failures = 0;
+		failures += check(mate, "to all", "to team");
+		failures += check(target, "to all", "to Target");
+		failures += check(other, "to all");
+		for (int i=0; i<4; i++)
+			if (arena.getBotInfo(i).getName().equals("Talker") && arena.getBotInfo(i).getNumMessages() != 3)
+			{
+				System.out.println("Talker was charged for "+arena.getBotInfo(i).getNumMessages()+" messages, expected 3");
+				failures++;
+			}
+
+		if (failures == 0)
+			System.out.println("Channels test passed.");
+		else
+			System.out.println("Channels test failed: "+failures+" problems.");
+	}
+
+	private static int check(Listener l, String... expected)
+	{
+		ArrayList<String> want = new ArrayList<String>();
+		for (String s : expected)
+			want.add(s);
+		if (l.heard.equals(want))
+			return 0;
+		System.out.println(l.name+" heard "+l.heard+", expected "+want);
+		return 1;
+	}
+}
@@ -0,0 +1,101 @@
+package arena;
+
+import bots.Bot;
+import bots.Drone;
+import bots.SentryBot;
+
+/**
+ * Checks DeltaFeed against WorldView over a whole match. Each Follower keeps its
+ * own picture of the arena built only from the feed's events, and on every frame
+ * compares it with the WorldView it is handed: Bot positions, deaths, and the
+ * number of bullets in the air.
+ */
+public class TestDeltaFeed {
+
+	/**
+	 * A Bot that follows the feed and moves at random
+	 */
+	static class Follower extends Drone {
+		static int mismatches = 0;
+		double[] x, y;
+		boolean[] dead;
+		int[][] bulletsInSlot;
+
+		public boolean usesDeltaFeed()
+		{
+			return true;
+		}
+
+		public boolean usesWorldView()
+		{
+			return true;
+		}
+
+		public int getMove(WorldView view)
+		{
+			int numBots = view.botCount();
+			if (deltas.frame() == 0)
+			{
+				x = new double[numBots];
+				y = new double[numBots];
+				dead = new boolean[numBots];
+				bulletsInSlot = new int[numBots][BattleBotArena.NUM_BULLETS];
+			}
+			// apply the events
+			for (int e=0; e<deltas.size(); e++)
+			{
+				int type = deltas.type(e), i = deltas.bot(e);
+				if (type == DeltaFeed.MOVED && Math.abs(x[i]+deltas.dx(e)-deltas.x(e)) > 1e-9)
+					mismatches++;
+				if (type == DeltaFeed.APPEARED || type == DeltaFeed.MOVED)
+				{
+					x[i] = deltas.x(e);
+					y[i] = deltas.y(e);
+				}
+				else if (type == DeltaFeed.DIED)
+					dead[i] = true;
+				else if (type == DeltaFeed.BULLET_FIRED)
+					bulletsInSlot[i][deltas.slot(e)]++;
+				else if (type == DeltaFeed.BULLET_GONE)
+					bulletsInSlot[i][deltas.slot(e)]--;
+			}
+			// compare with the view
+			int bullets = 0;
+			for (int i=0; i<numBots; i++)
+			{
+				if (!view.isOut(i) && (x[i] != view.botX(i) || y[i] != view.botY(i)))
+					mismatches++;
+				if (dead[i] != view.isDead(i))
+					mismatches++;
+				for (int k=0; k<bulletsInSlot[i].length; k++)
+				{
+					if (bulletsInSlot[i][k] < 0 || bulletsInSlot[i][k] > 1)
+						mismatches++;
+					bullets += bulletsInSlot[i][k];
+				}
+			}
+			if (bullets != view.bulletCount())
+				mismatches++;
+			return BattleBotArena.UP+(int)(Math.random()*8);
+		}
+	}
+
+	public static void main(String[] args) {
+		int numBots = 64;
+		Bot[] roster = new Bot[numBots];
+		for (int i=0; i<numBots; i++)
+			roster[i] = i%2 == 0 ? new Follower() : new SentryBot();
+		BattleBotArena arena = new BattleBotArena(roster, 2, 700, 500, BattleBotArena.NUM_BULLETS);
+		arena.startMatch();
+		int frames = 0;
+		while (frames < 3000 && !arena.isMatchOver())
+		{
+			arena.step();
+			frames++;
+		}
+		if (Follower.mismatches == 0)
+			System.out.println("Delta feed test passed ("+frames+" frames).");
+		else
+			System.out.println("Delta feed test failed: "+Follower.mismatches+" differences from the WorldView.");
+	}
+}
@@ -0,0 +1,57 @@
+package arena;
+
+import bots.Bot;
+import bots.Drone;
+
+/**
+ * Checks where headless arenas start their Bots. For each roster size and arena
+ * size, every Bot must start inside the playing area and no two Bots may start
+ * touching. A roster too big for its arena must be turned away by the
+ * constructor.
+ */
+public class TestPlacement {
+
+	public static void main(String[] args) {
+		int[][] sizes = {{BattleBotArena.RIGHT_EDGE, BattleBotArena.BOTTOM_EDGE}, {1400, 1000}, {300, 900}};
+		int[] botCounts = {1, 2, 16, 64, 256, 782, 1024, 4096};
+		int overlaps = 0, outside = 0, wrongFit = 0;
+		for (int[] size : sizes)
+			for (int numBots : botCounts)
+			{
+				Bot[] roster = new Bot[numBots];
+				for (int i=0; i<numBots; i++)
+					roster[i] = new Drone();
+				BattleBotArena arena;
+				try {
+					arena = new BattleBotArena(roster, 1, size[0], size[1], 1);
+				} catch (IllegalArgumentException e) {
+					// only a roster with more Bots than grid cells may be turned away
+					int cells = (int)((size[0]-BattleBotArena.LEFT_EDGE-Bot.RADIUS*2)/(Bot.RADIUS*2))
+						* (int)((size[1]-BattleBotArena.TOP_EDGE-Bot.RADIUS*2)/(Bot.RADIUS*2));
+					if (numBots <= cells)
+						wrongFit++;
+					continue;
+				}
+				arena.startMatch();
+				for (int i=0; i<numBots; i++)
+				{
+					BotInfo a = arena.getBotInfo(i);
+					if (a.getX() < BattleBotArena.LEFT_EDGE || a.getX() > size[0]-Bot.RADIUS*2
+							|| a.getY() < BattleBotArena.TOP_EDGE || a.getY() > size[1]-Bot.RADIUS*2)
+						outside++;
+				}
+				for (int i=0; i<numBots; i++)
+					if (arena.collision(i) >= 0)
+						overlaps++;
+			}
+
+		if (overlaps == 0 && outside == 0)
+			System.out.println("Placement test passed.");
+		else
+			System.out.println("Placement test failed: "+overlaps+" Bots touching another, "+outside+" outside the arena.");
+		if (wrongFit == 0)
+			System.out.println("Fit test passed.");
+		else
+			System.out.println("Fit test failed: "+wrongFit+" rosters that fit were turned away.");
+	}
+}
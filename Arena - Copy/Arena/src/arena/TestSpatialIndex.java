@@ -0,0 +1,105 @@
+package arena;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import bots.Bot;
+
+/**
+ * Checks SpatialIndex against brute-force scans of the same world. A random
+ * world of 500 Bots (every seventh one dead) and their bullets is indexed, then
+ * 2000 random queries of each kind are answered both ways and compared.
+ */
+public class TestSpatialIndex {
+
+	public static void main(String[] args) {
+		Random r = new Random(5);
+		int numBots = 500;
+		BotInfo[] bots = new BotInfo[numBots];
+		for (int i=0; i<numBots; i++)
+		{
+			bots[i] = new BotInfo(r.nextDouble()*680, 10+r.nextDouble()*470, i, "Bot"+i);
+			if (i%7 == 0)
+				bots[i].killed("Test");
+		}
+		Bullet[][] bullets = new Bullet[numBots][4];
+		for (int i=0; i<numBots; i++)
+			for (int k=0; k<4; k++)
+				if (r.nextBoolean())
+				{
+					double speed = r.nextBoolean() ? BattleBotArena.BULLET_SPEED : -BattleBotArena.BULLET_SPEED;
+					boolean across = r.nextBoolean();
+					bullets[i][k] = new Bullet(r.nextDouble()*700, 10+r.nextDouble()*490, across ? speed : 0, across ? 0 : speed);
+				}
+		SpatialIndex space = new SpatialIndex(bots, bullets, 700, 500);
+
+		int nearestFailed = 0, radiusFailed = 0, bulletsFailed = 0;
+		for (int q=0; q<2000; q++)
+		{
+			double x = r.nextDouble()*680, y = 10+r.nextDouble()*470;
+
+			// the k nearest must be as close as the k closest live Bots
+			int k = 1+r.nextInt(8);
+			BotInfo[] nearest = space.nearest(x, y, k, -1);
+			double[] distances = new double[numBots];
+			int live = 0;
+			for (BotInfo bot : bots)
+				if (!bot.isDead())
+					distances[live++] = Math.hypot(bot.getX()-x, bot.getY()-y);
+			Arrays.sort(distances, 0, live);
+			for (int j=0; j<k; j++)
+				if (Math.abs(Math.hypot(nearest[j].getX()-x, nearest[j].getY()-y)-distances[j]) > 1e-9)
+					nearestFailed++;
+
+			// every live Bot within the radius, and no others
+			double radius = r.nextDouble()*120;
+			int within = 0;
+			for (BotInfo bot : bots)
+				if (!bot.isDead() && Math.hypot(bot.getX()-x, bot.getY()-y) <= radius)
+					within++;
+			if (space.withinRadius(x, y, radius, -1).length != within)
+				radiusFailed++;
+
+			// every bullet heading for a Bot-sized box at (x, y)
+			double range = r.nextDouble()*200, size = Bot.RADIUS*2;
+			int incoming = 0;
+			for (Bullet[] slots : bullets)
+				for (Bullet b : slots)
+					if (b != null && heading(b, x, y, size, range))
+						incoming++;
+			if (space.incomingBullets(x, y, size, size, range).length != incoming)
+				bulletsFailed++;
+		}
+
+		report("Nearest", nearestFailed);
+		report("Within radius", radiusFailed);
+		report("Incoming bullets", bulletsFailed);
+	}
+
+	/**
+	 * @return true if the bullet is in the box's row or column, moving towards it, and within range
+	 */
+	private static boolean heading(Bullet b, double left, double top, double size, double range)
+	{
+		double right = left+size, bottom = top+size;
+		if (b.getYSpeed() == 0)
+			return b.getY() >= top && b.getY() <= bottom
+				&& (b.getXSpeed() > 0 && b.getX() <= right && left-b.getX() <= range
+				 || b.getXSpeed() < 0 && b.getX() >= left && b.getX()-right <= range);
+		return b.getX() >= left && b.getX() <= right
+			&& (b.getYSpeed() > 0 && b.getY() <= bottom && top-b.getY() <= range
+			 || b.getYSpeed() < 0 && b.getY() >= top && b.getY()-bottom <= range);
+	}
+
+	/**
+	 * @param test Name of the test
+	 * @param failed Number of queries that disagreed with the brute-force scan
+	 */
+	private static void report(String test, int failed)
+	{
+		if (failed == 0)
+			System.out.println(test+" test passed.");
+		else
+			System.out.println(test+" test failed on "+failed+" of 2000 queries.");
+	}
+}
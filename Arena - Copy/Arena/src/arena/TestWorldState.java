@@ -0,0 +1,84 @@
+package arena;
+
+import bots.Bot;
+import bots.Drone;
+import bots.ScrapBot;
+
+/**
+ * Checks WorldState against the arena. A Bot that asks for the snapshot keeps
+ * the one it is handed each frame. After the frame, the snapshot is forked and
+ * stepped with the moves the Bots actually made, and the fork must end up where
+ * the arena put every Bot. The snapshot itself must not change when its fork is
+ * stepped (forks share arrays until one of them writes).
+ */
+public class TestWorldState {
+
+	/**
+	 * A Drone that keeps the snapshot it was handed
+	 */
+	static class Watcher extends Drone {
+		WorldState last;
+
+		public boolean usesWorldState()
+		{
+			return true;
+		}
+
+		public int getMove(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets)
+		{
+			last = world;
+			return super.getMove(me, shotOK, liveBots, deadBots, bullets);
+		}
+	}
+
+	public static void main(String[] args) {
+		int numBots = 24;
+		Bot[] roster = new Bot[numBots];
+		Watcher watcher = new Watcher();
+		roster[0] = watcher;
+		for (int i=1; i<numBots; i++)
+			roster[i] = i%2 == 0 ? new ScrapBot() : new Drone();
+		BattleBotArena arena = new BattleBotArena(roster, 3, 700, 500, 4);
+		arena.startMatch();
+
+		int frames = 0, stepMismatches = 0, forkLeaks = 0;
+		while (!arena.isMatchOver() && frames < 2000)
+		{
+			arena.step();
+			frames++;
+			if (watcher.last == null || arena.isMatchOver())
+				continue;
+			WorldState before = watcher.last;
+			int[] moves = new int[numBots];
+			double[] x = new double[numBots], y = new double[numBots];
+			for (int i=0; i<numBots; i++)
+			{
+				moves[i] = arena.getBotInfo(i).getLastMove();
+				x[i] = before.getX(i);
+				y[i] = before.getY(i);
+			}
+			WorldState after = before.fork().step(moves);
+			for (int i=0; i<numBots; i++)
+			{
+				BotInfo info = arena.getBotInfo(i);
+				if (info.isOverheated())
+					continue; // overheated Bots don't move, whatever their last move was
+				if (Math.abs(info.getX()-after.getX(i)) > 1e-9 || Math.abs(info.getY()-after.getY(i)) > 1e-9
+						|| info.isDead() != (after.getStatus(i) == WorldState.DEAD))
+					stepMismatches++;
+				if (before.getX(i) != x[i] || before.getY(i) != y[i])
+					forkLeaks++;
+			}
+			watcher.last = null;
+		}
+
+		if (stepMismatches == 0)
+			System.out.println("Step test passed ("+frames+" frames).");
+		else
+			System.out.println("Step test failed: "+stepMismatches+" Bots out of place.");
+		if (forkLeaks == 0)
+			System.out.println("Fork test passed.");
+		else
+			System.out.println("Fork test failed: stepping a fork changed the snapshot "+forkLeaks+" times.");
+	}
+}
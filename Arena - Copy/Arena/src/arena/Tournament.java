@@ -0,0 +1,571 @@
+package arena;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import bots.Bot;
+
+/**
+ * Ranks a roster of Bot classes with one of three formats, as an alternative to
+ * the arena's own "knock out the lowest scorers each round" match:
+ * <ul><li><b>Round robin</b> -- every Bot meets every other Bot</li>
+ * <li><b>Swiss</b> -- a fixed number of rounds, each pairing Bots with the same
+ * number of points that haven't met yet</li>
+ * <li><b>Elimination</b> -- a knockout bracket in the order the Bots are listed</li></ul>
+ *
+ * Every pairing is a series of one-on-one games in headless arenas. One game is
+ * far too noisy to decide anything, but a fixed long series wastes most of its
+ * games on pairings that were obvious after a handful. So a series plays at least
+ * MIN_GAMES games, then stops as soon as the confidence interval on the mean score
+ * difference leaves out zero -- one Bot is better -- or fits inside +/-
+ * DRAW_MARGIN -- the Bots are as good as each other. A series that is still
+ * undecided after MAX_GAMES is a draw (in the bracket, the Bot ahead on points
+ * goes through).<br><br>
+ *
+ * The interval is checked after every game, and checking a plain 95% interval
+ * that often would call equally good Bots different in over a third of all
+ * series. So each check uses a Student t interval at the Bonferroni level
+ * ERROR_RATE/(MAX_GAMES-MIN_GAMES+1), and all the checks in a series together
+ * are wrong with probability at most ERROR_RATE. A series ends with the wrong
+ * result (a winner between equal Bots, the wrong winner, or a draw between Bots
+ * more than DRAW_MARGIN apart) at most 5% of the time, as long as the score
+ * differences are roughly normal. Score differences in one-on-one games are
+ * usually a big win or a big loss, which is why a series plays at least 8 games.
+ * Simulated series of equal Bots found a winner 1.3% of the time with normal
+ * scores, and 2.3% with two-humped ones. A Bot one standard deviation better
+ * than the other won its series within 16 games on average.<br><br>
+ *
+ * The pairings in each round are played in parallel. A new instance of each Bot
+ * is made for every game.<br><br>
+ *
+ * Usage: <i>java arena.Tournament roundrobin|swiss|elimination BotClass BotClass ...</i>
+ * (add <i>-Darena.ratings=file</i> to rate the Bots on every game as well)
+ */
+public class Tournament {
+
+	/**
+	 * Fewest games in a series
+	 */
+	public static final int MIN_GAMES = 8;
+	/**
+	 * Most games in a series
+	 */
+	public static final int MAX_GAMES = 40;
+	/**
+	 * Most a series can be wrong, over all the checks it makes (see the class docs)
+	 */
+	public static final double ERROR_RATE = 0.05;
+	/**
+	 * Mean score difference per game small enough to call a draw
+	 */
+	public static final double DRAW_MARGIN = 1.0;
+
+	/**
+	 * CRITICAL[n] is the width of the confidence interval after n games, in
+	 * standard errors
+	 */
+	private static final double[] CRITICAL = criticalValues();
+
+	/**
+	 * Makes the Bots
+	 */
+	private final BotLoader loader;
+	/**
+	 * Class names of the Bots, and how each is doing
+	 */
+	private final String[] entrants;
+	private final Standing[] standings;
+	/**
+	 * met[a][b] is true once a and b have played a series
+	 */
+	private final boolean[][] met;
+	/**
+	 * Seed for the arenas (each game gets its own, worked out from this)
+	 */
+	private final long seed;
+	/**
+	 * Games played so far
+	 */
+	private final AtomicInteger gamesPlayed = new AtomicInteger();
+	/**
+	 * Rates the Bots on every game, or null
+	 */
+	private volatile Ratings ratings;
+
+	/**
+	 * @param loader Makes the Bots
+	 * @param entrants Class names of the Bots (as in a roster file)
+	 * @param seed Seed for shuffling and placing the Bots in every game
+	 * @throws IllegalArgumentException If a Bot can't be made
+	 */
+	public Tournament(BotLoader loader, String[] entrants, long seed)
+	{
+		this.loader = loader;
+		this.entrants = entrants.clone();
+		this.seed = seed;
+		standings = new Standing[entrants.length];
+		met = new boolean[entrants.length][entrants.length];
+		for (int i=0; i<entrants.length; i++)
+		{
+			Bot bot = loader.createBot(entrants[i]);
+			if (bot == null)
+				throw new IllegalArgumentException("Can't make a Bot of class "+entrants[i]);
+			standings[i] = new Standing(entrants[i], bot.getName());
+		}
+	}
+
+	/**
+	 * Plays every Bot against every other Bot
+	 * @return The standings, best first
+	 */
+	public Standing[] roundRobin()
+	{
+		int n = entrants.length;
+		int[][] pairs = new int[n*(n-1)/2][];
+		int p = 0;
+		for (int a=0; a<n; a++)
+			for (int b=a+1; b<n; b++)
+				pairs[p++] = new int[] {a, b};
+		playRound(pairs);
+		return ranking();
+	}
+
+	/**
+	 * Plays a Swiss tournament. Each round, the Bots are ranked by points and each
+	 * is paired with the next Bot down that it hasn't met. With an odd number of
+	 * Bots, the lowest ranked Bot that hasn't had a bye gets one (worth a win).
+	 * @param rounds Number of rounds (about log2 of the number of Bots is enough to pick a winner)
+	 * @return The standings, best first
+	 */
+	public Standing[] swiss(int rounds)
+	{
+		int n = entrants.length;
+		boolean[] hadBye = new boolean[n];
+		for (int r=0; r<rounds; r++)
+		{
+			Integer[] order = rankedIndexes();
+			boolean[] paired = new boolean[n];
+			if (n%2 == 1)
+				for (int i=n-1; i>=0; i--)
+					if (!hadBye[order[i]])
+					{
+						hadBye[order[i]] = paired[order[i]] = true;
+						standings[order[i]].bye();
+						break;
+					}
+			int[][] pairs = new int[n/2][];
+			int p = 0;
+			for (int i=0; i<n; i++)
+			{
+				if (paired[order[i]])
+					continue;
+				int partner = -1;
+				for (int j=i+1; j<n && partner < 0; j++) // next one down it hasn't met...
+					if (!paired[order[j]] && !met[order[i]][order[j]])
+						partner = order[j];
+				for (int j=i+1; j<n && partner < 0; j++) // ...or just the next one down
+					if (!paired[order[j]])
+						partner = order[j];
+				if (partner < 0)
+					break;
+				paired[order[i]] = paired[partner] = true;
+				pairs[p++] = new int[] {order[i], partner};
+			}
+			playRound(Arrays.copyOf(pairs, p));
+		}
+		return ranking();
+	}
+
+	/**
+	 * Plays a knockout bracket. The Bots are paired in the order they were listed
+	 * (first against second, and so on), the winner of each series goes through,
+	 * and an odd Bot out gets a bye. Points are rounds won.
+	 * @return The standings, best first (the champion, then the Bots that went out latest)
+	 */
+	public Standing[] elimination()
+	{
+		int[] left = new int[entrants.length];
+		for (int i=0; i<left.length; i++)
+			left[i] = i;
+		while (left.length > 1)
+		{
+			int[][] pairs = new int[left.length/2][];
+			for (int p=0; p<pairs.length; p++)
+				pairs[p] = new int[] {left[2*p], left[2*p+1]};
+			int[] winners = playRound(pairs);
+			int[] next = new int[(left.length+1)/2];
+			for (int p=0; p<pairs.length; p++)
+			{
+				next[p] = winners[p] >= 0 ? winners[p] : pairs[p][0]; // higher seed goes through on a draw...
+				if (winners[p] < 0 && standings[pairs[p][1]].scoreDiff > standings[pairs[p][0]].scoreDiff)
+					next[p] = pairs[p][1]; // ...unless the lower seed is ahead on score
+				standings[next[p]].roundsWon++;
+			}
+			if (left.length%2 == 1)
+			{
+				next[next.length-1] = left[left.length-1];
+				standings[left[left.length-1]].roundsWon++;
+			}
+			left = next;
+		}
+		Standing[] ranked = standings.clone();
+		Arrays.sort(ranked, Comparator.comparingInt((Standing s) -> -s.roundsWon).thenComparingDouble(s -> -s.scoreDiff));
+		return ranked;
+	}
+
+	/**
+	 * Rates the Bots on every game played from now on (see Ratings)
+	 * @param ratings The ratings, or null to stop rating
+	 */
+	public void setRatings(Ratings ratings)
+	{
+		this.ratings = ratings;
+	}
+
+	/**
+	 * @return Games played so far
+	 */
+	public int getGamesPlayed()
+	{
+		return gamesPlayed.get();
+	}
+
+	/**
+	 * Plays a round of series, in parallel
+	 * @param pairs The pairings (indexes of the entrants)
+	 * @return The winner of each series, or -1 for a draw
+	 */
+	private int[] playRound(int[][] pairs)
+	{
+		int[] winners = new int[pairs.length];
+		IntStream.range(0, pairs.length).parallel().forEach(p -> winners[p] = series(pairs[p][0], pairs[p][1]));
+		for (int p=0; p<pairs.length; p++)
+		{
+			int a = pairs[p][0], b = pairs[p][1];
+			met[a][b] = met[b][a] = true;
+			if (winners[p] < 0)
+			{
+				standings[a].draws++;
+				standings[b].draws++;
+			}
+			else
+			{
+				standings[winners[p]].wins++;
+				standings[winners[p] == a ? b : a].losses++;
+			}
+		}
+		return winners;
+	}
+
+	/**
+	 * Plays games between two Bots until the result is decided (see the class docs)
+	 * @param a One Bot
+	 * @param b The other
+	 * @return The winner, or -1 for a draw
+	 */
+	private int series(int a, int b)
+	{
+		double sum = 0, sumSquares = 0;
+		int n = 0, winner = -1;
+		while (n < MAX_GAMES)
+		{
+			double diff = game(a, b, n);
+			n++;
+			sum += diff;
+			sumSquares += diff*diff;
+			if (n < MIN_GAMES)
+				continue;
+			double mean = sum/n;
+			double variance = Math.max(0, (sumSquares-n*mean*mean)/(n-1));
+			double halfWidth = CRITICAL[n]*Math.sqrt(variance/n);
+			if (Math.abs(mean) > halfWidth) // one is better
+			{
+				winner = mean > 0 ? a : b;
+				break;
+			}
+			if (Math.abs(mean)+halfWidth <= DRAW_MARGIN) // they're as good as each other
+				break;
+		}
+		synchronized (this)
+		{
+			standings[a].add(sum, n);
+			standings[b].add(-sum, n);
+		}
+		return winner;
+	}
+
+	/**
+	 * @return The Student t value for each number of games from MIN_GAMES to
+	 * MAX_GAMES, at the two-sided level ERROR_RATE/(number of checks)
+	 */
+	private static double[] criticalValues()
+	{
+		double level = ERROR_RATE/(MAX_GAMES-MIN_GAMES+1);
+		double[] critical = new double[MAX_GAMES+1];
+		for (int n=MIN_GAMES; n<=MAX_GAMES; n++)
+		{
+			// bisect for the t with that much probability outside +/- t
+			double low = 0, high = 1000;
+			for (int step=0; step<100; step++)
+			{
+				double t = (low+high)/2;
+				if (1-withinT(t, n-1) > level)
+					low = t;
+				else
+					high = t;
+			}
+			critical[n] = high;
+		}
+		return critical;
+	}
+
+	/**
+	 * Probability that a Student t variable is between -t and t (Abramowitz and
+	 * Stegun 26.7.3 and 26.7.4, exact for whole degrees of freedom)
+	 * @param t A positive value
+	 * @param df Degrees of freedom
+	 * @return P(|T| &lt;= t)
+	 */
+	private static double withinT(double t, int df)
+	{
+		double theta = Math.atan(t/Math.sqrt(df));
+		double sin = Math.sin(theta), cos = Math.cos(theta), cos2 = cos*cos;
+		if (df%2 == 0)
+		{
+			double term = 1, sum = 1;
+			for (int k=2; k<df; k+=2)
+			{
+				term *= cos2*(k-1)/k;
+				sum += term;
+			}
+			return sin*sum;
+		}
+		if (df == 1)
+			return 2*theta/Math.PI;
+		double term = cos, sum = cos;
+		for (int k=3; k<df; k+=2)
+		{
+			term *= cos2*(k-1)/k;
+			sum += term;
+		}
+		return 2/Math.PI*(theta+sin*sum);
+	}
+
+	/**
+	 * Plays one round of a headless arena with two Bots
+	 * @param a One Bot
+	 * @param b The other
+	 * @param game Game number in the series
+	 * @return a's score minus b's score
+	 */
+	private double game(int a, int b, int game)
+	{
+		Bot botA = loader.createBot(entrants[a]), botB = loader.createBot(entrants[b]);
+		Bot[] roster = {botA, botB};
+		BattleBotArena arena = new BattleBotArena(roster, seed+(a*31L+b)*MAX_GAMES+game,
+				BattleBotArena.RIGHT_EDGE, BattleBotArena.BOTTOM_EDGE, BattleBotArena.NUM_BULLETS);
+		arena.startMatch();
+		while (!arena.isMatchOver())
+			arena.step();
+		gamesPlayed.incrementAndGet();
+		Ratings r = ratings;
+		if (r != null)
+			r.record(arena);
+		// the arena shuffles the roster, so look the Bots up
+		double diff = 0;
+		for (int i=0; i<roster.length; i++)
+			diff += (roster[i] == botA ? 1 : -1)*arena.getBotInfo(i).getScore();
+		return diff;
+	}
+
+	/**
+	 * @return Indexes of the entrants, best first
+	 */
+	private Integer[] rankedIndexes()
+	{
+		Integer[] order = new Integer[entrants.length];
+		for (int i=0; i<order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingDouble((Integer i) -> -standings[i].getPoints()).thenComparingDouble(i -> -standings[i].scoreDiff));
+		return order;
+	}
+
+	/**
+	 * @return The standings, best first
+	 */
+	private Standing[] ranking()
+	{
+		Integer[] order = rankedIndexes();
+		Standing[] ranked = new Standing[order.length];
+		for (int i=0; i<order.length; i++)
+			ranked[i] = standings[order[i]];
+		return ranked;
+	}
+
+	/**
+	 * How one Bot is doing in the tournament
+	 */
+	public static class Standing {
+
+		private final String className, name;
+		private int wins, draws, losses, byes, roundsWon, games;
+		private double scoreDiff;
+
+		/**
+		 * @param className The Bot's class
+		 * @param name The Bot's name
+		 */
+		private Standing(String className, String name)
+		{
+			this.className = className;
+			this.name = name;
+		}
+
+		/**
+		 * Adds the result of a series
+		 * @param diff Total score difference over the series
+		 * @param n Games played
+		 */
+		private void add(double diff, int n)
+		{
+			scoreDiff += diff;
+			games += n;
+		}
+
+		/**
+		 * Records a bye
+		 */
+		private void bye()
+		{
+			byes++;
+		}
+
+		/**
+		 * @return The Bot's class name
+		 */
+		public String getClassName()
+		{
+			return className;
+		}
+
+		/**
+		 * @return The Bot's name
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return 1 point per series won or bye, 1/2 per draw
+		 */
+		public double getPoints()
+		{
+			return wins+byes+draws/2.0;
+		}
+
+		/**
+		 * @return Series won
+		 */
+		public int getWins()
+		{
+			return wins;
+		}
+
+		/**
+		 * @return Series drawn
+		 */
+		public int getDraws()
+		{
+			return draws;
+		}
+
+		/**
+		 * @return Series lost
+		 */
+		public int getLosses()
+		{
+			return losses;
+		}
+
+		/**
+		 * @return Rounds won in an elimination bracket
+		 */
+		public int getRoundsWon()
+		{
+			return roundsWon;
+		}
+
+		/**
+		 * @return Games played in all series
+		 */
+		public int getGames()
+		{
+			return games;
+		}
+
+		/**
+		 * @return Total score difference over every game played
+		 */
+		public double getScoreDiff()
+		{
+			return scoreDiff;
+		}
+	}
+
+	/**
+	 * Runs a tournament and prints the standings
+	 * @param args Format (roundrobin, swiss or elimination), then the Bot class names
+	 * @throws IOException If the ratings file (-Darena.ratings) can't be read or written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: java arena.Tournament roundrobin|swiss|elimination BotClass BotClass ...");
+			return;
+		}
+		BotLoader loader = new BotLoader(new File(System.getProperty(BotLoader.BOTS_DIR_PROPERTY, BotLoader.DEFAULT_BOTS_DIR)));
+		Tournament tournament = new Tournament(loader, Arrays.copyOfRange(args, 1, args.length), System.nanoTime());
+		String ratingsFile = System.getProperty(Ratings.FILE_PROPERTY);
+		Ratings ratings = ratingsFile == null ? null : new Ratings(new File(ratingsFile));
+		tournament.setRatings(ratings);
+		int n = args.length-1;
+		Standing[] standings;
+		long series;
+		if (args[0].equals("swiss"))
+		{
+			int rounds = 32-Integer.numberOfLeadingZeros(n-1);
+			standings = tournament.swiss(rounds);
+			series = (long)rounds*(n/2);
+		}
+		else if (args[0].equals("elimination"))
+		{
+			standings = tournament.elimination();
+			series = n-1;
+		}
+		else
+		{
+			standings = tournament.roundRobin();
+			series = (long)n*(n-1)/2;
+		}
+		DecimalFormat df = new DecimalFormat("0.0");
+		for (int i=0; i<standings.length; i++)
+			System.out.println((i+1)+". "+standings[i].getName()+" ("+standings[i].getClassName()+")  "+
+					(args[0].equals("elimination") ? "rounds won "+standings[i].getRoundsWon() : "points "+df.format(standings[i].getPoints()))+
+					"  W/D/L "+standings[i].getWins()+"/"+standings[i].getDraws()+"/"+standings[i].getLosses()+
+					"  score diff "+df.format(standings[i].getScoreDiff())+"  games "+standings[i].getGames());
+		System.out.println(tournament.getGamesPlayed()+" games played ("+series*MAX_GAMES+" with fixed "+MAX_GAMES+"-game series)");
+		if (ratings != null)
+		{
+			ratings.save();
+			for (String name : ratings.getNames())
+				System.out.println(name+"  rating "+df.format(ratings.getRating(name))+"  games "+ratings.getGames(name));
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package arena;
+
+import java.nio.FloatBuffer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import bots.Bot;
+import bots.Drone;
+import bots.ScrapBot;
+import bots.SentryBot;
+
+/**
+ * A batch of independent headless arenas for training Bots with reinforcement
+ * learning. Each arena has one AgentBot, controlled through this class, and a
+ * field of stock Bots. All of the arenas are stepped together, in parallel,
+ * with one call to <i>step()</i>.<br><br>
+ *
+ * <b>Actions</b> are the usual move constants (BattleBotArena.UP to
+ * BattleBotArena.SEND_MESSAGE), one per arena.<br><br>
+ *
+ * <b>Observations</b> are written to one flat float array, with
+ * <i>observationSize()</i> floats per arena:
+ * <ol><li>the agent's x, y, and 1 if it can shoot (0 if not)</li>
+ * <li>for each other Bot, in Bot number order: dx, dy (from the agent) and 1 if
+ * alive, -1 if dead, or 0 if out of the round</li>
+ * <li>for each bullet slot of each Bot: dx, dy, x speed and y speed (all 0 for
+ * an empty slot)</li></ol>
+ *
+ * <b>Rewards</b> are the change in the agent's score since the last step. An arena
+ * is <b>done</b> when the round ends or the agent is dead or overheated. It is then
+ * restarted right away, so the observation returned with done = true is the first
+ * observation of the next episode.<br><br>
+ *
+ * The observation, reward and done arrays are allocated once and overwritten by
+ * every step. (The arenas themselves still allocate the arrays handed to the stock
+ * Bots each frame.)
+ */
+public class VectorEnv {
+
+	/**
+	 * The arenas
+	 */
+	private final BattleBotArena[] arenas;
+	/**
+	 * The agent in each arena
+	 */
+	private final AgentBot[] agents;
+	/**
+	 * Agent's score after the last step, for computing rewards
+	 */
+	private final double[] lastScores;
+	/**
+	 * Seed for the next match in each arena
+	 */
+	private final long[] seeds;
+	/**
+	 * Bots and bullet slots per arena
+	 */
+	private final int botsPerEnv, bulletsPerBot;
+	/**
+	 * Floats per arena in the observation array
+	 */
+	private final int obsSize;
+	/**
+	 * Outputs
+	 */
+	private final float[] observations;
+	private final float[] rewards;
+	private final boolean[] dones;
+	/**
+	 * The observations, wrapped as a buffer
+	 */
+	private final FloatBuffer observationBuffer;
+	/**
+	 * Actions for the current step
+	 */
+	private int[] actions;
+	/**
+	 * Steps one arena (created once so step() doesn't allocate it)
+	 */
+	private final IntConsumer stepOne = this::stepEnv;
+
+	/**
+	 * @param numEnvs Number of arenas
+	 * @param botsPerEnv Bots per arena, including the agent
+	 * @param seed Seed for the arenas (arena e uses seed + e, and each restart adds numEnvs)
+	 */
+	public VectorEnv(int numEnvs, int botsPerEnv, long seed)
+	{
+		this.botsPerEnv = botsPerEnv;
+		bulletsPerBot = BattleBotArena.NUM_BULLETS;
+		obsSize = 3 + 3*(botsPerEnv-1) + 4*botsPerEnv*bulletsPerBot;
+		arenas = new BattleBotArena[numEnvs];
+		agents = new AgentBot[numEnvs];
+		lastScores = new double[numEnvs];
+		seeds = new long[numEnvs];
+		observations = new float[numEnvs*obsSize];
+		observationBuffer = FloatBuffer.wrap(observations);
+		rewards = new float[numEnvs];
+		dones = new boolean[numEnvs];
+		for (int e=0; e<numEnvs; e++)
+		{
+			agents[e] = new AgentBot("Agent"+e);
+			Bot[] roster = new Bot[botsPerEnv];
+			roster[0] = agents[e];
+			for (int i=1; i<botsPerEnv; i++)
+				if (i%3 == 1)
+					roster[i] = new Drone();
+				else if (i%3 == 2)
+					roster[i] = new SentryBot();
+				else
+					roster[i] = new ScrapBot();
+			seeds[e] = seed+e;
+			arenas[e] = new BattleBotArena(roster, seeds[e], BattleBotArena.RIGHT_EDGE, BattleBotArena.BOTTOM_EDGE, bulletsPerBot);
+		}
+	}
+
+	/**
+	 * Starts a new match in every arena.
+	 * @return The observations (see the class comment for the layout)
+	 */
+	public float[] reset()
+	{
+		for (int e=0; e<arenas.length; e++)
+			restart(e);
+		return observations;
+	}
+
+	/**
+	 * Plays one frame in every arena, in parallel.
+	 * @param actions One move per arena
+	 */
+	public void step(int[] actions)
+	{
+		this.actions = actions;
+		IntStream.range(0, arenas.length).parallel().forEach(stepOne);
+	}
+
+	/**
+	 * @return Number of arenas
+	 */
+	public int numEnvs()
+	{
+		return arenas.length;
+	}
+
+	/**
+	 * @return Floats per arena in the observation array
+	 */
+	public int observationSize()
+	{
+		return obsSize;
+	}
+
+	/**
+	 * @return Latest observations (overwritten by every step)
+	 */
+	public float[] observations()
+	{
+		return observations;
+	}
+
+	/**
+	 * @return Latest observations as a buffer over the same array
+	 */
+	public FloatBuffer observationBuffer()
+	{
+		return observationBuffer;
+	}
+
+	/**
+	 * @return Rewards for the last step (overwritten by every step)
+	 */
+	public float[] rewards()
+	{
+		return rewards;
+	}
+
+	/**
+	 * @return Done flags for the last step (overwritten by every step)
+	 */
+	public boolean[] dones()
+	{
+		return dones;
+	}
+
+	/**
+	 * Plays one frame in one arena and records the results.
+	 * @param e The arena
+	 */
+	private void stepEnv(int e)
+	{
+		BattleBotArena arena = arenas[e];
+		agents[e].setMove(actions[e]);
+		arena.step();
+		int agent = agents[e].getBotNumber();
+		BotInfo me = arena.getBotInfo(agent);
+		// the arena only updates a live Bot's score when it moves, so work it out
+		// for this frame unless the match or the Bot is finished and it's final
+		double score = arena.isMatchOver() || me.isDead() ? me.getScore() : arena.currentScore(agent, false);
+		rewards[e] = (float)(score-lastScores[e]);
+		lastScores[e] = score;
+		dones[e] = arena.isMatchOver() || me.isDead() || me.isOverheated();
+		if (dones[e])
+			restart(e);
+		else
+			observe(e);
+	}
+
+	/**
+	 * Starts a new match in one arena
+	 * @param e The arena
+	 */
+	private void restart(int e)
+	{
+		arenas[e].setSeed(seeds[e]);
+		seeds[e] += arenas.length;
+		arenas[e].startMatch();
+		lastScores[e] = 0;
+		observe(e);
+	}
+
+	/**
+	 * Writes the observation for one arena
+	 * @param e The arena
+	 */
+	private void observe(int e)
+	{
+		BattleBotArena arena = arenas[e];
+		int myNum = agents[e].getBotNumber();
+		BotInfo me = arena.getBotInfo(myNum);
+		double x = me.getX(), y = me.getY();
+		int o = e*obsSize;
+		observations[o++] = (float)x;
+		observations[o++] = (float)y;
+		boolean shotOK = false;
+		for (int k=0; k<bulletsPerBot; k++)
+			if (arena.getBullet(myNum, k) == null)
+				shotOK = true;
+		observations[o++] = shotOK ? 1 : 0;
+		for (int i=0; i<botsPerEnv; i++)
+		{
+			if (i == myNum)
+				continue;
+			BotInfo bot = arena.getBotInfo(i);
+			boolean out = bot.isOut();
+			observations[o++] = out ? 0 : (float)(bot.getX()-x);
+			observations[o++] = out ? 0 : (float)(bot.getY()-y);
+			observations[o++] = out ? 0 : bot.isDead() ? -1 : 1;
+		}
+		for (int i=0; i<botsPerEnv; i++)
+			for (int k=0; k<bulletsPerBot; k++)
+			{
+				Bullet b = arena.getBullet(i, k);
+				observations[o++] = b == null ? 0 : (float)(b.getX()-x);
+				observations[o++] = b == null ? 0 : (float)(b.getY()-y);
+				observations[o++] = b == null ? 0 : (float)b.getXSpeed();
+				observations[o++] = b == null ? 0 : (float)b.getYSpeed();
+			}
+	}
+}
@@ -0,0 +1,454 @@
+package arena;
+
+import bots.Bot;
+
+/**
+ * A snapshot of the arena that Bots can use to look ahead. The arena captures one
+ * frozen snapshot per frame (only if a Bot has asked for it, see
+ * <i>Bot.usesWorldState()</i>) and hands the same snapshot to every Bot. A Bot
+ * calls <i>fork()</i> to get its own copy, then <i>step()</i> to play the copy
+ * forward one frame with the moves it wants to try. Forks can be forked again to
+ * search deeper.<br><br>
+ *
+ * The state is held in arrays of primitives, and a fork shares its parent's arrays
+ * until one of them is written (copy on write), so forking is cheap. Stepping
+ * applies the same rules as the arena: Bots move in order of Bot number, moves
+ * into another Bot are reversed, Bots are clamped to the walls, shots go in the
+ * first free bullet slot, and bullets move, leave the screen or kill the first Bot
+ * they hit. Messages, scores and the clock are not simulated.<br><br>
+ *
+ * Forks and steps run inside the Bot's own <i>getMove()</i>, so the CPU time and
+ * memory they use is charged to that Bot like any other processing.
+ */
+public final class WorldState {
+
+	/**
+	 * Bot status: playing
+	 */
+	public static final byte ALIVE = 0;
+	/**
+	 * Bot status: overheated (still there, and still a target, but not moving)
+	 */
+	public static final byte OVERHEATED = 1;
+	/**
+	 * Bot status: dead
+	 */
+	public static final byte DEAD = 2;
+	/**
+	 * Bot status: out of the round
+	 */
+	public static final byte OUT = 3;
+
+	/**
+	 * Bot size
+	 */
+	private static final int RADIUS = Bot.RADIUS, DIAMETER = Bot.RADIUS*2;
+
+	/**
+	 * Size of the world
+	 */
+	private final int numBots, numBullets, rightEdge, bottomEdge;
+	/**
+	 * Bot positions (top left corner, like BotInfo) and status
+	 */
+	private double[] botX, botY;
+	private byte[] status;
+	/**
+	 * Bullets, indexed by botNum*numBullets+slot
+	 */
+	private double[] bulletX, bulletY, bulletXSpeed, bulletYSpeed;
+	private boolean[] bulletLive;
+	/**
+	 * True while the Bot or Bullet arrays are shared with another state
+	 */
+	private boolean botsShared, bulletsShared;
+	/**
+	 * True for the arena's snapshot, which can't be stepped
+	 */
+	private final boolean frozen;
+	/**
+	 * Frames played since the snapshot was taken
+	 */
+	private int frames;
+
+	/**
+	 * Takes a frozen snapshot of the arena
+	 */
+	WorldState(BotInfo[] botsInfo, Bullet[][] bullets, int numBots, int numBullets, int rightEdge, int bottomEdge)
+	{
+		this.numBots = numBots;
+		this.numBullets = numBullets;
+		this.rightEdge = rightEdge;
+		this.bottomEdge = bottomEdge;
+		frozen = true;
+		botX = new double[numBots];
+		botY = new double[numBots];
+		status = new byte[numBots];
+		bulletX = new double[numBots*numBullets];
+		bulletY = new double[numBots*numBullets];
+		bulletXSpeed = new double[numBots*numBullets];
+		bulletYSpeed = new double[numBots*numBullets];
+		bulletLive = new boolean[numBots*numBullets];
+		for (int i=0; i<numBots; i++)
+		{
+			BotInfo info = botsInfo[i];
+			botX[i] = info.getX();
+			botY[i] = info.getY();
+			status[i] = info.isOut() ? OUT : info.isDead() ? DEAD : info.isOverheated() ? OVERHEATED : ALIVE;
+			for (int k=0; k<numBullets; k++)
+			{
+				Bullet b = bullets[i][k];
+				if (b != null)
+				{
+					int s = i*numBullets+k;
+					bulletX[s] = b.getX();
+					bulletY[s] = b.getY();
+					bulletXSpeed[s] = b.getXSpeed();
+					bulletYSpeed[s] = b.getYSpeed();
+					bulletLive[s] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes a fork that shares this state's arrays
+	 */
+	private WorldState(WorldState parent)
+	{
+		numBots = parent.numBots;
+		numBullets = parent.numBullets;
+		rightEdge = parent.rightEdge;
+		bottomEdge = parent.bottomEdge;
+		frozen = false;
+		frames = parent.frames;
+		botX = parent.botX;
+		botY = parent.botY;
+		status = parent.status;
+		bulletX = parent.bulletX;
+		bulletY = parent.bulletY;
+		bulletXSpeed = parent.bulletXSpeed;
+		bulletYSpeed = parent.bulletYSpeed;
+		bulletLive = parent.bulletLive;
+		botsShared = bulletsShared = true;
+		parent.botsShared = parent.bulletsShared = true;
+	}
+
+	/**
+	 * @return A copy of this state that can be stepped without changing this one
+	 */
+	public WorldState fork()
+	{
+		return new WorldState(this);
+	}
+
+	/**
+	 * Plays one frame, with every other Bot making the move it is assumed to make.
+	 * @param botNum The Bot doing the looking ahead
+	 * @param myMove The Bot's move
+	 * @param otherMoves Assumed moves for the other Bots, by Bot number (the entry for
+	 * botNum is ignored). Null means the other Bots all STAY.
+	 * @return This state, to allow chaining
+	 */
+	public WorldState step(int botNum, int myMove, int[] otherMoves)
+	{
+		checkWritable();
+		for (int i=0; i<numBots; i++)
+			if (status[i] == ALIVE)
+				move(i, i == botNum ? myMove : otherMoves == null ? BattleBotArena.STAY : otherMoves[i]);
+		moveBullets();
+		frames++;
+		return this;
+	}
+
+	/**
+	 * Plays one frame with a move for every Bot.
+	 * @param moves Moves by Bot number
+	 * @return This state, to allow chaining
+	 */
+	public WorldState step(int[] moves)
+	{
+		checkWritable();
+		for (int i=0; i<numBots; i++)
+			if (status[i] == ALIVE)
+				move(i, moves[i]);
+		moveBullets();
+		frames++;
+		return this;
+	}
+
+	/**
+	 * @return Number of Bots
+	 */
+	public int getNumBots()
+	{
+		return numBots;
+	}
+
+	/**
+	 * @return Number of bullet slots per Bot
+	 */
+	public int getNumBullets()
+	{
+		return numBullets;
+	}
+
+	/**
+	 * @return Frames played since the arena took the snapshot
+	 */
+	public int getFrames()
+	{
+		return frames;
+	}
+
+	/**
+	 * @param botNum The Bot
+	 * @return X location of the Bot's top left corner
+	 */
+	public double getX(int botNum)
+	{
+		return botX[botNum];
+	}
+
+	/**
+	 * @param botNum The Bot
+	 * @return Y location of the Bot's top left corner
+	 */
+	public double getY(int botNum)
+	{
+		return botY[botNum];
+	}
+
+	/**
+	 * @param botNum The Bot
+	 * @return ALIVE, OVERHEATED, DEAD or OUT
+	 */
+	public byte getStatus(int botNum)
+	{
+		return status[botNum];
+	}
+
+	/**
+	 * @param botNum The Bot
+	 * @return true if the Bot is playing and not overheated
+	 */
+	public boolean isAlive(int botNum)
+	{
+		return status[botNum] == ALIVE;
+	}
+
+	/**
+	 * @param botNum The Bot
+	 * @return true if the Bot has a free bullet slot
+	 */
+	public boolean canShoot(int botNum)
+	{
+		for (int k=0; k<numBullets; k++)
+			if (!bulletLive[botNum*numBullets+k])
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param botNum The Bot that owns the bullet
+	 * @param slot The bullet slot
+	 * @return true if there is a bullet in the slot
+	 */
+	public boolean hasBullet(int botNum, int slot)
+	{
+		return bulletLive[botNum*numBullets+slot];
+	}
+
+	/**
+	 * @param botNum The Bot that owns the bullet
+	 * @param slot The bullet slot
+	 * @return The bullet's X location
+	 */
+	public double getBulletX(int botNum, int slot)
+	{
+		return bulletX[botNum*numBullets+slot];
+	}
+
+	/**
+	 * @param botNum The Bot that owns the bullet
+	 * @param slot The bullet slot
+	 * @return The bullet's Y location
+	 */
+	public double getBulletY(int botNum, int slot)
+	{
+		return bulletY[botNum*numBullets+slot];
+	}
+
+	/**
+	 * @param botNum The Bot that owns the bullet
+	 * @param slot The bullet slot
+	 * @return The bullet's speed in the X direction
+	 */
+	public double getBulletXSpeed(int botNum, int slot)
+	{
+		return bulletXSpeed[botNum*numBullets+slot];
+	}
+
+	/**
+	 * @param botNum The Bot that owns the bullet
+	 * @param slot The bullet slot
+	 * @return The bullet's speed in the Y direction
+	 */
+	public double getBulletYSpeed(int botNum, int slot)
+	{
+		return bulletYSpeed[botNum*numBullets+slot];
+	}
+
+	/**
+	 * Processes one Bot's move (see processMove() in the arena)
+	 * @param i The Bot
+	 * @param move The move
+	 */
+	private void move(int i, int move)
+	{
+		switch (move)
+		{
+		case BattleBotArena.UP:
+		case BattleBotArena.DOWN:
+		case BattleBotArena.LEFT:
+		case BattleBotArena.RIGHT:
+			ownBots();
+			double dx = move == BattleBotArena.LEFT ? -BattleBotArena.BOT_SPEED : move == BattleBotArena.RIGHT ? BattleBotArena.BOT_SPEED : 0;
+			double dy = move == BattleBotArena.UP ? -BattleBotArena.BOT_SPEED : move == BattleBotArena.DOWN ? BattleBotArena.BOT_SPEED : 0;
+			botX[i] += dx;
+			botY[i] += dy;
+			// reverse the move on collision (like the arena, Bots that are out still block)
+			for (int j=0; j<numBots; j++)
+				if (j != i)
+				{
+					double ddx = botX[i]-botX[j], ddy = botY[i]-botY[j];
+					if (ddx*ddx+ddy*ddy < DIAMETER*DIAMETER)
+					{
+						botX[i] -= dx;
+						botY[i] -= dy;
+						break;
+					}
+				}
+			// walls
+			if (botX[i] < BattleBotArena.LEFT_EDGE)
+				botX[i] = BattleBotArena.LEFT_EDGE;
+			if (botX[i] > rightEdge-DIAMETER)
+				botX[i] = rightEdge-DIAMETER;
+			if (botY[i] < BattleBotArena.TOP_EDGE)
+				botY[i] = BattleBotArena.TOP_EDGE;
+			if (botY[i] > bottomEdge-DIAMETER)
+				botY[i] = bottomEdge-DIAMETER;
+			break;
+		case BattleBotArena.FIREUP:
+			fire(i, botX[i]+RADIUS, botY[i]-1, 0, -BattleBotArena.BULLET_SPEED);
+			break;
+		case BattleBotArena.FIREDOWN:
+			fire(i, botX[i]+RADIUS, botY[i]+DIAMETER+1, 0, BattleBotArena.BULLET_SPEED);
+			break;
+		case BattleBotArena.FIRELEFT:
+			fire(i, botX[i]-1, botY[i]+RADIUS, -BattleBotArena.BULLET_SPEED, 0);
+			break;
+		case BattleBotArena.FIRERIGHT:
+			fire(i, botX[i]+DIAMETER+1, botY[i]+RADIUS, BattleBotArena.BULLET_SPEED, 0);
+			break;
+		}
+	}
+
+	/**
+	 * Puts a new bullet in the Bot's first free slot, if it has one
+	 */
+	private void fire(int i, double x, double y, double xSpeed, double ySpeed)
+	{
+		for (int k=0; k<numBullets; k++)
+		{
+			int s = i*numBullets+k;
+			if (!bulletLive[s])
+			{
+				ownBullets();
+				bulletX[s] = x;
+				bulletY[s] = y;
+				bulletXSpeed[s] = xSpeed;
+				bulletYSpeed[s] = ySpeed;
+				bulletLive[s] = true;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Moves the bullets and kills the Bots they hit (see moveBullets() in the arena)
+	 */
+	private void moveBullets()
+	{
+		for (int s=0; s<bulletLive.length; s++)
+		{
+			if (!bulletLive[s])
+				continue;
+			ownBullets();
+			bulletX[s] += bulletXSpeed[s];
+			bulletY[s] += bulletYSpeed[s];
+			if (bulletX[s] < BattleBotArena.LEFT_EDGE || bulletX[s] > rightEdge ||
+					bulletY[s] < BattleBotArena.TOP_EDGE || bulletY[s] > bottomEdge)
+			{
+				bulletLive[s] = false;
+				continue;
+			}
+			int owner = s/numBullets;
+			for (int j=0; j<numBots; j++)
+			{
+				if (status[j] == OUT || j == owner)
+					continue;
+				double dx = bulletX[s]-(botX[j]+RADIUS), dy = bulletY[s]-(botY[j]+RADIUS);
+				if (dx*dx+dy*dy < RADIUS*RADIUS)
+				{
+					bulletLive[s] = false;
+					if (status[j] != DEAD)
+					{
+						ownBots();
+						status[j] = DEAD;
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes sure this state has its own Bot arrays before writing them
+	 */
+	private void ownBots()
+	{
+		if (botsShared)
+		{
+			botX = botX.clone();
+			botY = botY.clone();
+			status = status.clone();
+			botsShared = false;
+		}
+	}
+
+	/**
+	 * Makes sure this state has its own Bullet arrays before writing them
+	 */
+	private void ownBullets()
+	{
+		if (bulletsShared)
+		{
+			bulletX = bulletX.clone();
+			bulletY = bulletY.clone();
+			bulletXSpeed = bulletXSpeed.clone();
+			bulletYSpeed = bulletYSpeed.clone();
+			bulletLive = bulletLive.clone();
+			bulletsShared = false;
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException If this is the arena's shared snapshot
+	 */
+	private void checkWritable()
+	{
+		if (frozen)
+			throw new IllegalStateException("The arena's snapshot is shared by every Bot. Call fork() first.");
+	}
+}
@@ -0,0 +1,196 @@
+package arena;
+
+/**
+ * A read-only view of the current frame for Bots that implement
+ * <i>getMove(WorldView)</i> (see <i>Bot.usesWorldView()</i>). Instead of arrays of
+ * BotInfo and Bullet objects, the view reads straight from the arena's own
+ * arrays of numbers, so the arena doesn't have to copy anything for you.<br><br>
+ *
+ * Bots are indexed by Bot number, from 0 to <i>botCount()</i>-1, and include you
+ * (see <i>me()</i>), the dead, and Bots that are out of the round, so check
+ * <i>isAlive()</i>. Bullets are indexed from 0 to <i>bulletCount()</i>-1, in no
+ * particular order. Everything is as it was at the start of the frame, before any
+ * Bot moved.<br><br>
+ *
+ * Each Bot gets its own view at the start of a round and keeps it all round; the
+ * arena updates what it sees every frame. Only read it during <i>getMove()</i>.
+ */
+public final class WorldView {
+
+	/**
+	 * The arena's copy of the frame
+	 */
+	private final FrameStore store;
+	/**
+	 * The Bot this view belongs to
+	 */
+	private final int me;
+
+	/**
+	 * @param store The arena's copy of the frame
+	 * @param me The Bot this view belongs to
+	 */
+	WorldView(FrameStore store, int me)
+	{
+		this.store = store;
+		this.me = me;
+	}
+
+	/**
+	 * @return Your Bot number
+	 */
+	public int me()
+	{
+		return me;
+	}
+
+	/**
+	 * @return true if you have a free bullet slot
+	 */
+	public boolean shotOK()
+	{
+		return store.bulletsInPlay[me] < store.numBullets;
+	}
+
+	/**
+	 * @return Number of Bots in the round, including you
+	 */
+	public int botCount()
+	{
+		return store.numBots;
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return X location of the Bot's top left corner
+	 */
+	public double botX(int i)
+	{
+		return store.botX[i];
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return Y location of the Bot's top left corner
+	 */
+	public double botY(int i)
+	{
+		return store.botY[i];
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return true if the Bot is in play (it may be overheated)
+	 */
+	public boolean isAlive(int i)
+	{
+		return store.status[i] == FrameStore.ALIVE || store.status[i] == FrameStore.OVERHEATED;
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return true if the Bot is dead (dead Bots stay on the field and block moves)
+	 */
+	public boolean isDead(int i)
+	{
+		return store.status[i] == FrameStore.DEAD;
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return true if the Bot has overheated
+	 */
+	public boolean isOverheated(int i)
+	{
+		return store.status[i] == FrameStore.OVERHEATED;
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return true if the Bot is out of the round
+	 */
+	public boolean isOut(int i)
+	{
+		return store.status[i] == FrameStore.OUT;
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return The Bot's last move
+	 */
+	public int botLastMove(int i)
+	{
+		return store.lastMove[i];
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return The Bot's name
+	 */
+	public String botName(int i)
+	{
+		return store.name[i];
+	}
+
+	/**
+	 * @param i Bot number
+	 * @return The Bot's team name (may be null)
+	 */
+	public String botTeam(int i)
+	{
+		return store.team[i];
+	}
+
+	/**
+	 * @return Number of bullets in play
+	 */
+	public int bulletCount()
+	{
+		return store.bulletCount;
+	}
+
+	/**
+	 * @param i Bullet index
+	 * @return The bullet's X location
+	 */
+	public double bulletX(int i)
+	{
+		return store.bulletX[i];
+	}
+
+	/**
+	 * @param i Bullet index
+	 * @return The bullet's Y location
+	 */
+	public double bulletY(int i)
+	{
+		return store.bulletY[i];
+	}
+
+	/**
+	 * @param i Bullet index
+	 * @return The bullet's speed in the X direction
+	 */
+	public double bulletVx(int i)
+	{
+		return store.bulletXSpeed[i];
+	}
+
+	/**
+	 * @param i Bullet index
+	 * @return The bullet's speed in the Y direction
+	 */
+	public double bulletVy(int i)
+	{
+		return store.bulletYSpeed[i];
+	}
+
+	/**
+	 * @param i Bullet index
+	 * @return Number of the Bot that fired the bullet
+	 */
+	public int bulletOwner(int i)
+	{
+		return store.bulletOwner[i];
+	}
+}
@@ -3,8 +3,14 @@ import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.event.ActionEvent;
 
+import arena.BattleBotArena;
 import arena.BotInfo;
 import arena.Bullet;
+import arena.DeltaFeed;
+import arena.MessageBatch;
+import arena.SpatialIndex;
+import arena.WorldState;
+import arena.WorldView;
 
 /**
  * <b>Introduction</b> <br><br>
@@ -83,6 +89,28 @@ public abstract class Bot {
 	 */
 	protected int botNumber;
 
+	/**
+	 * A snapshot of the current frame that you can fork and play forward to look
+	 * ahead (see the WorldState class). Only set if <i>usesWorldState()</i> returns
+	 * true. It is updated just before each call to <i>getMove()</i>.
+	 */
+	protected WorldState world;
+
+	/**
+	 * An index of the Bots and bullets in the current frame, for finding the nearest
+	 * Bots and the bullets heading your way (see the SpatialIndex class). Only set if
+	 * <i>usesSpatialIndex()</i> returns true. It is updated just before each call to
+	 * <i>getMove()</i>, and shows where everyone was at the start of the frame.
+	 */
+	protected SpatialIndex space;
+
+	/**
+	 * The changes since the last frame: Bots that moved, bullets fired and gone,
+	 * deaths and so on (see the DeltaFeed class). Only set if <i>usesDeltaFeed()</i>
+	 * returns true. It is updated just before each call to <i>getMove()</i>.
+	 */
+	protected DeltaFeed deltas;
+
 	/**
 	 * This method is called at the beginning of each round. Use it to perform
 	 * any initialization that you require when starting a new round.
@@ -122,6 +150,24 @@ public abstract class Bot {
 	 */
 	public abstract int getMove(BotInfo me, boolean shotOK, BotInfo[] liveBots, BotInfo[] deadBots, Bullet[] bullets);
 
+	/**
+	 * The fast alternative to the <i>getMove()</i> above, for Bots whose
+	 * <i>usesWorldView()</i> returns true. Instead of arrays of objects, you get a
+	 * read-only view of the arena's own data (see the WorldView class), which the
+	 * arena can hand over without copying anything. The rules and the legal moves
+	 * are the same.<br><br>
+	 *
+	 * The other <i>getMove()</i> is not called for these Bots, so it can just
+	 * return <i>BattleBotArena.STAY</i>.
+	 *
+	 * @param world		Everything about the current frame, including you (see <i>world.me()</i>)
+	 * @return			A legal move (use the constants defined in BattleBotArena)
+	 */
+	public int getMove(WorldView world)
+	{
+		return BattleBotArena.STAY;
+	}
+
 	/**
 	 * Called when it is time to draw the Bot. Your Bot should be (mostly)
 	 * within a circle inscribed inside a square with top left coordinates
@@ -165,6 +211,21 @@ public abstract class Bot {
 	 */
 	public abstract String outgoingMessage();
 
+	/**
+	 * Called just after <i>outgoingMessage()</i> to find out who the message is for.
+	 * Override this to talk to your team only (<i>BattleBotArena.CHANNEL_TEAM</i>, the
+	 * Bots whose <i>getTeamName()</i> matches yours) or to one Bot (its Bot number)
+	 * instead of broadcasting. Only the Bots you address receive the message, but it
+	 * still shows on the screen and still counts toward your messaging cap. A
+	 * message on any other channel is dropped (it isn't shown and doesn't count).
+	 *
+	 * @return <i>BattleBotArena.CHANNEL_ALL</i>, <i>BattleBotArena.CHANNEL_TEAM</i>, or a Bot number
+	 */
+	public int messageChannel()
+	{
+		return BattleBotArena.CHANNEL_ALL;
+	}
+
 	/**
 	 * This is called whenever the referee or a Bot sends a broadcast message.
 	 *
@@ -173,6 +234,29 @@ public abstract class Bot {
 	 */
 	public abstract void incomingMessage(int botNum, String msg);
 
+	/**
+	 * Called at the start of each round, just after <i>newRound()</i>. Override this
+	 * to return true if your Bot implements <i>incomingMessages()</i> instead of
+	 * <i>incomingMessage()</i>.
+	 *
+	 * @return true to get your messages in one batch per frame
+	 */
+	public boolean usesMessageBatch()
+	{
+		return false;
+	}
+
+	/**
+	 * The batched alternative to <i>incomingMessage()</i>, for Bots whose
+	 * <i>usesMessageBatch()</i> returns true. Called once at the end of a frame in
+	 * which anything was addressed to you (see the MessageBatch class).
+	 *
+	 * @param messages The messages for you this frame, in the order they were sent
+	 */
+	public void incomingMessages(MessageBatch messages)
+	{
+	}
+
 	/**
 	 * This is called by the arena at startup to find out what image names you
 	 * want it to load for you. All images must be stored in the <i>images</i>
@@ -214,6 +298,85 @@ public abstract class Bot {
 		this.botNumber = botNum;
 	}
 
+	/**
+	 * Called at the start of each round, just after <i>newRound()</i>. Override this
+	 * to return true if your Bot wants the <i>world</i> snapshot. Any forking and
+	 * stepping you do counts toward your CPU limit, like the rest of <i>getMove()</i>.
+	 *
+	 * @return true to receive a WorldState each frame
+	 */
+	public boolean usesWorldState()
+	{
+		return false;
+	}
+
+	/**
+	 * Called by the arena before each call to <i>getMove()</i> to hand over the
+	 * snapshot of the current frame. There is probably no need to override this method.
+	 *
+	 * @param world The snapshot (shared by all Bots -- fork it before stepping)
+	 */
+	public void assignWorld(WorldState world)
+	{
+		this.world = world;
+	}
+
+	/**
+	 * Called at the start of each round, just after <i>newRound()</i>. Override this
+	 * to return true if your Bot implements <i>getMove(WorldView)</i> instead of the
+	 * <i>getMove()</i> with arrays.
+	 *
+	 * @return true to get a WorldView each frame
+	 */
+	public boolean usesWorldView()
+	{
+		return false;
+	}
+
+	/**
+	 * Called at the start of each round, just after <i>newRound()</i>. Override this
+	 * to return true if your Bot wants the <i>space</i> index.
+	 *
+	 * @return true to receive a SpatialIndex each frame
+	 */
+	public boolean usesSpatialIndex()
+	{
+		return false;
+	}
+
+	/**
+	 * Called by the arena before each call to <i>getMove()</i> to hand over the
+	 * spatial index of the current frame. There is probably no need to override this method.
+	 *
+	 * @param space The index (shared by all Bots)
+	 */
+	public void assignSpatialIndex(SpatialIndex space)
+	{
+		this.space = space;
+	}
+
+	/**
+	 * Called at the start of each round, just after <i>newRound()</i>. Override this
+	 * to return true if your Bot wants the <i>deltas</i> feed.
+	 *
+	 * @return true to receive a DeltaFeed each frame
+	 */
+	public boolean usesDeltaFeed()
+	{
+		return false;
+	}
+
+	/**
+	 * Called by the arena before each call to <i>getMove()</i> to hand over the
+	 * changes since the last frame. There is probably no need to override this method.
+	 *
+	 * @param deltas The feed (shared by all Bots)
+	 */
+	public void assignDeltaFeed(DeltaFeed deltas)
+	{
+		this.deltas = deltas;
+	}
+
 	/**
 	 * Stops Bot developers from cheating by spawning a Thread. The human referee
 	 * should also check to make sure they are only using a single class and no
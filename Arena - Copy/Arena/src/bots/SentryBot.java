@@ -2,6 +2,7 @@ package bots;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.util.Arrays;
 import java.util.StringTokenizer;
 
 
@@ -68,6 +69,9 @@ public class SentryBot extends Bot {
 		// check for a bot that's too close
 		for (int i=0; i<liveBots.length; i++)
 		{
+			// the roster can be bigger than NUM_BOTS (e.g. in a headless arena), so make room
+			if (liveBots[i].getBotNumber() >= warned.length)
+				warned = Arrays.copyOf(warned, liveBots[i].getBotNumber()+1);
 			if (!warned[liveBots[i].getBotNumber()]) // skip if already warned this Bot
 			{
 				// compute the Manhattan distance to the Bot